@@ -0,0 +1,111 @@
+package study.querydsl.bench;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.projection.FastProjections;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * QuerydslBasicTest 의 DTO 조회 방식 비교. 같은 범위(rows 건)를 각 방식으로 매핑한다.
+ * fast* 는 FastProjections, 매핑 비용만 따로 보려면 ProjectionMappingBenchmark.
+ */
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private EntityManager em;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberDataSet dataSet) {
+        em = dataSet.bean(EntityManager.class);
+    }
+
+    @Benchmark
+    public List<MemberDto> bean(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(Projections.bean(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fields(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(Projections.fields(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> constructor(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(Projections.constructor(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> queryProjection(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fastBean(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(FastProjections.bean(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fastFields(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(FastProjections.fields(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fastConstructor(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> new JPAQueryFactory(em)
+                .select(FastProjections.constructor(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.id.loe((long) rows))
+                .fetch());
+    }
+}
@@ -0,0 +1,106 @@
+package study.querydsl.bench;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.projection.FastProjections;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * DB 없이 row(Object[]) -> MemberDto 매핑 비용만 비교한다. handwritten 이 기준선.
+ * FastProjections 의 row 당 비용이 handwritten 과 같은 수준이어야 한다.
+ */
+@State(Scope.Benchmark)
+public class ProjectionMappingBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private Object[][] rows;
+    private FactoryExpression<MemberDto> bean;
+    private FactoryExpression<MemberDto> fields;
+    private FactoryExpression<MemberDto> constructor;
+    private FactoryExpression<MemberDto> queryProjection;
+    private FactoryExpression<MemberDto> fastBean;
+    private FactoryExpression<MemberDto> fastFields;
+    private FactoryExpression<MemberDto> fastConstructor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[]{"member" + i, i % 100};
+        }
+        bean = Projections.bean(MemberDto.class, member.username, member.age);
+        fields = Projections.fields(MemberDto.class, member.username, member.age);
+        constructor = Projections.constructor(MemberDto.class, member.username, member.age);
+        queryProjection = new QMemberDto(member.username, member.age);
+        fastBean = FastProjections.bean(MemberDto.class, member.username, member.age);
+        fastFields = FastProjections.fields(MemberDto.class, member.username, member.age);
+        fastConstructor = FastProjections.constructor(MemberDto.class, member.username, member.age);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void handwritten(Blackhole bh) {
+        for (Object[] row : rows) {
+            bh.consume(new MemberDto((String) row[0], (Integer) row[1]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void bean(Blackhole bh) {
+        map(bean, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void fields(Blackhole bh) {
+        map(fields, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void constructor(Blackhole bh) {
+        map(constructor, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void queryProjection(Blackhole bh) {
+        map(queryProjection, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void fastBean(Blackhole bh) {
+        map(fastBean, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void fastFields(Blackhole bh) {
+        map(fastFields, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void fastConstructor(Blackhole bh) {
+        map(fastConstructor, bh);
+    }
+
+    private void map(FactoryExpression<MemberDto> projection, Blackhole bh) {
+        for (Object[] row : rows) {
+            bh.consume(projection.newInstance(row));
+        }
+    }
+}
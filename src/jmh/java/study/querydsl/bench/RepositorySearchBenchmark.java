@@ -0,0 +1,137 @@
+package study.querydsl.bench;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 동적 쿼리 스타일 / 페이징 count 방식 비교.
+ * 레포지토리 메서드 외에 예제 원래 형태(where 파라미터, fetchResults)도 그대로 재현해서 같이 잰다.
+ */
+@State(Scope.Benchmark)
+public class RepositorySearchBenchmark {
+
+    @Param({"20"})
+    public int pageSize;
+
+    private MemberRepository memberRepository;
+    private MemberJpaRepository memberJpaRepository;
+    private EntityManager em;
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberDataSet dataSet) {
+        memberRepository = dataSet.bean(MemberRepository.class);
+        memberJpaRepository = dataSet.bean(MemberJpaRepository.class);
+        em = dataSet.bean(EntityManager.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(35);
+        pageRequest = PageRequest.of(1, pageSize);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> memberJpaRepository.searchByBuilder(condition));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchWhereParams(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> selectDto(new JPAQueryFactory(em))
+                .where(whereParams(condition))
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchTemplate(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> memberJpaRepository.search(condition));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageFetchResults(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> {
+            QueryResults<MemberTeamDto> results = selectDto(new JPAQueryFactory(em))
+                    .where(whereParams(condition))
+                    .offset(pageRequest.getOffset())
+                    .limit(pageRequest.getPageSize())
+                    .fetchResults();
+            return new PageImpl<>(results.getResults(), pageRequest, results.getTotal());
+        });
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSeparateCount(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            List<MemberTeamDto> content = selectDto(queryFactory)
+                    .where(whereParams(condition))
+                    .offset(pageRequest.getOffset())
+                    .limit(pageRequest.getPageSize())
+                    .fetch();
+            JPAQuery<Long> countQuery = queryFactory
+                    .select(member.count())
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(whereParams(condition));
+            return PageableExecutionUtils.getPage(content, pageRequest, countQuery::fetchOne);
+        });
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> memberRepository.searchPageSimple(condition, pageRequest));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex(MemberDataSet dataSet) {
+        return dataSet.readOnly.execute(status -> memberRepository.searchPageComplex(condition, pageRequest));
+    }
+
+    private static JPAQuery<MemberTeamDto> selectDto(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name))
+                .from(member)
+                .leftJoin(member.team, team);
+    }
+
+    private static BooleanExpression[] whereParams(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                StringUtils.hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null,
+                StringUtils.hasText(condition.getTeamName()) ? team.name.eq(condition.getTeamName()) : null,
+                condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null
+        };
+    }
+}
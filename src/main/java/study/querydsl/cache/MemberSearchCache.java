@@ -0,0 +1,156 @@
+package study.querydsl.cache;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 검색 조건 + 페이지 단위 결과 캐시. (LRU 크기 제한 + TTL)
+ *
+ * 무효화
+ * - member 한 건 변경: 변경 전 또는 변경 후 상태가 조건에 맞는 엔트리만 지운다.
+ *   (save, Member.changeTeam 모두 flush 시점에 이벤트로 들어온다)
+ *   트랜잭션이 끝날 때 한 번 더 지워서 롤백되거나 커밋 전에 읽힌 결과가 남지 않게 한다.
+ * - 벌크 update/delete: 어떤 row 인지 모르므로 전부 지운다.
+ *   statement 준비 시점에 지우고, 트랜잭션이 끝날 때 한 번 더 지운다. (그 사이 다른 요청이 옛 값을 다시 넣을 수 있으므로)
+ * 쓰기 트랜잭션 안에서는 캐시를 거치지 않는다. 커밋 안 된 row 가 보이는 결과를 넣거나, 다른 요청이 넣은 옛 결과를 읽지 않도록.
+ *
+ * 로딩 중에 무효화가 일어나면 (generation 이 바뀌면) 그 결과는 넣지 않는다.
+ */
+@Component
+public class MemberSearchCache implements MemberChangeListener {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean enabled;
+
+    private final LinkedHashMap<MemberSearchKey, Entry> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MemberSearchCache(@Value("${member.search.cache.max-size:1000}") int maxSize,
+                             @Value("${member.search.cache.ttl:60s}") Duration ttl,
+                             @Value("${member.search.cache.enabled:true}") boolean enabled) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.enabled = enabled;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchKey, Entry> eldest) {
+                if (size() > MemberSearchCache.this.maxSize) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(MemberSearchKey key, Supplier<T> loader) {
+        if (!enabled || isWriteTransaction()) {
+            return loader.get();
+        }
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.increment();
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+
+        T value = loader.get();
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        if (change.isBeforeUnknown()) {
+            invalidateAll();
+            return;
+        }
+        invalidate(change);
+        change.getSession().getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (success, session) -> invalidate(change));
+    }
+
+    @Override
+    public void onBulkChange() {
+        invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateAll();
+                }
+            });
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    private synchronized void invalidate(MemberChange change) {
+        generation++;
+        Iterator<Map.Entry<MemberSearchKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            MemberSearchKey key = it.next().getKey();
+            if (key.matches(change.getBefore()) || key.matches(change.getAfter())) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    private static boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    public synchronized MemberSearchCacheStats stats() {
+        return new MemberSearchCacheStats(hits.sum(), misses.sum(), sizeEvictions.sum(),
+                expirations.sum(), invalidations.sum(), entries.size(), maxSize);
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.cache;
+
+import lombok.Value;
+
+@Value
+public class MemberSearchCacheStats {
+    long hits;
+    long misses;
+    long sizeEvictions;
+    long expirations;
+    long invalidations;
+    int size;
+    int maxSize;
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,57 @@
+package study.querydsl.cache;
+
+import lombok.Value;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.MemberState;
+
+/**
+ * 캐시 키. 검색 로직과 같은 기준으로 정규화한다. (빈 문자열 == 조건 없음)
+ * offset/limit 가 -1 이면 페이징 없는 search 결과.
+ */
+@Value
+public class MemberSearchKey {
+    String username;
+    String usernamePrefix;
+    String usernameContains;
+    String teamName;
+    Integer ageGoe;
+    Integer ageLoe;
+    long offset;
+    int limit;
+
+    public static MemberSearchKey of(MemberSearchCondition condition) {
+        return of(condition, -1, -1);
+    }
+
+    public static MemberSearchKey of(MemberSearchCondition condition, long offset, int limit) {
+        return new MemberSearchKey(
+                StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null,
+                StringUtils.hasText(condition.getUsernamePrefix()) ? condition.getUsernamePrefix() : null,
+                StringUtils.hasText(condition.getUsernameContains()) ? condition.getUsernameContains() : null,
+                StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                condition.getAgeGoe(),
+                condition.getAgeLoe(),
+                offset,
+                limit);
+    }
+
+    /**
+     * 이 상태의 member 가 이 조건의 검색 결과에 포함되는지.
+     * 팀 이름을 모르면(초기화 안 된 프록시) 팀이 있는 한 어느 teamName 조건에도 포함될 수 있다고 본다.
+     */
+    public boolean matches(MemberState state) {
+        if (state == null) {
+            return false;
+        }
+        String stateUsername = state.getUsername();
+        return (username == null || username.equals(stateUsername))
+                && (usernamePrefix == null || (stateUsername != null && stateUsername.startsWith(usernamePrefix)))
+                && (usernameContains == null || (stateUsername != null && stateUsername.contains(usernameContains)))
+                && (teamName == null || (state.isTeamNameKnown()
+                        ? teamName.equals(state.getTeamName())
+                        : state.getTeamId() != null))
+                && (ageGoe == null || state.getAge() >= ageGoe)
+                && (ageLoe == null || state.getAge() <= ageLoe);
+    }
+}
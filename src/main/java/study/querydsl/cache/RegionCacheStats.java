@@ -0,0 +1,17 @@
+package study.querydsl.cache;
+
+import lombok.Value;
+
+@Value
+public class RegionCacheStats {
+    String region;
+    long hits;
+    long misses;
+    long puts;
+    long size;
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
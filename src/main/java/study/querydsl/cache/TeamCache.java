@@ -0,0 +1,85 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Team 2차 캐시 리전(team, team.members, team-by-name) 관리.
+ *
+ * JPQL 벌크 연산은 Hibernate 가 영향받는 리전을 직접 비운다. (BulkOperationCleanupAction)
+ * JDBC 로 직접 쓰는 경로(대량 적재 등)는 Hibernate 가 모르므로 publishBulkChange() 를 받으면 Team 리전을 전부 비운다.
+ * Team 리전은 팀 수만큼만 있으므로 전부 비워도 부담이 없다.
+ *
+ * hit ratio 게이지: hibernate.cache.hit.ratio{region=...}
+ * (요청/hit/miss 카운터는 hibernate-micrometer 가 hibernate.second.level.cache.requests 로 등록한다)
+ */
+@Slf4j
+@Component
+public class TeamCache implements MemberChangeListener {
+
+    public static final String TEAM_REGION = "team";
+    public static final String MEMBERS_REGION = "team.members";
+    public static final String BY_NAME_REGION = "team-by-name";
+
+    private final SessionFactory sessionFactory;
+
+    public TeamCache(EntityManagerFactory emf, MeterRegistry registry) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        for (String region : new String[]{TEAM_REGION, MEMBERS_REGION, BY_NAME_REGION}) {
+            Gauge.builder("hibernate.cache.hit.ratio", this, cache -> cache.regionStats(region).getHitRatio())
+                    .tag("region", region)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        //Team.members 는 hibernate.cache.auto_evict_collection_cache 가 처리한다.
+    }
+
+    @Override
+    public void onBulkChange() {
+        evictAll();
+    }
+
+    public void evictAll() {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(Team.class);
+        cache.evictCollectionData(Team.class.getName() + ".members");
+        cache.evictQueryRegion(BY_NAME_REGION);
+        log.debug("team cache regions evicted");
+    }
+
+    public List<RegionCacheStats> stats() {
+        List<RegionCacheStats> result = new ArrayList<>(3);
+        result.add(regionStats(TEAM_REGION));
+        result.add(regionStats(MEMBERS_REGION));
+        result.add(regionStats(BY_NAME_REGION));
+        return result;
+    }
+
+    private RegionCacheStats regionStats(String region) {
+        Statistics statistics = sessionFactory.getStatistics();
+        CacheRegionStatistics stats = BY_NAME_REGION.equals(region)
+                ? statistics.getQueryRegionStatistics(region)
+                : statistics.getDomainDataRegionStatistics(region);
+        if (stats == null) {
+            return new RegionCacheStats(region, 0, 0, 0, 0);
+        }
+        return new RegionCacheStats(region, stats.getHitCount(), stats.getMissCount(), stats.getPutCount(),
+                Math.max(stats.getElementCountInMemory(), 0));
+    }
+}
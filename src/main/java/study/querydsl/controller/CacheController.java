@@ -0,0 +1,35 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.cache.MemberSearchCache;
+import study.querydsl.cache.MemberSearchCacheStats;
+import study.querydsl.cache.RegionCacheStats;
+import study.querydsl.cache.TeamCache;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final MemberSearchCache memberSearchCache;
+    private final TeamCache teamCache;
+
+    /**
+     * hit/miss/eviction 통계. max-size, ttl 조정할 때 참고.
+     */
+    @GetMapping("/cache/member-search")
+    public MemberSearchCacheStats memberSearchCacheStats() {
+        return memberSearchCache.stats();
+    }
+
+    /**
+     * Team 2차 캐시 / 쿼리 캐시 리전별 통계
+     */
+    @GetMapping("/cache/team")
+    public List<RegionCacheStats> teamCacheStats() {
+        return teamCache.stats();
+    }
+}
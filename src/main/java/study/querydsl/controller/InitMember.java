@@ -1,19 +1,21 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
+import study.querydsl.generator.MemberDataGenerator;
+import study.querydsl.generator.MemberGeneratorProperties;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 
+/**
+ * local 프로파일 초기 데이터. 양/분포는 init.member.* 로 조절한다. (기본: 팀 2개, member 100명)
+ */
 @Profile("local")
 @Component
 @RequiredArgsConstructor
+@EnableConfigurationProperties(MemberGeneratorProperties.class)
 public class InitMember {
 
     private final InitMemberService initMemberService;
@@ -24,21 +26,13 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService {
-        @PersistenceContext
-        private EntityManager em;
+        private final MemberDataGenerator generator;
+        private final MemberGeneratorProperties properties;
 
-        @Transactional
         public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
+            generator.generate(properties);
         }
     }
 
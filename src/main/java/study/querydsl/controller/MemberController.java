@@ -1,12 +1,16 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberStreamService;
 
 import java.util.List;
 
@@ -15,9 +19,21 @@ import java.util.List;
 public class MemberController {
 
     private final MemberRepository repository;
+    private final MemberStreamService memberStreamService;
 
 //    @GetMapping("/members")
 //    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
 //        return repository.search(condition);
 //    }
+
+    /**
+     * 전체 결과를 메모리에 올리지 않고 chunked 로 내려준다.
+     */
+    @GetMapping("/members/stream")
+    public ResponseEntity<StreamingResponseBody> streamMembers(MemberSearchCondition condition) {
+        StreamingResponseBody body = out -> memberStreamService.writeNdjson(condition, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
@@ -0,0 +1,47 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.trace.SqlTraceEntry;
+import study.querydsl.trace.SqlTracer;
+
+import java.util.List;
+
+/**
+ * 샘플링된 SQL 에 바인딩 파라미터(개인정보)가 그대로 들어 있고 인증도 없으므로
+ * sql-trace.endpoint.enabled=true 일 때만 등록한다. (로컬/내부망 전용)
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "sql-trace.endpoint.enabled", havingValue = "true")
+public class SqlTraceController {
+
+    private final SqlTracer sqlTracer;
+
+    /**
+     * 최근 샘플링된 SQL (오래된 것부터)
+     */
+    @GetMapping("/internal/sql-trace")
+    public List<SqlTraceEntry> recent() {
+        return sqlTracer.recent();
+    }
+
+    /**
+     * 운영 중 샘플링 비율 조정. 0 이면 끔 (이후 새로 얻는 커넥션부터 적용)
+     */
+    @PutMapping("/internal/sql-trace/sample-rate")
+    public double sampleRate(@RequestParam double rate) {
+        sqlTracer.setSampleRate(rate);
+        return sqlTracer.getSampleRate();
+    }
+
+    @DeleteMapping("/internal/sql-trace")
+    public void clear() {
+        sqlTracer.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * primary / replica 커넥션 풀과 replica 상태.
+ * 풀은 DataSource 빈으로 등록하지 않는다. (TracingDataSource 가 라우팅 DataSource 바깥에서 한 번만 감싸도록)
+ */
+@Slf4j
+public class ReplicaDataSources implements DisposableBean {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    @Getter
+    private final HikariDataSource primary;
+    private final List<Node> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSources(HikariDataSource primary, List<Node> replicas) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+    }
+
+    public List<Node> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 살아있는 replica 를 라운드 로빈 순서로 돌려준다. 첫 번째가 이번 선택, 나머지는 실패 시 대체 순서.
+     */
+    List<Node> healthyInRoundRobinOrder() {
+        int size = replicas.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        List<Node> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Node node = replicas.get((start + i) % size);
+            if (node.healthy) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.routing.health-check-interval:PT5S}")
+    public void checkHealth() {
+        for (Node node : replicas) {
+            boolean healthy;
+            try (Connection connection = node.dataSource.getConnection()) {
+                healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != node.healthy) {
+                log.warn("replica {} is now {}", node.name, healthy ? "UP" : "DOWN");
+            }
+            node.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Node node : replicas) {
+            node.dataSource.close();
+        }
+        primary.close();
+    }
+
+    @Getter
+    public static class Node {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        public Node(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void markDown(SQLException cause) {
+            if (healthy) {
+                log.warn("replica {} is now DOWN: {}", name, cause.getMessage());
+            }
+            healthy = false;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.datasource;
+
+/**
+ * 스레드별 라우팅 힌트.
+ * - primaryOnly(): 이 범위 안의 readOnly 트랜잭션도 primary 로 보낸다. (방금 쓴 데이터를 바로 읽어야 할 때)
+ * - 쓰기 트랜잭션이 끝난 직후에는 readYourWritesWindow 동안 자동으로 primary 를 쓴다.
+ *
+ * 커넥션은 트랜잭션 안 첫 statement 때 잡히므로 트랜잭션 시작 전에 범위를 열어야 한다.
+ *
+ * read-your-writes 는 스레드 기준이지 사용자/세션 기준이 아니다.
+ * - 같은 스레드 안(한 요청 안에서 쓰고 읽기, 배치 작업)에서만 보장된다.
+ * - 같은 사용자의 다음 요청은 다른 스레드에서 처리될 수 있으므로 보장되지 않는다.
+ *   쓰고 나서 곧바로 다른 요청으로 읽어야 하는 화면은 그 읽기를 primaryOnly() 로 감싸야 한다.
+ * - 반대로 스레드 풀에서 같은 스레드를 받은 다른 사용자의 읽기가 primary 로 갈 수는 있다. (정합성 문제는 없음)
+ */
+public final class ReplicaRoutingContext {
+
+    private static final ThreadLocal<int[]> primaryOnlyDepth = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<long[]> lastWriteNanos = ThreadLocal.withInitial(() -> new long[]{Long.MIN_VALUE});
+
+    private ReplicaRoutingContext() {
+    }
+
+    public static Scope primaryOnly() {
+        primaryOnlyDepth.get()[0]++;
+        return () -> primaryOnlyDepth.get()[0]--;
+    }
+
+    public static boolean isPrimaryOnly() {
+        return primaryOnlyDepth.get()[0] > 0;
+    }
+
+    static void markWrite() {
+        lastWriteNanos.get()[0] = System.nanoTime();
+    }
+
+    static boolean wroteWithin(long windowNanos) {
+        long last = lastWriteNanos.get()[0];
+        return last != Long.MIN_VALUE && System.nanoTime() - last < windowNanos;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * readOnly 트랜잭션은 replica, 나머지(쓰기, 트랜잭션 밖)는 primary.
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 동기화 매니저에 없으므로
+ * 반드시 LazyConnectionDataSourceProxy 로 감싸서 첫 statement 때 커넥션을 잡게 해야 한다.
+ *
+ * replica 커넥션 획득에 실패하면 그 replica 를 DOWN 으로 표시하고 다음 replica, 전부 실패하면 primary 로 간다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaDataSources dataSources;
+    private final long readYourWritesWindowNanos;
+
+    public ReplicaRoutingDataSource(ReplicaDataSources dataSources, Duration readYourWritesWindow) {
+        this.dataSources = dataSources;
+        this.readYourWritesWindowNanos = readYourWritesWindow.toNanos();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, dataSources.getPrimary());
+        for (ReplicaDataSources.Node node : dataSources.getReplicas()) {
+            targets.put(node.getName(), node.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(dataSources.getPrimary());
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!useReplica()) {
+            return PRIMARY;
+        }
+        List<ReplicaDataSources.Node> healthy = dataSources.healthyInRoundRobinOrder();
+        return healthy.isEmpty() ? PRIMARY : healthy.get(0).getName();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!useReplica()) {
+            markWriteIfNeeded();
+            return dataSources.getPrimary().getConnection();
+        }
+        for (ReplicaDataSources.Node node : dataSources.healthyInRoundRobinOrder()) {
+            try {
+                return node.getDataSource().getConnection();
+            } catch (SQLException e) {
+                node.markDown(e);
+            }
+        }
+        return dataSources.getPrimary().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    private boolean useReplica() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReplicaRoutingContext.isPrimaryOnly()
+                && !ReplicaRoutingContext.wroteWithin(readYourWritesWindowNanos);
+    }
+
+    /**
+     * 쓰기 트랜잭션이면 끝날 때 시각을 기록해서 직후 읽기가 primary 로 가게 한다.
+     */
+    private void markWriteIfNeeded() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        ReplicaRoutingContext.markWrite();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ReplicaRoutingContext.markWrite();
+                }
+            });
+        }
+    }
+}
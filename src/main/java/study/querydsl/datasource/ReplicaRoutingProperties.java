@@ -0,0 +1,44 @@
+package study.querydsl.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "datasource.routing")
+public class ReplicaRoutingProperties {
+
+    /** 켜면 readOnly 트랜잭션을 replicas 로 보낸다. primary 는 spring.datasource 설정을 쓴다. */
+    private boolean enabled = false;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** replica 상태 점검 주기. 실패한 replica 는 다음 점검에서 살아나야 다시 쓴다. */
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    /** replica 커넥션 획득 대기 시간. 짧아야 장애 replica 를 빨리 건너뛴다. */
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 쓰기 트랜잭션 후 이 시간 동안은 같은 스레드의 읽기도 primary 로 보낸다. (복제 지연 대비)
+     * 스레드 기준이라 같은 사용자의 다음 요청에는 적용되지 않는다. (ReplicaRoutingContext 참고)
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+    private int maximumPoolSize = 10;
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private String driverClassName;
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset(seek) 페이징용 커서.
+ * 클라이언트에는 encode() 결과만 내려주고, 내부 구조는 노출하지 않는다.
+ * age 가 null 이면 member.id 정렬, 아니면 (age, id) 정렬 커서.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberCursor {
+
+    private static final String ID_ORDER = "i";
+    private static final String AGE_ORDER = "a";
+
+    private final Integer age;
+    private final Long memberId;
+
+    public static MemberCursor ofId(Long memberId) {
+        return new MemberCursor(null, memberId);
+    }
+
+    public static MemberCursor ofAgeAndId(int age, Long memberId) {
+        return new MemberCursor(age, memberId);
+    }
+
+    public boolean isAgeOrder() {
+        return age != null;
+    }
+
+    public String encode() {
+        String raw = isAgeOrder()
+                ? AGE_ORDER + ":" + age + ":" + memberId
+                : ID_ORDER + ":" + memberId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token encode() 로 만든 값. null 또는 빈 값이면 첫 페이지.
+     * @throws IllegalArgumentException 변조되었거나 형식이 맞지 않는 토큰
+     */
+    public static MemberCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length == 2 && ID_ORDER.equals(parts[0])) {
+                return ofId(Long.parseLong(parts[1]));
+            }
+            if (parts.length == 3 && AGE_ORDER.equals(parts[0])) {
+                return ofAgeAndId(Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + token, e);
+        }
+        throw new IllegalArgumentException("invalid cursor: " + token);
+    }
+}
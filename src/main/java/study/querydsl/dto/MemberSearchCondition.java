@@ -6,6 +6,9 @@ import lombok.Data;
 public class MemberSearchCondition {
 
     private String username;
+    //username 앞부분 / 부분 문자열 (대소문자 구분)
+    private String usernamePrefix;
+    private String usernameContains;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * searchAfter 결과. 다음 페이지는 nextCursor 로 요청한다. (마지막 페이지면 null)
+ */
+@Getter
+public class MemberTeamSlice {
+    private final List<MemberTeamDto> content;
+    private final String nextCursor;
+
+    public MemberTeamSlice(List<MemberTeamDto> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.SortedMap;
+
+@Data
+public class TeamStatisticsDto {
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    private Double avgAge;
+    private Integer minAge;
+    private Integer maxAge;
+    /** 10살 단위 구간 시작 age -> member 수 */
+    private SortedMap<Integer, Long> ageHistogram;
+}
@@ -0,0 +1,36 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import java.io.Serializable;
+
+/**
+ * CSV import 에서 커밋된 청크 (청크 하나당 한 row). 청크의 member insert 와 같은 트랜잭션으로 들어간다.
+ * 같은 importKey 로 다시 실행하면 여기 있는 청크는 건너뛴다.
+ */
+@Entity
+@Getter
+@IdClass(MemberImportCheckpoint.Key.class)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberImportCheckpoint {
+    @Id
+    private String importKey;
+    /** 청크 시작 byte offset (파일 기준, 줄 경계로 맞추기 전 값) */
+    @Id
+    private long chunkStart;
+    private long memberCount;
+
+    @Getter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private String importKey;
+        private long chunkStart;
+    }
+}
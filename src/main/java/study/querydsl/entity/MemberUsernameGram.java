@@ -0,0 +1,41 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * username trigram posting (gram 하나 x member 하나당 한 row). usernameContains 후보를 DB 에서 좁히는 데 쓴다.
+ * PK (gram, member_id) 가 gram 별 posting 목록이고, member_id 인덱스는 member 가 바뀔 때 지우는 용도.
+ * member 와 FK 는 두지 않는다. (JDBC 벌크 삭제 뒤 재구축 전까지 남은 row 는 조인에서 걸러진다)
+ */
+@Entity
+@Getter
+@IdClass(MemberUsernameGram.Key.class)
+@Table(indexes = @Index(name = "idx_member_username_gram_member", columnList = "member_id"))
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberUsernameGram {
+    @Id
+    @Column(length = 8)
+    private String gram;
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @Getter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private String gram;
+        private Long memberId;
+    }
+}
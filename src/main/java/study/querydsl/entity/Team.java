@@ -1,6 +1,10 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import study.querydsl.entity.Member;
 
 import javax.persistence.*;
@@ -12,12 +16,19 @@ import java.util.List;
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 public class Team {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "team_seq")
+    @GenericGenerator(name = "team_seq", strategy = "study.querydsl.entity.id.PooledIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "team_seq"),
+            @Parameter(name = "increment_size", value = "10")})
     @Column(name = "team_id")
     private Long id;
     private String name;
+    //member id 목록만 캐시된다. Member 는 캐시하지 않으므로 초기화는 Member 의 @BatchSize 로 묶어서 조회
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team.members")
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
     public Team(String name) {
@@ -0,0 +1,42 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import java.io.Serializable;
+
+/**
+ * 팀별 age 히스토그램 (age 하나당 한 row). min/max 는 여기서 member_count > 0 인 age 로 구한다.
+ */
+@Entity
+@Getter
+@IdClass(TeamAgeCount.Key.class)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamAgeCount {
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    @Id
+    private int age;
+    private long memberCount;
+
+    public TeamAgeCount(Long teamId, int age, long memberCount) {
+        this.teamId = teamId;
+        this.age = age;
+        this.memberCount = memberCount;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long teamId;
+        private int age;
+    }
+}
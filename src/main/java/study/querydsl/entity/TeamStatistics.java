@@ -0,0 +1,33 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 팀별 member 수 / age 합계 (읽기 모델). Member 변경 시 TeamStatisticsUpdater 가 증분 반영한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamStatistics {
+
+    /** 팀이 없는 member 는 이 team_id 로 집계한다. (전체 건수 추정용, 실제 팀 id 는 1 부터) */
+    public static final long NO_TEAM = 0L;
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    private long memberCount;
+    private long ageSum;
+
+    public TeamStatistics(Long teamId, long memberCount, long ageSum) {
+        this.teamId = teamId;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.entity.id;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 시퀀스에서 id 블록 단위로 받아와서 메모리에서 나눠주는 generator. (pooled-lo 방식)
+ * 시퀀스는 increment_size 씩 증가하고, 받은 값 v 에 대해 [v, v + increment_size) 를 이 JVM 이 쓴다.
+ *
+ * Hibernate 기본 optimizer 는 synchronized 라 동시 insert 시 병목이 되므로
+ * 블록 안에서는 CAS 로만 할당하고, 블록이 떨어졌을 때만 시퀀스를 호출한다.
+ * 두 스레드가 동시에 새 블록을 받으면 늦은 쪽 블록의 나머지는 버려진다. (id 에 구멍이 생길 뿐 중복은 없다)
+ *
+ * 엔티티별 설정: @GenericGenerator 의 sequence_name, increment_size
+ * 운영 중 조정: spring.jpa.properties.querydsl.id.block-size.{sequence_name} 가 있으면 increment_size 를 덮어쓴다.
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+
+    public static final String BLOCK_SIZE_OVERRIDE_PREFIX = "querydsl.id.block-size.";
+
+    private final AtomicReference<Block> current = new AtomicReference<>();
+    private long blockSize;
+
+    public PooledIdGenerator() {
+    }
+
+    /**
+     * 테스트용. configure 없이 블록 크기만 정한다. (nextBlockStart 를 바꿔서 쓴다)
+     */
+    PooledIdGenerator(long blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object override = serviceRegistry.getService(ConfigurationService.class).getSettings()
+                .get(BLOCK_SIZE_OVERRIDE_PREFIX + params.getProperty(SEQUENCE_PARAM));
+        if (override != null) {
+            params.setProperty(INCREMENT_PARAM, override.toString());
+        }
+        //increment_size > 1 일 때 DDL 의 increment by 가 블록 크기가 되도록 pooled-lo 로 둔다. (optimizer 자체는 쓰지 않음)
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+        this.blockSize = getDatabaseStructure().getIncrementSize();
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Block block = current.get();
+        if (block != null) {
+            long id = block.next.getAndIncrement();
+            if (id < block.limit) {
+                return id;
+            }
+        }
+        Block fresh = nextBlock(session);
+        long id = fresh.next.getAndIncrement();
+        current.compareAndSet(block, fresh);
+        return id;
+    }
+
+    private Block nextBlock(SharedSessionContractImplementor session) {
+        long lo = nextBlockStart(session);
+        return new Block(lo, lo + blockSize);
+    }
+
+    /**
+     * 시퀀스를 호출해서 새 블록의 첫 값을 받는다.
+     */
+    long nextBlockStart(SharedSessionContractImplementor session) {
+        return getDatabaseStructure().buildCallback(session).getNextValue().makeValue().longValue();
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        private Block(long lo, long limit) {
+            this.next = new AtomicLong(lo);
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package study.querydsl.event;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * 벌크 JPQL(queryFactory.update(member)..., delete(member)...) 은 엔티티 이벤트 없이 바로 SQL 로 나간다.
+ * Hibernate 가 준비하는 SQL 중 member/team 을 건드리는 것 가운데
+ * 엔티티 한 건 단위(where PK=?) 가 아닌 것을 벌크 변경으로 보고 알린다.
+ * statement 준비 시점(커밋 전)에 알리므로, 커밋된 결과를 기준으로 해야 하는 리스너는
+ * 트랜잭션이 끝날 때 한 번 더 처리해야 한다. (MemberSearchCache, MemberColumnarIndex)
+ */
+public class MemberBulkStatementInspector implements StatementInspector {
+
+    private final ObjectProvider<MemberChangePublisher> publisher;
+
+    public MemberBulkStatementInspector(ObjectProvider<MemberChangePublisher> publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (isBulk(sql)) {
+            MemberChangePublisher target = publisher.getIfAvailable();
+            if (target != null) {
+                target.publishBulkChange();
+            }
+        }
+        return sql;
+    }
+
+    static boolean isBulk(String sql) {
+        String s = sql.trim();
+        if (startsWith(s, "update member ") || startsWith(s, "delete from member ")
+                || (startsWith(s, "insert into member ") && s.contains(" select "))) {
+            return !endsWith(s, "where member_id=?");
+        }
+        //team_statistics 같은 다른 테이블과 구분하려고 테이블 이름 뒤 공백까지 비교한다.
+        if (startsWith(s, "update team ") || startsWith(s, "delete from team ")) {
+            return !endsWith(s, "where team_id=?");
+        }
+        return false;
+    }
+
+    private static boolean startsWith(String s, String prefix) {
+        return s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static boolean endsWith(String s, String suffix) {
+        return s.regionMatches(true, s.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.EventSource;
+
+/**
+ * flush 시점에 발생한 Member 한 건의 변경.
+ * before 는 INSERT 이거나 Hibernate 가 이전 상태를 모를 때(detached merge 등) null 이다.
+ */
+@Getter
+@RequiredArgsConstructor
+public class MemberChange {
+
+    public enum Type {INSERT, UPDATE, DELETE}
+
+    private final Type type;
+    private final MemberState before;
+    private final MemberState after;
+    private final EventSource session;
+
+    public boolean isBeforeUnknown() {
+        return type != Type.INSERT && before == null;
+    }
+}
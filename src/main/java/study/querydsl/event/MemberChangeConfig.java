@@ -0,0 +1,20 @@
+package study.querydsl.event;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MemberChangeConfig {
+
+    /**
+     * publisher 는 EntityManagerFactory 가 만들어진 뒤에 생성되므로 ObjectProvider 로 늦게 꺼내 쓴다.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer memberBulkStatementInspector(ObjectProvider<MemberChangePublisher> publisher) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new MemberBulkStatementInspector(publisher));
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.event;
+
+/**
+ * Member 데이터 변경 구독자. 빈으로 등록하면 MemberChangePublisher 가 알려준다.
+ */
+public interface MemberChangeListener {
+
+    /**
+     * 엔티티 단위 변경 (persist, dirty checking, remove).
+     * flush 도중 호출되므로 여기서 쿼리를 날리면 안 된다.
+     */
+    void onMemberChange(MemberChange change);
+
+    /**
+     * 어떤 row 가 바뀌었는지 알 수 없는 변경. (벌크 update/delete, Team 이름 변경 등)
+     */
+    void onBulkChange();
+}
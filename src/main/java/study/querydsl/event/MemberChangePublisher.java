@@ -0,0 +1,138 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Hibernate post insert/update/delete 이벤트를 MemberChange 로 바꿔서 구독자에게 전달한다.
+ * 엔티티 클래스(Member.changeTeam 등)는 빈을 주입받을 수 없으므로 이벤트 리스너로 변경을 잡는다.
+ * 벌크 JPQL 은 이벤트가 발생하지 않는다 -> MemberBulkStatementInspector 가 publishBulkChange 를 호출.
+ *
+ * 대량 생성처럼 row 단위 알림이 의미 없는 작업은 suppressRowChanges() 범위 안에서 flush/커밋하고,
+ * 끝난 뒤 publishBulkChange 를 한 번 호출한다. 범위는 스레드 단위다. (flush 와 커밋이 같은 스레드에서 일어나야 한다)
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberChangePublisher
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final ThreadLocal<int[]> suppressDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final EntityManagerFactory emf;
+    private final List<MemberChangeListener> listeners;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            MemberState after = toState(event.getId(), event.getState(), event.getPersister());
+            publish(new MemberChange(MemberChange.Type.INSERT, null, after, event.getSession()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            MemberState before = event.getOldState() != null
+                    ? toState(event.getId(), event.getOldState(), event.getPersister())
+                    : null;
+            MemberState after = toState(event.getId(), event.getState(), event.getPersister());
+            publish(new MemberChange(MemberChange.Type.UPDATE, before, after, event.getSession()));
+        } else if (event.getEntity() instanceof Team) {
+            //팀 이름이 바뀌면 그 팀 member 전부의 teamName 이 바뀐 것과 같다.
+            publishBulkChange();
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            MemberState before = toState(event.getId(), event.getDeletedState(), event.getPersister());
+            publish(new MemberChange(MemberChange.Type.DELETE, before, null, event.getSession()));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    public void publishBulkChange() {
+        for (MemberChangeListener listener : listeners) {
+            listener.onBulkChange();
+        }
+    }
+
+    /**
+     * 이 범위 안에서 현재 스레드가 일으킨 row 단위 변경은 구독자에게 알리지 않는다.
+     * 파생 구조가 그동안 어긋나므로 범위를 닫은 뒤 반드시 publishBulkChange 를 호출해야 한다.
+     */
+    public Scope suppressRowChanges() {
+        suppressDepth.get()[0]++;
+        return () -> suppressDepth.get()[0]--;
+    }
+
+    private void publish(MemberChange change) {
+        if (suppressDepth.get()[0] > 0) {
+            return;
+        }
+        for (MemberChangeListener listener : listeners) {
+            listener.onMemberChange(change);
+        }
+    }
+
+    /**
+     * flush 도중이므로 team 프록시를 초기화하지 않는다. 초기화 안 된 프록시면 teamName 은 모르는 것으로 둔다.
+     */
+    private MemberState toState(Object id, Object[] state, EntityPersister persister) {
+        if (state == null) {
+            return null;
+        }
+        String username = (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+        int age = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+        Object team = state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        if (team == null) {
+            return new MemberState((Long) id, username, age, null, null, true);
+        }
+        if (team instanceof HibernateProxy) {
+            LazyInitializer proxy = ((HibernateProxy) team).getHibernateLazyInitializer();
+            if (proxy.isUninitialized()) {
+                return new MemberState((Long) id, username, age, (Long) proxy.getIdentifier(), null, false);
+            }
+            team = proxy.getImplementation();
+        }
+        return new MemberState((Long) id, username, age, ((Team) team).getId(), ((Team) team).getName(), true);
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.event;
+
+import lombok.Value;
+
+/**
+ * 변경 전/후 Member 의 검색 조건 관련 값 스냅샷.
+ * teamName 은 team 프록시가 이미 초기화돼 있을 때만 안다. (flush 중에 초기화하면 쿼리가 나간다)
+ * 모르면 teamName 은 null, teamNameKnown 은 false. (teamId 는 프록시에서 항상 읽을 수 있다)
+ */
+@Value
+public class MemberState {
+    Long id;
+    String username;
+    int age;
+    Long teamId;
+    String teamName;
+    boolean teamNameKnown;
+}
@@ -0,0 +1,91 @@
+package study.querydsl.exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 쓰는 대로 gzip 으로 압축해서 아래 채널로 보내는 채널. (gzip 명령이나 GZIPInputStream 으로 풀 수 있다)
+ * Deflater 에 ByteBuffer 를 그대로 넘겨서 GZIPOutputStream 처럼 byte[] 로 복사하지 않는다.
+ */
+final class GzipChannel implements WritableByteChannel {
+
+    private static final byte[] NO_INPUT = new byte[0];
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final WritableByteChannel channel;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer compressed;
+    private long uncompressedBytes;
+    private boolean open = true;
+
+    GzipChannel(WritableByteChannel channel, int bufferBytes, int level) throws IOException {
+        this.channel = channel;
+        //gzip 헤더/트레일러는 직접 쓰므로 zlib 래퍼 없이(nowrap) deflate 만 한다.
+        this.deflater = new Deflater(level, true);
+        this.compressed = ByteBuffer.allocateDirect(bufferBytes);
+        writeFully(ByteBuffer.wrap(HEADER));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int length = src.remaining();
+        crc.update(src.duplicate());
+        uncompressedBytes += length;
+        deflater.setInput(src);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+        //Deflater 가 src 를 계속 잡고 있으면, 호출한 쪽이 버퍼를 clear 한 뒤 finish 할 때 그 내용을 다시 압축한다.
+        deflater.setInput(NO_INPUT);
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue());
+            trailer.putInt((int) uncompressedBytes);
+            trailer.flip();
+            writeFully(trailer);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void deflate() throws IOException {
+        deflater.deflate(compressed);
+        compressed.flip();
+        writeFully(compressed);
+        compressed.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.exporter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * row 를 blockRows 개씩 모아 컬럼별로 쓰는 바이너리 형식. 메모리는 블록 하나 분량만 쓴다.
+ * 같은 컬럼 값이 붙어 있어서 gzip 압축도 CSV 보다 잘 된다.
+ *
+ * <pre>
+ * file   := "MCOL" version(1) block* varint(0)
+ * block  := varint(rowCount)
+ *           member_id  rowCount x zigzag(앞 row 와의 차이, 블록 첫 row 는 0 과의 차이)
+ *           age        rowCount x zigzag
+ *           team dict  varint(D), D x (varint(team_id), string(team_name))
+ *           team ref   rowCount x varint(0 = 팀 없음, i = dict 의 i 번째)
+ *           username   rowCount x string
+ * string := varint(UTF-8 길이 + 1) bytes, 0 = null
+ * varint := 부호 없는 LEB128
+ * </pre>
+ * 블록마다 차이 기준과 팀 사전이 새로 시작하므로 블록 하나만 따로 읽을 수 있다.
+ */
+final class MemberColumnarEncoder extends MemberRowEncoder {
+
+    static final byte[] MAGIC = {'M', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+
+    private final int blockRows;
+    private final long[] memberIds;
+    private final int[] ages;
+    private final int[] teamRefs;
+    private final int[] usernameLengths;
+    private byte[] usernameBytes = new byte[4096];
+    private int usernameSize;
+    private int rows;
+
+    //블록 팀 사전: team_id -> 번호 (1 부터). 블록마다 비운다.
+    private final long[] dictKeys;
+    private final int[] dictValues;
+    private final long[] dictTeamIds;
+    private final String[] dictNames;
+    private int dictSize;
+
+    MemberColumnarEncoder(ExportChannel out, int blockRows) {
+        super(out);
+        this.blockRows = blockRows;
+        this.memberIds = new long[blockRows];
+        this.ages = new int[blockRows];
+        this.teamRefs = new int[blockRows];
+        this.usernameLengths = new int[blockRows];
+        int capacity = Integer.highestOneBit(Math.max(blockRows * 2, 16) - 1) << 1;
+        this.dictKeys = new long[capacity];
+        this.dictValues = new int[capacity];
+        this.dictTeamIds = new long[blockRows];
+        this.dictNames = new String[blockRows];
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    @Override
+    protected void writeRow(long memberId, String username, int age, Long teamId, String teamName) throws IOException {
+        memberIds[rows] = memberId;
+        ages[rows] = age;
+        teamRefs[rows] = teamId == null ? 0 : teamRef(teamId, teamName);
+        if (username == null) {
+            usernameLengths[rows] = -1;
+        } else {
+            byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+            if (usernameSize + bytes.length > usernameBytes.length) {
+                usernameBytes = Arrays.copyOf(usernameBytes, Math.max(usernameSize + bytes.length, usernameBytes.length * 2));
+            }
+            System.arraycopy(bytes, 0, usernameBytes, usernameSize, bytes.length);
+            usernameSize += bytes.length;
+            usernameLengths[rows] = bytes.length;
+        }
+        if (++rows == blockRows) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        if (rows > 0) {
+            writeBlock();
+        }
+        out.writeVarLong(0);
+    }
+
+    private void writeBlock() throws IOException {
+        out.writeVarLong(rows);
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            out.writeZigZag(memberIds[i] - previous);
+            previous = memberIds[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            out.writeZigZag(ages[i]);
+        }
+        out.writeVarLong(dictSize);
+        for (int i = 0; i < dictSize; i++) {
+            out.writeVarLong(dictTeamIds[i]);
+            writeString(dictNames[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.writeVarLong(teamRefs[i]);
+        }
+        int offset = 0;
+        for (int i = 0; i < rows; i++) {
+            int length = usernameLengths[i];
+            if (length < 0) {
+                out.writeVarLong(0);
+            } else {
+                out.writeVarLong(length + 1L);
+                out.write(usernameBytes, offset, length);
+                offset += length;
+            }
+        }
+        rows = 0;
+        usernameSize = 0;
+        Arrays.fill(dictValues, 0);
+        Arrays.fill(dictNames, 0, dictSize, null);
+        dictSize = 0;
+    }
+
+    private int teamRef(long teamId, String teamName) {
+        int mask = dictKeys.length - 1;
+        int slot = Long.hashCode(teamId * 0x9E3779B97F4A7C15L) & mask;
+        while (dictValues[slot] != 0) {
+            if (dictKeys[slot] == teamId) {
+                return dictValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        dictTeamIds[dictSize] = teamId;
+        dictNames[dictSize] = teamName;
+        dictKeys[slot] = teamId;
+        dictValues[slot] = ++dictSize;
+        return dictSize;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeVarLong(bytes.length + 1L);
+        out.write(bytes);
+    }
+}
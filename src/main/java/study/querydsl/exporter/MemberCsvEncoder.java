@@ -0,0 +1,70 @@
+package study.querydsl.exporter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * member_id,username,age,team_id,team_name
+ * null 은 빈 필드, 빈 문자열은 "". , " 줄바꿈이 들어간 값은 따옴표로 감싸고 " 는 "" 로 쓴다. (RFC 4180)
+ * 따옴표 안 줄바꿈을 그대로 쓰고 컬럼도 다르므로 MemberCsvImporter 로 다시 읽는 형식은 아니다.
+ * (importer 는 청크 경계 때문에 따옴표 안 줄바꿈을 받지 않는다)
+ */
+final class MemberCsvEncoder extends MemberRowEncoder {
+
+    private static final byte[] HEADER = "member_id,username,age,team_id,team_name\n".getBytes(StandardCharsets.US_ASCII);
+
+    MemberCsvEncoder(ExportChannel out) {
+        super(out);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write(HEADER);
+    }
+
+    @Override
+    protected void writeRow(long memberId, String username, int age, Long teamId, String teamName) throws IOException {
+        out.writeDecimal(memberId);
+        out.write(',');
+        writeString(username);
+        out.write(',');
+        out.writeDecimal(age);
+        out.write(',');
+        if (teamId != null) {
+            out.writeDecimal(teamId);
+        }
+        out.write(',');
+        writeString(teamName);
+        out.write('\n');
+    }
+
+    @Override
+    protected void writeTrailer() {
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        out.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,81 @@
+package study.querydsl.exporter;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+/**
+ * member export 옵션.
+ * - format: CSV 또는 COLUMNAR (MemberColumnarEncoder 참고)
+ * - compress: 쓰는 대로 gzip 압축 (.gz)
+ * - parallelism: member_id 범위를 나눠서 스레드마다 파일 하나씩 쓴다.
+ * - fetchSize: JDBC 가 한 번에 가져오는 row 수 (커서)
+ */
+@Getter
+public class MemberExportOptions {
+
+    public enum Format {
+        CSV("csv"),
+        COLUMNAR("mcol");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    private final Format format;
+    private final boolean compress;
+    private final int parallelism;
+    private final int fetchSize;
+    private final int bufferBytes;
+    /** COLUMNAR 블록 하나의 row 수 */
+    private final int blockRows;
+
+    private MemberExportOptions(Format format, boolean compress, int parallelism, int fetchSize, int bufferBytes,
+                                int blockRows) {
+        Assert.notNull(format, "format must not be null");
+        Assert.isTrue(parallelism > 0, "parallelism must be positive");
+        Assert.isTrue(fetchSize > 0, "fetchSize must be positive");
+        Assert.isTrue(bufferBytes > 0, "bufferBytes must be positive");
+        Assert.isTrue(blockRows > 0, "blockRows must be positive");
+        this.format = format;
+        this.compress = compress;
+        this.parallelism = parallelism;
+        this.fetchSize = fetchSize;
+        this.bufferBytes = bufferBytes;
+        this.blockRows = blockRows;
+    }
+
+    public static MemberExportOptions of(Format format) {
+        return new MemberExportOptions(format, false, 1, DEFAULT_FETCH_SIZE, DEFAULT_BUFFER_BYTES, DEFAULT_BLOCK_ROWS);
+    }
+
+    public MemberExportOptions compressed() {
+        return new MemberExportOptions(format, true, parallelism, fetchSize, bufferBytes, blockRows);
+    }
+
+    public MemberExportOptions withParallelism(int parallelism) {
+        return new MemberExportOptions(format, compress, parallelism, fetchSize, bufferBytes, blockRows);
+    }
+
+    public MemberExportOptions withFetchSize(int fetchSize) {
+        return new MemberExportOptions(format, compress, parallelism, fetchSize, bufferBytes, blockRows);
+    }
+
+    public MemberExportOptions withBlockRows(int blockRows) {
+        return new MemberExportOptions(format, compress, parallelism, fetchSize, bufferBytes, blockRows);
+    }
+
+    String fileName(int part) {
+        return "member-" + part + "." + format.getExtension() + (compress ? ".gz" : "");
+    }
+}
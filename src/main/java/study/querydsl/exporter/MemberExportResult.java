@@ -0,0 +1,22 @@
+package study.querydsl.exporter;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * export 결과. files 는 member_id 범위 순서.
+ */
+@Value
+public class MemberExportResult {
+    List<Path> files;
+    long rows;
+    /** 파일 크기 합 (압축했으면 압축 후) */
+    long bytes;
+    long elapsedMillis;
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : rows * 1000 / elapsedMillis;
+    }
+}
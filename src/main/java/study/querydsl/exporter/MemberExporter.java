@@ -0,0 +1,227 @@
+package study.querydsl.exporter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * member + team 을 파일로 내보낸다. findAll() 처럼 엔티티 목록(과 영속성 컨텍스트 스냅샷)을 만들지 않는다.
+ *
+ * - member_id 범위마다 forward-only 커서로 읽어서 row 를 바로 인코더(CSV / COLUMNAR)로 쓴다.
+ * - 출력은 고정 크기 버퍼(ExportChannel) -> (압축이면 GzipChannel) -> FileChannel.
+ *   그래서 힙 사용량은 테이블 크기와 상관없이 fetchSize + 버퍼 + COLUMNAR 블록 하나 정도다.
+ * - parallelism > 1 이면 [min id, max id] 를 같은 폭으로 나눠 스레드마다 읽기 전용 트랜잭션(커넥션) 하나, 파일 하나를 쓴다.
+ *   (id 가 고르게 퍼져 있지 않으면 파일 크기가 차이 날 수 있다)
+ * - 파일은 {이름}.tmp 에 쓰고 모든 파티션이 끝난 뒤에 ATOMIC_MOVE 로 이름을 바꾼다.
+ *   실패하면 .tmp 와 이번에 이름을 바꾼 파일을 지우므로, 잘린(그래도 형식은 맞는) 파일이 남지 않는다.
+ *
+ * 드라이버가 fetchSize 를 지켜야 커서로 읽힌다. (H2, PostgreSQL(트랜잭션 안) 은 그대로, MySQL 은 useCursorFetch=true)
+ */
+@Slf4j
+@Component
+public class MemberExporter {
+
+    private static final String SELECT_RANGE = "select m.member_id, m.username, m.age, t.team_id, t.name"
+            + " from member m left join team t on m.team_id = t.team_id"
+            + " where m.member_id >= ? and m.member_id < ?"
+            + " order by m.member_id";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    public MemberExporter(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * @param directory 여기에 member-{part}.{csv|mcol}[.gz] 를 쓴다. (같은 이름 파일은 성공했을 때만 바뀐다)
+     */
+    public MemberExportResult export(Path directory, MemberExportOptions options) {
+        long startedAt = System.nanoTime();
+        long[] bounds = partitionBounds(options.getParallelism());
+        int partitions = bounds.length - 1;
+        List<Path> files = new ArrayList<>(partitions);
+        for (int part = 0; part < partitions; part++) {
+            files.add(directory.resolve(options.fileName(part)));
+        }
+
+        long rows = 0;
+        long bytes = 0;
+        List<Path> moved = new ArrayList<>(partitions);
+        boolean completed = false;
+        try {
+            if (partitions == 1) {
+                rows = exportRange(files.get(0), bounds[0], bounds[1], options);
+            } else {
+                rows = exportParallel(files, bounds, options);
+            }
+            for (Path file : files) {
+                Files.move(temporaryFile(file), file, StandardCopyOption.ATOMIC_MOVE);
+                moved.add(file);
+                bytes += Files.size(file);
+            }
+            completed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!completed) {
+                for (Path file : files) {
+                    deleteQuietly(temporaryFile(file));
+                }
+                moved.forEach(MemberExporter::deleteQuietly);
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        MemberExportResult result = new MemberExportResult(files, rows, bytes, elapsedMillis);
+        log.info("exported {} members to {} files ({} bytes) in {} ms ({} rows/sec)",
+                rows, files.size(), bytes, elapsedMillis, result.getRowsPerSecond());
+        return result;
+    }
+
+    private long exportParallel(List<Path> files, long[] bounds, MemberExportOptions options) {
+        int partitions = files.size();
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<Long>> futures = new ArrayList<>(partitions);
+            for (int part = 0; part < partitions; part++) {
+                Path file = files.get(part);
+                long from = bounds[part];
+                long to = bounds[part + 1];
+                futures.add(executor.submit(() -> exportRange(file, from, to, options)));
+            }
+            long rows = 0;
+            for (Future<Long> future : futures) {
+                rows += future.get();
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("member export failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            //중단된 파티션이 .tmp 를 다 닫은 뒤에 지우도록 기다린다.
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("member export threads did not stop in 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 파티션 경계 [b0, b1, ... bn]. 파티션 i 는 [b(i), b(i+1)) 이고 비어 있는 테이블이면 파티션 하나
+     */
+    private long[] partitionBounds(int parallelism) {
+        Object[] minMax = readOnlyTransaction.execute(status -> em.createQuery(
+                        "select min(m.id), max(m.id) from Member m", Object[].class)
+                .getSingleResult());
+        if (minMax[0] == null) {
+            return new long[]{0, 0};
+        }
+        long min = (Long) minMax[0];
+        long max = (Long) minMax[1];
+        long span = max - min + 1;
+        int partitions = (int) Math.max(1, Math.min(parallelism, span));
+        long width = (span + partitions - 1) / partitions;
+        long[] bounds = new long[partitions + 1];
+        for (int i = 0; i < partitions; i++) {
+            bounds[i] = min + i * width;
+        }
+        bounds[partitions] = max + 1;
+        return bounds;
+    }
+
+    /**
+     * file 의 .tmp 에 쓴다. 이름은 export() 가 모든 파티션이 끝난 뒤에 바꾼다.
+     */
+    private long exportRange(Path file, long from, long to, MemberExportOptions options) {
+        long started = System.nanoTime();
+        try (ExportChannel out = new ExportChannel(open(temporaryFile(file), options), options.getBufferBytes())) {
+            MemberRowEncoder encoder = options.getFormat() == MemberExportOptions.Format.CSV
+                    ? new MemberCsvEncoder(out)
+                    : new MemberColumnarEncoder(out, options.getBlockRows());
+            readOnlyTransaction.executeWithoutResult(status -> em.unwrap(SessionImplementor.class).doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(SELECT_RANGE,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setLong(1, from);
+                    ps.setLong(2, to);
+                    ps.setFetchSize(options.getFetchSize());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            encoder.processRow(rs);
+                        }
+                    }
+                }
+            }));
+            long rows = encoder.finish();
+            log.info("exported member_id [{}, {}) -> {}: {} rows in {} ms",
+                    from, to, file.getFileName(), rows, (System.nanoTime() - started) / 1_000_000);
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path temporaryFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("failed to delete partial export file {}", file, e);
+        }
+    }
+
+    private static WritableByteChannel open(Path file, MemberExportOptions options) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!options.isCompress()) {
+            return channel;
+        }
+        try {
+            return new GzipChannel(channel, options.getBufferBytes(), Deflater.DEFAULT_COMPRESSION);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
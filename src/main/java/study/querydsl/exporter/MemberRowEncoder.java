@@ -0,0 +1,62 @@
+package study.querydsl.exporter;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * export 쿼리 row(member_id, username, age, team_id, team_name)를 파일 형식으로 쓴다.
+ * IOException 은 UncheckedIOException 으로 감싸서 던진다. (RowCallbackHandler 는 SQLException 만 던질 수 있다)
+ */
+abstract class MemberRowEncoder implements RowCallbackHandler {
+
+    protected final ExportChannel out;
+    private long rows;
+
+    protected MemberRowEncoder(ExportChannel out) {
+        this.out = out;
+    }
+
+    @Override
+    public final void processRow(ResultSet rs) throws SQLException {
+        try {
+            if (rows == 0) {
+                writeHeader();
+            }
+            long memberId = rs.getLong(1);
+            String username = rs.getString(2);
+            int age = rs.getInt(3);
+            long teamId = rs.getLong(4);
+            boolean noTeam = rs.wasNull();
+            writeRow(memberId, username, age, noTeam ? null : teamId, noTeam ? null : rs.getString(5));
+            rows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 남은 내용을 쓴다. (row 가 없어도 헤더는 쓴다)
+     * @return 쓴 row 수
+     */
+    final long finish() throws IOException {
+        if (rows == 0) {
+            writeHeader();
+        }
+        writeTrailer();
+        return rows;
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    /**
+     * @param teamId 팀이 없으면 null
+     */
+    protected abstract void writeRow(long memberId, String username, int age, Long teamId, String teamName)
+            throws IOException;
+
+    protected abstract void writeTrailer() throws IOException;
+}
@@ -0,0 +1,172 @@
+package study.querydsl.generator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangePublisher;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 대량 테스트 데이터 생성기.
+ * - batchSize 마다 flush + clear 해서 영속성 컨텍스트가 커지지 않게 하고 insert 는 JDBC 배치로 나가게 한다.
+ * - commitSize 마다 트랜잭션을 나눈다.
+ * - parallelism > 1 이면 member 범위를 나눠 스레드별 트랜잭션으로 동시에 넣는다.
+ * - row 마다 MemberChangePublisher 로 알리지 않고 (파생 구조가 건마다 갱신/gram insert 하지 않도록)
+ *   생성이 끝나면(실패해도) publishBulkChange 를 한 번 호출해서 재구축하게 한다. MemberCsvImporter 와 같은 방식.
+ */
+@Slf4j
+@Component
+public class MemberDataGenerator {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate transactionTemplate;
+    private final MemberChangePublisher changePublisher;
+
+    public MemberDataGenerator(PlatformTransactionManager transactionManager, MemberChangePublisher changePublisher) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changePublisher = changePublisher;
+    }
+
+    public long generate(MemberGeneratorProperties properties) {
+        long startedAt = System.nanoTime();
+        List<Long> teamIds = transactionTemplate.execute(status -> persistTeams(properties.getTeamCount()));
+
+        ZipfSampler usernames = properties.getUsernameSkew() > 0
+                ? new ZipfSampler(properties.getDistinctUsernames(), properties.getUsernameSkew())
+                : null;
+        AtomicLong inserted = new AtomicLong();
+
+        int parallelism = Math.max(1, properties.getParallelism());
+        try {
+            if (parallelism == 1) {
+                insertRange(properties, teamIds, usernames, 0, properties.getMemberCount(), 0, inserted, startedAt);
+            } else {
+                insertParallel(properties, teamIds, usernames, parallelism, inserted, startedAt);
+            }
+        } finally {
+            //실패해도 이미 커밋된 청크가 있다.
+            if (inserted.get() > 0) {
+                changePublisher.publishBulkChange();
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startedAt;
+        log.info("generated {} teams, {} members in {} ms ({} rows/sec)",
+                teamIds.size(), inserted.get(), elapsedNanos / 1_000_000, rowsPerSecond(inserted.get(), elapsedNanos));
+        return inserted.get();
+    }
+
+    private List<Long> persistTeams(int teamCount) {
+        List<Long> teamIds = new ArrayList<>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("team" + (char) ('A' + i % 26) + (i < 26 ? "" : String.valueOf(i / 26)));
+            em.persist(team);
+            teamIds.add(team.getId());
+        }
+        return teamIds;
+    }
+
+    private void insertParallel(MemberGeneratorProperties properties, List<Long> teamIds, ZipfSampler usernames,
+                                int parallelism, AtomicLong inserted, long startedAt) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            long total = properties.getMemberCount();
+            long perPartition = (total + parallelism - 1) / parallelism;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int partition = 0; partition < parallelism; partition++) {
+                long from = partition * perPartition;
+                long to = Math.min(total, from + perPartition);
+                if (from >= to) {
+                    break;
+                }
+                int p = partition;
+                futures.add(executor.submit(() ->
+                        insertRange(properties, teamIds, usernames, from, to, p, inserted, startedAt)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("member generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * [from, to) 범위 member 를 commitSize 단위 트랜잭션으로 넣는다. row 단위 변경 알림은 끈다.
+     */
+    private void insertRange(MemberGeneratorProperties properties, List<Long> teamIds, ZipfSampler usernames,
+                             long from, long to, int partition, AtomicLong inserted, long startedAt) {
+        try (MemberChangePublisher.Scope ignored = changePublisher.suppressRowChanges()) {
+            insertChunks(properties, teamIds, usernames, from, to, partition, inserted, startedAt);
+        }
+    }
+
+    private void insertChunks(MemberGeneratorProperties properties, List<Long> teamIds, ZipfSampler usernames,
+                              long from, long to, int partition, AtomicLong inserted, long startedAt) {
+        Random random = new Random(properties.getSeed() + partition);
+        for (long chunkFrom = from; chunkFrom < to; chunkFrom += properties.getCommitSize()) {
+            long chunkTo = Math.min(to, chunkFrom + properties.getCommitSize());
+            long start = chunkFrom;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (long i = start; i < chunkTo; i++) {
+                    //changeTeam 은 team.members 컬렉션을 초기화하므로 FK 만 설정한다.
+                    Member member = new Member(username(i, usernames, random), age(i, properties, random));
+                    member.setTeam(em.getReference(Team.class, teamIds.get((int) (i % teamIds.size()))));
+                    em.persist(member);
+                    if ((i - start + 1) % properties.getBatchSize() == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                }
+            });
+            long done = inserted.addAndGet(chunkTo - chunkFrom);
+            log.info("inserted {}/{} members ({} rows/sec)", done, properties.getMemberCount(),
+                    rowsPerSecond(done, System.nanoTime() - startedAt));
+        }
+    }
+
+    private String username(long i, ZipfSampler usernames, Random random) {
+        if (usernames == null) {
+            return "member" + i;
+        }
+        return "member" + usernames.sample(random);
+    }
+
+    private int age(long i, MemberGeneratorProperties properties, Random random) {
+        int min = properties.getAgeMin();
+        int range = properties.getAgeMax() - min + 1;
+        switch (properties.getAgeDistribution()) {
+            case UNIFORM:
+                return min + random.nextInt(range);
+            case NORMAL:
+                long age = Math.round(properties.getAgeMean() + random.nextGaussian() * properties.getAgeStddev());
+                return (int) Math.max(min, Math.min(properties.getAgeMax(), age));
+            default:
+                return min + (int) (i % range);
+        }
+    }
+
+    private static long rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000L / elapsedNanos;
+    }
+}
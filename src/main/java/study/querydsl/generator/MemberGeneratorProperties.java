@@ -0,0 +1,45 @@
+package study.querydsl.generator;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * init.member.* 설정. 기본값은 예전 InitMember 와 같은 데이터(팀 2개, member0~99, age = i)를 만든다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "init.member")
+public class MemberGeneratorProperties {
+
+    public enum AgeDistribution {
+        /** age = ageMin + (i % 범위). 예전 InitMember 방식 */
+        SEQUENTIAL,
+        UNIFORM,
+        NORMAL
+    }
+
+    private long memberCount = 100;
+    private int teamCount = 2;
+
+    private AgeDistribution ageDistribution = AgeDistribution.SEQUENTIAL;
+    private int ageMin = 0;
+    private int ageMax = 99;
+    private double ageMean = 40;
+    private double ageStddev = 15;
+
+    /**
+     * 0 이면 username 이 모두 다르다. (member0, member1 ...)
+     * 0 보다 크면 distinctUsernames 개 이름 중에서 zipf(s = usernameSkew) 분포로 뽑는다. 클수록 특정 이름에 몰린다.
+     */
+    private double usernameSkew = 0;
+    private int distinctUsernames = 10_000;
+
+    /** 이 건수마다 flush + clear (hibernate.jdbc.batch_size 와 맞추는게 좋다) */
+    private int batchSize = 1_000;
+    /** 이 건수마다 커밋 */
+    private int commitSize = 50_000;
+    /** member 범위를 나눠서 동시에 넣을 스레드 수 */
+    private int parallelism = 1;
+    private long seed = 42;
+}
@@ -0,0 +1,241 @@
+package study.querydsl.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * mmap 한 파일 구간에서 member CSV 레코드(username,age,team_name)를 읽는다.
+ * 필드는 버퍼 안 위치(start, end)로만 가지고 있고, String 은 JDBC 에 넘길 username 만 만든다.
+ * (age 는 byte 에서 바로 숫자로, team_name 은 TeamNameTable 이 byte 그대로 찾는다)
+ *
+ * 청크 경계 규칙 (재시작해도 같은 레코드가 같은 청크에 들어가도록 파일 크기와 청크 크기로만 정한다)
+ * - 청크 [start, end) 는 시작 위치가 그 안에 있는 레코드를 맡는다. 마지막 레코드는 end 를 넘어가도 끝까지 읽는다.
+ * - 그래서 start 가 줄 중간이면 그 줄은 앞 청크 몫이라 다음 줄부터 읽는다.
+ *
+ * 형식: UTF-8, 줄바꿈 \n 또는 \r\n, 빈 필드는 null, "..." 안의 "" 는 " 하나.
+ * 따옴표 안의 줄바꿈은 청크 경계를 정할 수 없어서 지원하지 않는다.
+ */
+final class CsvChunkReader {
+
+    static final int USERNAME = 0;
+    static final int AGE = 1;
+    static final int TEAM_NAME = 2;
+    private static final int FIELDS = 3;
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer view;
+    private final long bufferOffset;
+    private final int end;
+    private final boolean reachesFileEnd;
+    private final int[] starts = new int[FIELDS];
+    private final int[] ends = new int[FIELDS];
+    private final boolean[] escaped = new boolean[FIELDS];
+    private byte[] scratch = new byte[64];
+    private int position;
+    private int recordStart;
+
+    /**
+     * @param buffer         파일 구간 [bufferOffset, bufferOffset + buffer.limit())
+     * @param bufferOffset   buffer 0 번째 byte 의 파일 위치
+     * @param start          청크 시작 (buffer 기준). 0 이 아니면 buffer[start - 1] 이 있어야 한다.
+     * @param end            청크 끝 (buffer 기준)
+     * @param reachesFileEnd buffer 가 파일 끝까지 포함하는지. 아니면 buffer 끝을 넘는 레코드는 오류
+     */
+    CsvChunkReader(ByteBuffer buffer, long bufferOffset, int start, int end, boolean reachesFileEnd) {
+        this.buffer = buffer;
+        this.view = buffer.duplicate();
+        this.bufferOffset = bufferOffset;
+        this.end = end;
+        this.reachesFileEnd = reachesFileEnd;
+        this.position = start;
+        if (start > 0 && buffer.get(start - 1) != '\n') {
+            skipLine();
+        }
+    }
+
+    /**
+     * 헤더 줄을 건너뛴다. (파일 처음 청크에서만)
+     */
+    void skipLine() {
+        while (position < buffer.limit() && buffer.get(position) != '\n') {
+            position++;
+        }
+        position++;
+    }
+
+    /**
+     * @return 이 청크에 레코드가 더 있으면 읽고 true
+     */
+    boolean next() {
+        //빈 줄은 건너뛴다.
+        while (position < end && position < buffer.limit()
+                && (buffer.get(position) == '\n' || buffer.get(position) == '\r')) {
+            position++;
+        }
+        if (position >= end || position >= buffer.limit()) {
+            return false;
+        }
+        recordStart = position;
+        for (int field = 0; field < FIELDS; field++) {
+            position = readField(field, position);
+            if (position >= buffer.limit() && !reachesFileEnd) {
+                throw truncated();
+            }
+            byte delimiter = position < buffer.limit() ? buffer.get(position) : (byte) '\n';
+            if (field < FIELDS - 1) {
+                if (delimiter != ',') {
+                    throw invalid("expected " + FIELDS + " fields");
+                }
+                position++;
+            } else if (delimiter == ',') {
+                throw invalid("expected " + FIELDS + " fields");
+            }
+        }
+        if (position < buffer.limit() && buffer.get(position) == '\r') {
+            position++;
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * 따옴표 없는 빈 필드. ("" 는 빈 문자열)
+     */
+    boolean isNull(int field) {
+        return isEmpty(field) && !escaped[field];
+    }
+
+    boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    String string(int field) {
+        if (isNull(field)) {
+            return null;
+        }
+        int length = ends[field] - starts[field];
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        view.limit(ends[field]).position(starts[field]);
+        view.get(scratch, 0, length);
+        if (escaped[field]) {
+            length = unescape(scratch, length);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    int intValue(int field) {
+        int from = starts[field];
+        int to = ends[field];
+        boolean negative = from < to && buffer.get(from) == '-';
+        if (negative) {
+            from++;
+        }
+        if (from == to || to - from > 9) {
+            throw invalid("invalid number in field " + field);
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("invalid number in field " + field);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return team_name 의 teamId. 없는 이름이면 TeamNameTable.NOT_FOUND
+     */
+    long teamId(TeamNameTable teams) {
+        if (escaped[TEAM_NAME]) {
+            return teams.find(string(TEAM_NAME));
+        }
+        return teams.find(buffer, starts[TEAM_NAME], ends[TEAM_NAME]);
+    }
+
+    /**
+     * @return 지금 레코드의 파일 위치
+     */
+    long recordOffset() {
+        return bufferOffset + recordStart;
+    }
+
+    private int readField(int field, int from) {
+        int limit = buffer.limit();
+        escaped[field] = false;
+        if (from < limit && buffer.get(from) == '"') {
+            int i = from + 1;
+            while (true) {
+                if (i >= limit) {
+                    throw truncated();
+                }
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    throw invalid("line break inside quotes is not supported");
+                }
+                if (b == '"') {
+                    if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                        escaped[field] = true;
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            starts[field] = from + 1;
+            ends[field] = i;
+            //"" 도 빈 문자열이지 null 이 아니다.
+            escaped[field] |= i == from + 1;
+            return i + 1;
+        }
+        int i = from;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        starts[field] = from;
+        ends[field] = i;
+        return i;
+    }
+
+    private static int unescape(byte[] bytes, int length) {
+        int to = 0;
+        for (int from = 0; from < length; from++) {
+            bytes[to++] = bytes[from];
+            if (bytes[from] == '"') {
+                from++;
+            }
+        }
+        return to;
+    }
+
+    private IllegalArgumentException truncated() {
+        return invalid("record is longer than the read-ahead window or the file ends inside quotes");
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        int to = Math.min(buffer.limit(), recordStart + 80);
+        byte[] line = new byte[Math.max(0, to - recordStart)];
+        view.limit(to).position(recordStart);
+        view.get(line);
+        int newline = indexOf(line, (byte) '\n');
+        String text = new String(line, 0, newline < 0 ? line.length : newline, StandardCharsets.UTF_8);
+        return new IllegalArgumentException(message + " at byte offset " + recordOffset() + ": " + text);
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
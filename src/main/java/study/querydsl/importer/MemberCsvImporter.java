@@ -0,0 +1,340 @@
+package study.querydsl.importer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangePublisher;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 제휴사 member CSV(username,age,team_name, 첫 줄은 헤더)를 대량으로 넣는다.
+ *
+ * - 파일은 청크(chunkBytes) 단위로 mmap 해서 CsvChunkReader 로 읽는다. 청크 하나 = 트랜잭션 하나.
+ * - team_name 은 TeamNameTable(시작할 때 team 전체 로드)로 id 를 찾는다. 처음 보는 이름은 청크 트랜잭션 전에
+ *   파일을 한 번 훑어서 모아 두고 한 트랜잭션으로 만든다. 청크 트랜잭션 안에서 만들면 커넥션을 하나 더 잡아야 해서
+ *   worker 수가 커넥션 풀 크기 이상이면 서로 기다리다 멈춘다.
+ * - member 는 JPA 를 거치지 않고 JDBC 배치 insert 로 넣는다. id 는 Member 의 PooledIdGenerator 에서 받으므로
+ *   JPA 로 넣는 member 와 같은 시퀀스 블록을 나눠 쓴다.
+ * - 청크가 커밋될 때 MemberImportCheckpoint 도 같은 트랜잭션으로 들어간다.
+ *   실패한 뒤 같은 importKey 로 다시 실행하면 끝난 청크는 건너뛰고 나머지만 넣는다.
+ * - JDBC insert 는 Hibernate 이벤트가 없으므로 import 가 끝나면(실패해도) publishBulkChange 로 파생 구조(인덱스, 통계,
+ *   캐시)에 한 번 알리고 Team.members 컬렉션 캐시를 비운다. 청크마다 알리면 청크 수만큼 전체 재구축이 일어난다.
+ *   그래서 import 도중 커밋된 청크는 DB 조회에는 보이지만 파생 구조(컬럼 인덱스, gram, 검색 캐시)에는 끝난 뒤에 반영된다.
+ */
+@Slf4j
+@Component
+public class MemberCsvImporter {
+
+    private static final String INSERT_MEMBER =
+            "insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)";
+    private static final String INSERT_CHECKPOINT =
+            "insert into member_import_checkpoint (import_key, chunk_start, member_count) values (?, ?, ?)";
+    /** 청크 끝을 넘는 마지막 레코드를 위해 더 mmap 하는 크기. 이보다 긴 레코드는 오류 */
+    static final int READ_AHEAD_BYTES = 64 * 1024;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final EntityManagerFactory emf;
+    private final MemberChangePublisher changePublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemberCsvImporter(EntityManagerFactory emf, MemberChangePublisher changePublisher,
+                             PlatformTransactionManager transactionManager) {
+        this.emf = emf;
+        this.changePublisher = changePublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public MemberImportProgress importFile(Path file, MemberImportOptions options) {
+        long startedAt = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String importKey = options.getImportKey() != null ? options.getImportKey() : defaultImportKey(file, size);
+            int totalChunks = (int) ((size + options.getChunkBytes() - 1) / options.getChunkBytes());
+            Set<Long> finished = transactionTemplate.execute(status -> finishedChunks(importKey));
+            TeamNameTable teams = transactionTemplate.execute(status -> loadTeams());
+
+            List<Long> chunkStarts = new ArrayList<>();
+            for (int chunk = 0; chunk < totalChunks; chunk++) {
+                long chunkStart = (long) chunk * options.getChunkBytes();
+                if (!finished.contains(chunkStart)) {
+                    chunkStarts.add(chunkStart);
+                }
+            }
+            ImportRun run = new ImportRun(importKey, totalChunks, totalChunks - chunkStarts.size(), options, startedAt);
+            if (run.resumedChunks > 0) {
+                log.info("resuming import {}: {}/{} chunks already done", importKey, run.resumedChunks, totalChunks);
+            }
+            createUnknownTeams(channel, size, chunkStarts, teams, options);
+            try {
+                forEachChunk(chunkStarts, options.getParallelism(),
+                        chunkStart -> importChunk(channel, size, chunkStart, teams, run));
+            } finally {
+                //실패해도 이미 커밋된 청크가 있다.
+                if (run.rows.get() > 0) {
+                    notifyBulkInsert();
+                }
+            }
+            MemberImportProgress result = run.progress();
+            log.info("imported {} members from {} in {} ms ({} rows/sec, {} chunks resumed)",
+                    result.getRows(), file, result.getElapsedMillis(), result.getRowsPerSecond(), run.resumedChunks);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 처음 보는 team_name 을 모아서 청크 트랜잭션 전에 한 트랜잭션으로 만든다.
+     * 파일을 한 번 더 읽지만 mmap 한 byte 를 훑기만 하므로 insert 에 비하면 작다.
+     */
+    private void createUnknownTeams(FileChannel channel, long size, List<Long> chunkStarts, TeamNameTable teams,
+                                    MemberImportOptions options) {
+        Set<String> unknown = ConcurrentHashMap.newKeySet();
+        forEachChunk(chunkStarts, options.getParallelism(), chunkStart -> {
+            CsvChunkReader reader = openChunk(channel, size, chunkStart, options.getChunkBytes());
+            while (reader.next()) {
+                if (!reader.isEmpty(CsvChunkReader.TEAM_NAME) && reader.teamId(teams) == TeamNameTable.NOT_FOUND) {
+                    unknown.add(reader.string(CsvChunkReader.TEAM_NAME));
+                }
+            }
+        });
+        if (unknown.isEmpty()) {
+            return;
+        }
+        Map<String, Long> created = transactionTemplate.execute(status -> {
+            Map<String, Long> ids = new TreeMap<>();
+            for (String name : new TreeSet<>(unknown)) {
+                Team team = new Team(name);
+                em.persist(team);
+                ids.put(name, team.getId());
+            }
+            return ids;
+        });
+        created.forEach(teams::put);
+        log.info("created {} teams for import: {}", created.size(), created.keySet());
+    }
+
+    private void forEachChunk(List<Long> chunkStarts, int maxParallelism, LongConsumer task) {
+        int parallelism = Math.min(maxParallelism, Math.max(1, chunkStarts.size()));
+        if (parallelism == 1) {
+            for (long chunkStart : chunkStarts) {
+                task.accept(chunkStart);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        //실패하면 아직 시작 안 한 청크는 건너뛴다. 진행 중인 청크는 끝나거나 롤백될 때까지 기다린다. (인터럽트하지 않음)
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long chunkStart : chunkStarts) {
+                futures.add(executor.submit(() -> {
+                    if (failed.get()) {
+                        return;
+                    }
+                    try {
+                        task.accept(chunkStart);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }));
+            }
+            RuntimeException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member import interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 청크 [chunkStart, chunkStart + chunkBytes) 에서 시작하는 레코드를 한 트랜잭션으로 넣는다.
+     */
+    private void importChunk(FileChannel channel, long size, long chunkStart, TeamNameTable teams, ImportRun run) {
+        CsvChunkReader reader = openChunk(channel, size, chunkStart, run.options.getChunkBytes());
+        long rows = transactionTemplate.execute(status -> {
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            IdentifierGenerator idGenerator = session.getFactory().getMetamodel()
+                    .entityPersister(Member.class).getIdentifierGenerator();
+            return session.doReturningWork(connection -> {
+                long inserted = 0;
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_MEMBER)) {
+                    while (reader.next()) {
+                        insert.setLong(1, (Long) idGenerator.generate(session, null));
+                        insert.setString(2, reader.string(CsvChunkReader.USERNAME));
+                        insert.setInt(3, reader.intValue(CsvChunkReader.AGE));
+                        if (reader.isEmpty(CsvChunkReader.TEAM_NAME)) {
+                            insert.setNull(4, Types.BIGINT);
+                        } else {
+                            insert.setLong(4, teamId(reader, teams));
+                        }
+                        insert.addBatch();
+                        if (++inserted % run.options.getBatchSize() == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    if (inserted % run.options.getBatchSize() != 0) {
+                        insert.executeBatch();
+                    }
+                }
+                try (PreparedStatement checkpoint = connection.prepareStatement(INSERT_CHECKPOINT)) {
+                    checkpoint.setString(1, run.importKey);
+                    checkpoint.setLong(2, chunkStart);
+                    checkpoint.setLong(3, inserted);
+                    checkpoint.executeUpdate();
+                }
+                return inserted;
+            });
+        });
+        run.chunkDone(rows);
+    }
+
+    /**
+     * 청크 [chunkStart, chunkStart + chunkBytes) 에서 시작하는 레코드를 읽는 reader. 첫 청크는 헤더를 건너뛴다.
+     */
+    private static CsvChunkReader openChunk(FileChannel channel, long size, long chunkStart, int chunkBytes) {
+        //앞 청크의 마지막 줄인지 보려면 chunkStart - 1 byte 가 필요하다.
+        long mapFrom = chunkStart == 0 ? 0 : chunkStart - 1;
+        long mapTo = Math.min(size, chunkStart + chunkBytes + READ_AHEAD_BYTES);
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int start = (int) (chunkStart - mapFrom);
+        int end = (int) (Math.min(size, chunkStart + chunkBytes) - mapFrom);
+        CsvChunkReader reader = new CsvChunkReader(buffer, mapFrom, start, end, mapTo == size);
+        if (chunkStart == 0) {
+            reader.skipLine();
+        }
+        return reader;
+    }
+
+    private static long teamId(CsvChunkReader reader, TeamNameTable teams) {
+        long teamId = reader.teamId(teams);
+        if (teamId == TeamNameTable.NOT_FOUND) {
+            //createUnknownTeams 에서 모두 만들었어야 한다.
+            throw new IllegalStateException(
+                    "team not created before import: " + reader.string(CsvChunkReader.TEAM_NAME));
+        }
+        return teamId;
+    }
+
+    private Set<Long> finishedChunks(String importKey) {
+        return new HashSet<>(em.createQuery(
+                        "select c.chunkStart from MemberImportCheckpoint c where c.importKey = :importKey", Long.class)
+                .setParameter("importKey", importKey)
+                .getResultList());
+    }
+
+    private TeamNameTable loadTeams() {
+        TeamNameTable teams = new TeamNameTable();
+        //이름이 같은 팀이 여럿이면 id 가 작은 팀으로 넣는다.
+        List<Object[]> rows = em.createQuery("select t.name, t.id from Team t where t.name is not null order by t.id",
+                        Object[].class)
+                .getResultList();
+        for (Object[] row : rows) {
+            teams.put((String) row[0], (Long) row[1]);
+        }
+        return teams;
+    }
+
+    private void notifyBulkInsert() {
+        emf.unwrap(SessionFactory.class).getCache().evictCollectionData(Team.class.getName() + ".members");
+        changePublisher.publishBulkChange();
+    }
+
+    private static String defaultImportKey(Path file, long size) throws IOException {
+        return file.getFileName() + ":" + size + ":" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    /**
+     * 한 번의 importFile 실행 상태. 청크 완료는 worker 스레드에서 들어온다.
+     */
+    private static class ImportRun {
+        private final String importKey;
+        private final int totalChunks;
+        private final int resumedChunks;
+        private final MemberImportOptions options;
+        private final long startedAt;
+        private final AtomicInteger chunks = new AtomicInteger();
+        private final AtomicLong rows = new AtomicLong();
+
+        private ImportRun(String importKey, int totalChunks, int resumedChunks, MemberImportOptions options,
+                          long startedAt) {
+            this.importKey = importKey;
+            this.totalChunks = totalChunks;
+            this.resumedChunks = resumedChunks;
+            this.options = options;
+            this.startedAt = startedAt;
+            this.chunks.set(resumedChunks);
+        }
+
+        private synchronized void chunkDone(long chunkRows) {
+            chunks.incrementAndGet();
+            rows.addAndGet(chunkRows);
+            MemberImportProgress progress = progress();
+            log.info("imported {}/{} chunks, {} members ({} rows/sec)",
+                    progress.getChunks(), totalChunks, progress.getRows(), progress.getRowsPerSecond());
+            options.getProgressListener().accept(progress);
+        }
+
+        private MemberImportProgress progress() {
+            return new MemberImportProgress(importKey, chunks.get(), totalChunks, resumedChunks, rows.get(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.importer;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+import java.util.function.Consumer;
+
+/**
+ * CSV import 옵션.
+ * - chunkBytes: 파일을 이 크기로 나눠서 청크 하나를 트랜잭션 하나로 넣는다. (재시작 단위)
+ *   청크 경계는 파일 크기와 chunkBytes 로만 정해지므로 재시작할 때 chunkBytes 를 바꾸면 안 된다.
+ * - batchSize: JDBC executeBatch 단위
+ * - parallelism: 청크를 동시에 넣을 스레드 수
+ * - importKey: 재시작 식별자. null 이면 파일 이름 + 크기 + 수정 시각
+ */
+@Getter
+public class MemberImportOptions {
+
+    public static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final int chunkBytes;
+    private final int batchSize;
+    private final int parallelism;
+    private final String importKey;
+    private final Consumer<MemberImportProgress> progressListener;
+
+    private MemberImportOptions(int chunkBytes, int batchSize, int parallelism, String importKey,
+                                Consumer<MemberImportProgress> progressListener) {
+        Assert.isTrue(chunkBytes > 0 && chunkBytes <= 1 << 30, "chunkBytes must be in (0, 1GB]");
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        Assert.isTrue(parallelism > 0, "parallelism must be positive");
+        this.chunkBytes = chunkBytes;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.importKey = importKey;
+        this.progressListener = progressListener;
+    }
+
+    public static MemberImportOptions defaults() {
+        return new MemberImportOptions(DEFAULT_CHUNK_BYTES, DEFAULT_BATCH_SIZE, 1, null, progress -> { });
+    }
+
+    public static MemberImportOptions of(int chunkBytes, int batchSize, int parallelism) {
+        return new MemberImportOptions(chunkBytes, batchSize, parallelism, null, progress -> { });
+    }
+
+    public MemberImportOptions withImportKey(String importKey) {
+        return new MemberImportOptions(chunkBytes, batchSize, parallelism, importKey, progressListener);
+    }
+
+    /**
+     * 청크가 커밋될 때마다 호출된다. (worker 스레드에서 한 번에 하나씩)
+     */
+    public MemberImportOptions withProgressListener(Consumer<MemberImportProgress> progressListener) {
+        return new MemberImportOptions(chunkBytes, batchSize, parallelism, importKey, progressListener);
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.importer;
+
+import lombok.Value;
+
+/**
+ * 청크 하나가 커밋될 때마다 전달되는 진행 상황. import 가 끝나면 마지막 값을 돌려준다.
+ */
+@Value
+public class MemberImportProgress {
+    String importKey;
+    /** 끝난 청크 수 (이전 실행에서 끝나서 건너뛴 청크 포함) */
+    int chunks;
+    int totalChunks;
+    /** 이전 실행에서 끝나서 건너뛴 청크 수 */
+    int resumedChunks;
+    /** 이번 실행에서 넣은 member 수 */
+    long rows;
+    long elapsedMillis;
+
+    public double getRatio() {
+        return totalChunks == 0 ? 1.0 : (double) chunks / totalChunks;
+    }
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : rows * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 팀 이름(UTF-8 byte) -> team_id. CSV 버퍼 안의 byte 를 String 으로 만들지 않고 바로 찾는다.
+ *
+ * 팀은 수백 개 수준이고 새 팀은 드물게 생기므로, 추가는 표 전체를 복사해서 바꿔 끼운다. (copy-on-write)
+ * 그래서 여러 worker 가 락 없이 동시에 찾을 수 있다.
+ */
+final class TeamNameTable {
+
+    static final long NOT_FOUND = -1;
+
+    private volatile Table table = new Table(16);
+
+    long find(ByteBuffer buffer, int start, int end) {
+        Table current = table;
+        int mask = current.keys.length - 1;
+        for (int slot = hash(buffer, start, end) & mask; current.keys[slot] != null; slot = (slot + 1) & mask) {
+            if (equals(current.keys[slot], buffer, start, end)) {
+                return current.ids[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    long find(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        return find(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    /**
+     * 같은 이름이 이미 있으면 무시한다. (먼저 넣은 id 가 이긴다)
+     */
+    synchronized void put(String name, long id) {
+        if (find(name) != NOT_FOUND) {
+            return;
+        }
+        Table current = table;
+        int capacity = current.keys.length;
+        if ((current.size + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        Table next = new Table(capacity);
+        for (int i = 0; i < current.keys.length; i++) {
+            if (current.keys[i] != null) {
+                next.insert(current.keys[i], current.ids[i]);
+            }
+        }
+        next.insert(name.getBytes(StandardCharsets.UTF_8), id);
+        table = next;
+    }
+
+    int size() {
+        return table.size;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + buffer.get(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Table {
+        private final byte[][] keys;
+        private final long[] ids;
+        private int size;
+
+        private Table(int capacity) {
+            this.keys = new byte[capacity][];
+            this.ids = new long[capacity];
+            Arrays.fill(ids, NOT_FOUND);
+        }
+
+        private void insert(byte[] key, long id) {
+            int mask = keys.length - 1;
+            int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            ids[slot] = id;
+            size++;
+        }
+    }
+}
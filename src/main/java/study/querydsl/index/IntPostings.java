@@ -0,0 +1,45 @@
+package study.querydsl.index;
+
+import java.util.Arrays;
+
+/**
+ * slot 목록. 순서는 보장하지 않고, 삭제는 마지막 원소를 빈 자리로 옮겨서 O(1) 로 한다.
+ * 각 slot 이 몇 번째 자리에 있는지는 호출하는 쪽(MemberColumns)이 위치 배열로 들고 있는다.
+ */
+final class IntPostings {
+
+    private int[] slots = new int[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    int get(int position) {
+        return slots[position];
+    }
+
+    /**
+     * @return 추가된 위치
+     */
+    int add(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = slot;
+        return size++;
+    }
+
+    /**
+     * @return position 으로 옮겨진 slot (옮겨진 게 없으면 -1). 호출한 쪽에서 그 slot 의 위치를 갱신해야 한다.
+     */
+    int removeAt(int position) {
+        int last = --size;
+        if (position == last) {
+            return -1;
+        }
+        int moved = slots[last];
+        slots[position] = moved;
+        return moved;
+    }
+}
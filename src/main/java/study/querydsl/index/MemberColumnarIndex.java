@@ -0,0 +1,304 @@
+package study.querydsl.index;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.datasource.ReplicaRoutingContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.event.MemberState;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 검색용 메모리 컬럼 인덱스. DB 왕복 없이 MemberSearchCondition 을 평가한다.
+ *
+ * - 시작 시 DB 에서 전체를 읽어 만든다. (그 전에는 isReady() == false, 호출한 쪽이 DB 로 대체)
+ * - Member insert/update/delete 이벤트는 커밋된 뒤에 반영한다. 롤백된 변경은 들어오지 않는다.
+ *   그래서 커밋 안 된 자기 트랜잭션의 변경은 보이지 않는다.
+ * - 벌크 변경(이벤트 없음)은 커밋 후 다시 만든다. 다시 만들 때까지 ready 가 아니다.
+ * - 읽기는 StampedLock 읽기 락으로 동시에, 변경 반영만 쓰기 락.
+ * - username prefix / contains 는 username trigram 색인으로 찾는다. 저장/이름 변경도 같은 경로로 반영된다.
+ *   이 색인은 메모리 안에서만 쓴다. (searchInMemory) DB 검색의 contains 는 UsernameGramTable 이 좁힌다.
+ *
+ * member.index.enabled=true 일 때만 동작. 천만 건 기준 수백 MB 정도를 쓴다.
+ */
+@Slf4j
+@Component
+public class MemberColumnarIndex implements MemberChangeListener, DisposableBean {
+
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    private final boolean enabled;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "member-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final StampedLock lock = new StampedLock();
+    private MemberColumns columns = new MemberColumns(16);
+    /** 재구축 중 들어온 변경. 새 컬럼에 다시 적용한다. (재구축 중이 아니면 null) */
+    private List<MemberChange> replay;
+
+    private volatile boolean ready;
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    /** 벌크 statement 를 실행했지만 아직 끝나지 않은 트랜잭션 수 */
+    private final AtomicInteger pendingBulkTransactions = new AtomicInteger();
+
+    public MemberColumnarIndex(@Value("${member.index.enabled:false}") boolean enabled,
+                               EntityManager em, PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * @return 준비 전이면 null. 결과는 member id 오름차순
+     */
+    public long[] searchIds(MemberSearchCondition condition) {
+        if (!ready) {
+            return null;
+        }
+        long stamp = lock.readLock();
+        try {
+            int[] slots = search(columns, condition);
+            long[] ids = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                ids[i] = columns.id(slots[i]);
+            }
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return 준비 전이면 null. 결과는 member id 오름차순
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (!ready) {
+            return null;
+        }
+        List<MemberTeamDto> result;
+        long stamp = lock.readLock();
+        try {
+            int[] slots = search(columns, condition);
+            result = new ArrayList<>(slots.length);
+            for (int slot : slots) {
+                result.add(new MemberTeamDto(
+                        columns.id(slot),
+                        columns.username(slot),
+                        columns.age(slot),
+                        columns.teamId(slot),
+                        columns.teamName(slot)));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        result.sort(Comparator.comparing(MemberTeamDto::getMemberId));
+        return result;
+    }
+
+    private static int[] search(MemberColumns columns, MemberSearchCondition condition) {
+        return columns.search(
+                StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null,
+                StringUtils.hasText(condition.getUsernamePrefix()) ? condition.getUsernamePrefix() : null,
+                StringUtils.hasText(condition.getUsernameContains()) ? condition.getUsernameContains() : null,
+                StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                condition.getAgeGoe(),
+                condition.getAgeLoe());
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        if (!enabled) {
+            return;
+        }
+        change.getSession().getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (success, session) -> {
+                    if (success) {
+                        apply(change);
+                    }
+                });
+    }
+
+    /**
+     * 벌크 statement 는 실행 직전에 감지되므로 커밋 후에 다시 만든다. 그 사이에는 ready 를 내려서 DB 를 쓰게 한다.
+     */
+    @Override
+    public void onBulkChange() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingBulkTransactions.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    pendingBulkTransactions.decrementAndGet();
+                    requestRebuild();
+                }
+            });
+        } else {
+            requestRebuild();
+        }
+    }
+
+    private void apply(MemberChange change) {
+        boolean resolved;
+        long stamp = lock.writeLock();
+        try {
+            resolved = applyTo(columns, change);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!resolved) {
+            log.debug("member {} moved to a team unknown to the index, rebuilding", change.getAfter().getId());
+            requestRebuild();
+        }
+    }
+
+    /**
+     * @return 인덱스가 모르는 팀으로, 팀 이름도 모른 채 들어왔으면 false (팀 이름은 다시 만들어야 채워진다)
+     */
+    private static boolean applyTo(MemberColumns columns, MemberChange change) {
+        MemberState after = change.getAfter();
+        if (change.getType() == MemberChange.Type.DELETE) {
+            columns.remove(change.getBefore().getId());
+            return true;
+        }
+        //팀 이름을 모르면(초기화 안 된 프록시) 인덱스에 있는 그 팀 이름을 그대로 쓴다.
+        boolean resolved = after.isTeamNameKnown() || columns.hasTeam(after.getTeamId());
+        //before 를 몰라도 after 만으로 덮어쓰면 된다.
+        columns.upsert(after.getId(), after.getUsername(), after.getAge(), after.getTeamId(), after.getTeamName());
+        return resolved;
+    }
+
+    public void requestRebuild() {
+        ready = false;
+        if (rebuildRequested.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        rebuildRequested.set(false);
+        long start = System.nanoTime();
+        long stamp = lock.writeLock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        MemberColumns rebuilt;
+        try {
+            rebuilt = load();
+        } catch (RuntimeException e) {
+            log.warn("member index rebuild failed, searches fall back to the database", e);
+            stamp = lock.writeLock();
+            try {
+                replay = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return;
+        }
+
+        stamp = lock.writeLock();
+        try {
+            //읽는 동안 커밋된 변경을 다시 적용 (upsert/remove 라 이미 읽힌 것이어도 결과가 같다)
+            for (MemberChange change : replay) {
+                if (!applyTo(rebuilt, change)) {
+                    requestRebuild();
+                }
+            }
+            replay = null;
+            columns = rebuilt;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        //그 사이 벌크 변경이 또 있었으면 다음 재구축 때까지 ready 가 아니다.
+        ready = !rebuildRequested.get() && pendingBulkTransactions.get() == 0;
+        log.info("member index rebuilt: {} members in {} ms",
+                rebuilt.alive(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * replica 는 아직 복제 안 된 변경이 빠질 수 있으므로 primary 에서 읽는다.
+     */
+    private MemberColumns load() {
+        try (ReplicaRoutingContext.Scope scope = ReplicaRoutingContext.primaryOnly()) {
+            return readOnlyTransaction.execute(status -> {
+                Long count = queryFactory.select(member.count()).from(member).fetchOne();
+                MemberColumns loaded = new MemberColumns((int) Math.min(count * 5 / 4, Integer.MAX_VALUE - 8));
+                try (Stream<Tuple> rows = queryFactory
+                        .select(member.id, member.username, member.age, team.id, team.name)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .setHint(QueryHints.FETCH_SIZE, REBUILD_FETCH_SIZE)
+                        .stream()) {
+                    rows.forEach(row -> loaded.upsert(
+                            row.get(member.id),
+                            row.get(member.username),
+                            row.get(member.age),
+                            row.get(team.id),
+                            row.get(team.name)));
+                }
+                return loaded;
+            });
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+}
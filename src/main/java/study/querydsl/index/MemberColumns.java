@@ -0,0 +1,401 @@
+package study.querydsl.index;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * member 를 컬럼별 배열로 들고 있는 저장소. 동기화는 MemberColumnarIndex 가 한다. (이 클래스는 thread-safe 하지 않다)
+ *
+ * slot i 의 member = (ids[i], ages[i], usernames[i], teams[i])
+ * - username 은 사전 코드, 삭제된 slot 은 usernames[i] == -1 이고 free 목록에서 재사용한다.
+ * - team 은 team 테이블(teamIds / teamNames) 의 코드, 팀 없으면 -1. 팀 이름도 사전 코드.
+ * - username / team / age 별 posting(slot 목록)이 있어서 가장 작은 목록 하나만 훑고 나머지 조건은 배열로 거른다.
+ *   age posting 은 age 순으로 정렬된 TreeMap 이라 범위 조건은 subMap 으로 바로 잘린다.
+ * - username prefix / contains 는 username 사전의 trigram 색인(UsernameNgramIndex)으로 username 코드 후보를 구하고
+ *   그 코드들의 posting 을 username 조건의 후보 목록으로 쓴다.
+ */
+final class MemberColumns {
+
+    static final int[] EMPTY = new int[0];
+
+    private long[] ids;
+    private int[] ages;
+    private int[] usernames;
+    private int[] teams;
+    private int[] usernamePositions;
+    private int[] teamPositions;
+    private int[] agePositions;
+    private int size;
+    private int alive;
+
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private final LongIntHashMap slotById;
+    private final StringDictionary usernameDictionary = new StringDictionary();
+    private final UsernameNgramIndex usernameGrams = new UsernameNgramIndex();
+    private final StringDictionary teamNameDictionary = new StringDictionary();
+
+    private final LongIntHashMap teamCodeById = new LongIntHashMap(16);
+    private long[] teamIds = new long[16];
+    private int[] teamNames = new int[16];
+    private int teamCount;
+
+    private IntPostings[] usernamePostings = new IntPostings[16];
+    private IntPostings[] teamPostings = new IntPostings[16];
+    private final TreeMap<Integer, IntPostings> agePostings = new TreeMap<>();
+
+    MemberColumns(int expected) {
+        int capacity = Math.max(expected, 16);
+        ids = new long[capacity];
+        ages = new int[capacity];
+        usernames = new int[capacity];
+        teams = new int[capacity];
+        usernamePositions = new int[capacity];
+        teamPositions = new int[capacity];
+        agePositions = new int[capacity];
+        slotById = new LongIntHashMap(capacity);
+    }
+
+    int alive() {
+        return alive;
+    }
+
+    /**
+     * 없으면 추가, 있으면 덮어쓴다. 같은 상태를 여러 번 넣어도 결과가 같다. (재구축 중 변경 재적용에 필요)
+     */
+    void upsert(long id, String username, int age, Long teamId, String teamName) {
+        int slot = slotById.get(id);
+        if (slot >= 0) {
+            unlink(slot);
+        } else {
+            slot = allocate();
+            slotById.put(id, slot);
+            alive++;
+        }
+        ids[slot] = id;
+        ages[slot] = age;
+        usernames[slot] = usernameCode(username);
+        teams[slot] = teamId != null ? teamCode(teamId, teamName) : -1;
+        link(slot);
+    }
+
+    void remove(long id) {
+        int slot = slotById.remove(id);
+        if (slot < 0) {
+            return;
+        }
+        unlink(slot);
+        usernames[slot] = -1;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = slot;
+        alive--;
+    }
+
+    int[] search(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        return search(username, null, null, teamName, ageGoe, ageLoe);
+    }
+
+    /**
+     * 조건은 null 이면 무시. 결과는 slot 배열 (순서 없음)
+     */
+    int[] search(String username, String usernamePrefix, String usernameContains,
+                 String teamName, Integer ageGoe, Integer ageLoe) {
+        //username 조건들을 만족하는 username 코드 (오름차순), 조건이 없으면 null
+        int[] usernameCodes = null;
+        if (username != null) {
+            int code = usernameDictionary.code(username);
+            if (code < 0) {
+                return EMPTY;
+            }
+            usernameCodes = new int[]{code};
+        }
+        if (usernamePrefix != null) {
+            usernameCodes = matchingUsernames(usernameCodes, usernamePrefix, true);
+        }
+        if (usernameContains != null) {
+            usernameCodes = matchingUsernames(usernameCodes, usernameContains, false);
+        }
+        if (usernameCodes != null && usernameCodes.length == 0) {
+            return EMPTY;
+        }
+        int teamNameCode = -1;
+        if (teamName != null) {
+            teamNameCode = teamNameDictionary.code(teamName);
+            if (teamNameCode < 0) {
+                return EMPTY;
+            }
+        }
+        int low = ageGoe != null ? ageGoe : Integer.MIN_VALUE;
+        int high = ageLoe != null ? ageLoe : Integer.MAX_VALUE;
+        if (low > high) {
+            return EMPTY;
+        }
+        NavigableMap<Integer, IntPostings> ageRange = ageGoe != null || ageLoe != null
+                ? agePostings.subMap(low, true, high, true)
+                : null;
+
+        //가장 작은 후보 목록을 고른다.
+        long best = size;
+        int driver = 0; //0: 전체, 1: username, 2: team, 3: age
+        if (usernameCodes != null) {
+            long usernameRows = 0;
+            for (int code : usernameCodes) {
+                IntPostings postings = usernamePosting(code);
+                if (postings != null) {
+                    usernameRows += postings.size();
+                }
+            }
+            if (usernameRows < best) {
+                best = usernameRows;
+                driver = 1;
+            }
+        }
+        if (teamNameCode >= 0) {
+            long teamRows = 0;
+            for (int team = 0; team < teamCount; team++) {
+                if (teamNames[team] == teamNameCode && teamPostings[team] != null) {
+                    teamRows += teamPostings[team].size();
+                }
+            }
+            if (teamRows < best) {
+                best = teamRows;
+                driver = 2;
+            }
+        }
+        if (ageRange != null) {
+            long ageRows = 0;
+            for (IntPostings postings : ageRange.values()) {
+                ageRows += postings.size();
+                if (ageRows >= best) {
+                    break;
+                }
+            }
+            if (ageRows < best) {
+                driver = 3;
+            }
+        }
+
+        Collector result = new Collector();
+        switch (driver) {
+            case 1:
+                //username 조건은 posting 자체로 만족하므로 나머지만 본다.
+                for (int code : usernameCodes) {
+                    IntPostings postings = usernamePosting(code);
+                    if (postings != null) {
+                        collect(postings, null, teamNameCode, low, high, result);
+                    }
+                }
+                break;
+            case 2:
+                for (int team = 0; team < teamCount; team++) {
+                    if (teamNames[team] == teamNameCode && teamPostings[team] != null) {
+                        collect(teamPostings[team], usernameCodes, teamNameCode, low, high, result);
+                    }
+                }
+                break;
+            case 3:
+                for (IntPostings postings : ageRange.values()) {
+                    collect(postings, usernameCodes, teamNameCode, low, high, result);
+                }
+                break;
+            default:
+                for (int slot = 0; slot < size; slot++) {
+                    if (matches(slot, usernameCodes, teamNameCode, low, high)) {
+                        result.add(slot);
+                    }
+                }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * @param codes 이미 좁혀진 후보 (없으면 null -> 색인, 색인을 못 쓰면 사전 전체)
+     * @return pattern 에 맞는 username 코드 (오름차순)
+     */
+    private int[] matchingUsernames(int[] codes, String pattern, boolean prefix) {
+        int[] candidates = codes != null ? codes : usernameGrams.candidates(pattern, prefix);
+        int count = candidates != null ? candidates.length : usernameDictionary.size();
+        int[] matched = new int[Math.min(count, 16)];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int code = candidates != null ? candidates[i] : i;
+            String value = usernameDictionary.value(code);
+            if (value != null && (prefix ? value.startsWith(pattern) : value.contains(pattern))) {
+                if (size == matched.length) {
+                    matched = Arrays.copyOf(matched, size * 2);
+                }
+                matched[size++] = code;
+            }
+        }
+        return Arrays.copyOf(matched, size);
+    }
+
+    private IntPostings usernamePosting(int code) {
+        return code < usernamePostings.length ? usernamePostings[code] : null;
+    }
+
+    private int usernameCode(String username) {
+        int before = usernameDictionary.size();
+        int code = usernameDictionary.codeOrAdd(username);
+        if (code == before && username != null) {
+            usernameGrams.add(code, username);
+        }
+        return code;
+    }
+
+    long id(int slot) {
+        return ids[slot];
+    }
+
+    int age(int slot) {
+        return ages[slot];
+    }
+
+    String username(int slot) {
+        return usernameDictionary.value(usernames[slot]);
+    }
+
+    Long teamId(int slot) {
+        return teams[slot] >= 0 ? teamIds[teams[slot]] : null;
+    }
+
+    String teamName(int slot) {
+        return teams[slot] >= 0 && teamNames[teams[slot]] >= 0 ? teamNameDictionary.value(teamNames[teams[slot]]) : null;
+    }
+
+    private void collect(IntPostings postings, int[] usernameCodes, int teamNameCode, int low, int high, Collector result) {
+        for (int i = 0; i < postings.size(); i++) {
+            int slot = postings.get(i);
+            if (matches(slot, usernameCodes, teamNameCode, low, high)) {
+                result.add(slot);
+            }
+        }
+    }
+
+    /**
+     * @param usernameCodes 오름차순, null 이면 username 조건 없음
+     */
+    private boolean matches(int slot, int[] usernameCodes, int teamNameCode, int low, int high) {
+        int username = usernames[slot];
+        if (username < 0 || (usernameCodes != null && Arrays.binarySearch(usernameCodes, username) < 0)) {
+            return false;
+        }
+        if (teamNameCode >= 0) {
+            int team = teams[slot];
+            if (team < 0 || teamNames[team] != teamNameCode) {
+                return false;
+            }
+        }
+        int age = ages[slot];
+        return age >= low && age <= high;
+    }
+
+    boolean hasTeam(long teamId) {
+        return teamCodeById.get(teamId) >= 0;
+    }
+
+    /**
+     * 팀 이름이 바뀐 채로 들어오면 팀 코드의 이름만 바꾼다. (그 팀 member 전부에 반영)
+     * 이름 없이(null) 들어오면 이미 있는 팀 이름은 그대로 둔다.
+     */
+    private int teamCode(long teamId, String teamName) {
+        int code = teamCodeById.get(teamId);
+        if (code < 0) {
+            code = teamCount++;
+            if (code == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, code * 2);
+                teamNames = Arrays.copyOf(teamNames, code * 2);
+                teamPostings = Arrays.copyOf(teamPostings, code * 2);
+            }
+            teamIds[code] = teamId;
+            teamNames[code] = -1;
+            teamCodeById.put(teamId, code);
+        }
+        if (teamName != null) {
+            teamNames[code] = teamNameDictionary.codeOrAdd(teamName);
+        }
+        return code;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (size == ids.length) {
+            int capacity = size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            usernames = Arrays.copyOf(usernames, capacity);
+            teams = Arrays.copyOf(teams, capacity);
+            usernamePositions = Arrays.copyOf(usernamePositions, capacity);
+            teamPositions = Arrays.copyOf(teamPositions, capacity);
+            agePositions = Arrays.copyOf(agePositions, capacity);
+        }
+        return size++;
+    }
+
+    private void link(int slot) {
+        int username = usernames[slot];
+        if (username >= usernamePostings.length) {
+            usernamePostings = Arrays.copyOf(usernamePostings, Math.max(username + 1, usernamePostings.length * 2));
+        }
+        if (usernamePostings[username] == null) {
+            usernamePostings[username] = new IntPostings();
+        }
+        usernamePositions[slot] = usernamePostings[username].add(slot);
+
+        int team = teams[slot];
+        if (team >= 0) {
+            if (teamPostings[team] == null) {
+                teamPostings[team] = new IntPostings();
+            }
+            teamPositions[slot] = teamPostings[team].add(slot);
+        }
+
+        agePositions[slot] = agePostings.computeIfAbsent(ages[slot], age -> new IntPostings()).add(slot);
+    }
+
+    private void unlink(int slot) {
+        int moved = usernamePostings[usernames[slot]].removeAt(usernamePositions[slot]);
+        if (moved >= 0) {
+            usernamePositions[moved] = usernamePositions[slot];
+        }
+        if (teams[slot] >= 0) {
+            moved = teamPostings[teams[slot]].removeAt(teamPositions[slot]);
+            if (moved >= 0) {
+                teamPositions[moved] = teamPositions[slot];
+            }
+        }
+        IntPostings agePosting = agePostings.get(ages[slot]);
+        moved = agePosting.removeAt(agePositions[slot]);
+        if (moved >= 0) {
+            agePositions[moved] = agePositions[slot];
+        }
+        if (agePosting.size() == 0) {
+            agePostings.remove(ages[slot]);
+        }
+    }
+
+    /**
+     * 결과 slot 을 모으는 growable int 배열
+     */
+    private static final class Collector {
+        private int[] slots = new int[16];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        int[] toArray() {
+            return size == 0 ? EMPTY : Arrays.copyOf(slots, size);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 문자열 <-> int 코드. 컬럼에는 코드만 저장하고 비교도 코드로 한다.
+ * 코드는 재사용하지 않는다. (전체 재구축 때 정리된다)
+ */
+final class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * @return 없으면 -1
+     */
+    int code(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    int codeOrAdd(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int added = values.size();
+        codes.put(value, added);
+        values.add(value);
+        return added;
+    }
+
+    String value(int code) {
+        return values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,350 @@
+package study.querydsl.index;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.event.spi.EventSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.ReplicaRoutingContext;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.event.MemberState;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DB 검색의 usernameContains 후보를 좁히는 username trigram 테이블(member_username_gram) 관리.
+ * 검색 쪽은 MemberSearchTemplates 가 gram posting 교집합(group by member_id having count(*) = gram 수)을 조건에 더한다.
+ *
+ * - Member insert / username 변경 / delete 는 같은 트랜잭션의 커밋 직전(Hibernate before-completion)에 쓴다.
+ *   member row 와 gram row 는 같이 커밋되거나 같이 롤백된다.
+ * - flush 도중에는 쿼리를 날릴 수 없으므로 세션별로 모아 두었다가 커밋 직전에 한 번에 쓴다.
+ *   모아 둔 것은 트랜잭션 동기화 리소스로 묶어서 afterCompletion 에서 풀어준다. (롤백이어도 남지 않는다)
+ * - 벌크 변경(벌크 JPQL, JDBC import)은 어떤 row 인지 모르므로 끝난 뒤 다시 만든다.
+ *   Hibernate 도 모르고 publishBulkChange 도 하지 않는 네이티브 SQL 쓰기는 requestRebuild() 를 불러야 검색에 나온다.
+ *   다시 만들 때까지, 그리고 시작한 뒤 처음 만들 때까지는 queryGrams 가 null 이라 검색은 LIKE 만 쓴다.
+ * - 쓰기 트랜잭션 안의 검색도 LIKE 만 쓴다. 아직 커밋 전인 자기 변경은 gram 에 없다.
+ * - 재구축은 id 범위마다 member 를 select ... for update 로 잠그고 그 member 들의 gram 을 다시 쓴다.
+ *   그 사이 커밋되는 username 변경과 엇갈려서 옛 이름 gram 이 남지 않는다.
+ *
+ * ready 는 이 JVM 기준이다. 다른 인스턴스가 한 벌크 변경은 그 인스턴스가 다시 만들 때까지 gram 에 빠져 있을 수 있다.
+ * member.search.ngram.enabled=true 일 때만 동작.
+ */
+@Slf4j
+@Component
+public class UsernameGramTable implements MemberChangeListener, DisposableBean {
+
+    static final int GRAM = 3;
+    private static final int REBUILD_CHUNK = 10_000;
+
+    private static final String SELECT_BOUNDS = "select min(member_id), max(member_id) from member";
+    private static final String SELECT_RANGE =
+            "select member_id, username from member where member_id between ? and ? order by member_id for update";
+    private static final String DELETE_MEMBER = "delete from member_username_gram where member_id = ?";
+    /** 파라미터: 범위 시작, 범위 끝. 범위 안에서 member 가 없어진 gram */
+    private static final String DELETE_ORPHANS_IN_RANGE = "delete from member_username_gram g"
+            + " where g.member_id between ? and ?"
+            + " and not exists (select 1 from member m where m.member_id = g.member_id)";
+    /** 파라미터: 가장 작은 id, 가장 큰 id. 범위 밖의 gram 중 member 가 없는 것 */
+    private static final String DELETE_ORPHANS_OUTSIDE = "delete from member_username_gram g"
+            + " where (g.member_id < ? or g.member_id > ?)"
+            + " and not exists (select 1 from member m where m.member_id = g.member_id)";
+    /** 재구축과 겹쳐도 중복 키로 실패하지 않도록 MERGE */
+    private static final String MERGE_GRAM = "merge into member_username_gram t"
+            + " using (select cast(? as varchar(8)) gram, cast(? as bigint) member_id) s"
+            + " on t.gram = s.gram and t.member_id = s.member_id"
+            + " when not matched then insert (gram, member_id) values (s.gram, s.member_id)";
+
+    private final boolean enabled;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "member-gram-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean ready;
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    /** 벌크 statement 를 실행했지만 아직 끝나지 않은 트랜잭션 수 */
+    private final AtomicInteger pendingBulkTransactions = new AtomicInteger();
+
+    public UsernameGramTable(@Value("${member.search.ngram.enabled:false}") boolean enabled,
+                             EntityManager em, PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        requestRebuild();
+    }
+
+    /**
+     * @return contains 로 좁힐 gram (중복 없음). gram 을 쓸 수 없으면 null (LIKE 만 쓴다)
+     */
+    public List<String> queryGrams(String contains) {
+        if (!enabled || !ready || contains == null) {
+            return null;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        List<String> grams = grams(contains);
+        return grams.isEmpty() ? null : grams;
+    }
+
+    /**
+     * 연속한 code point 3개씩. 3개보다 짧으면 빈 목록
+     */
+    static List<String> grams(String value) {
+        int[] codePoints = value.codePoints().toArray();
+        Set<String> grams = new TreeSet<>();
+        for (int i = 0; i + GRAM <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, GRAM));
+        }
+        return new ArrayList<>(grams);
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        if (!enabled) {
+            return;
+        }
+        MemberState before = change.getBefore();
+        MemberState after = change.getAfter();
+        if (before != null && after != null && Objects.equals(before.getUsername(), after.getUsername())) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.warn("member changed outside a spring transaction, username grams will be rebuilt");
+            requestRebuild();
+            return;
+        }
+        Pending pending = pending(change.getSession());
+        if (after == null) {
+            pending.delete(before.getId());
+        } else {
+            pending.put(after.getId(), after.getUsername(), change.getType() != MemberChange.Type.INSERT);
+        }
+    }
+
+    /**
+     * 벌크 statement 는 실행 직전에 감지되므로 트랜잭션이 끝난 뒤 다시 만든다. 그 사이에는 LIKE 만 쓴다.
+     */
+    @Override
+    public void onBulkChange() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingBulkTransactions.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    pendingBulkTransactions.decrementAndGet();
+                    requestRebuild();
+                }
+            });
+        } else {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * 세션(트랜잭션)별 모음. 처음 만들 때 커밋 직전 반영과 afterCompletion 정리를 등록한다.
+     */
+    private Pending pending(EventSource session) {
+        PendingKey key = new PendingKey(this, session);
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(key);
+        if (pending != null) {
+            return pending;
+        }
+        Pending created = new Pending();
+        TransactionSynchronizationManager.bindResource(key, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+        session.getActionQueue().registerProcess(
+                (BeforeTransactionCompletionProcess) s -> s.doWork(created::write));
+        return created;
+    }
+
+    public void requestRebuild() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        if (rebuildRequested.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        rebuildRequested.set(false);
+        long start = System.nanoTime();
+        long members = 0;
+        //replica 에는 아직 복제 안 된 변경이 빠질 수 있고, for update 도 primary 에서 해야 한다.
+        try (ReplicaRoutingContext.Scope scope = ReplicaRoutingContext.primaryOnly()) {
+            long[] bounds = transactionTemplate.execute(status ->
+                    em.unwrap(Session.class).doReturningWork(UsernameGramTable::bounds));
+            if (bounds != null) {
+                for (long from = bounds[0]; from <= bounds[1]; from += REBUILD_CHUNK) {
+                    long rangeFrom = from;
+                    long rangeTo = Math.min(bounds[1], from + REBUILD_CHUNK - 1);
+                    members += transactionTemplate.execute(status -> em.unwrap(Session.class)
+                            .doReturningWork(connection -> rebuildRange(connection, rangeFrom, rangeTo)));
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement delete = connection.prepareStatement(DELETE_ORPHANS_OUTSIDE)) {
+                    delete.setLong(1, bounds != null ? bounds[0] : Long.MAX_VALUE);
+                    delete.setLong(2, bounds != null ? bounds[1] : Long.MIN_VALUE);
+                    delete.executeUpdate();
+                }
+            }));
+        } catch (RuntimeException e) {
+            log.warn("username gram rebuild failed, contains searches use LIKE only", e);
+            return;
+        }
+        //그 사이 벌크 변경이 또 있었으면 다음 재구축 때까지 ready 가 아니다.
+        ready = !rebuildRequested.get() && pendingBulkTransactions.get() == 0;
+        log.info("username grams rebuilt: {} members in {} ms", members, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return {min(id), max(id)}, member 가 없으면 null
+     */
+    private static long[] bounds(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_BOUNDS);
+             ResultSet rs = select.executeQuery()) {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        }
+    }
+
+    private static long rebuildRange(Connection connection, long from, long to) throws SQLException {
+        Pending range = new Pending();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_RANGE)) {
+            select.setLong(1, from);
+            select.setLong(2, to);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    range.put(rs.getLong(1), rs.getString(2), true);
+                }
+            }
+        }
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_ORPHANS_IN_RANGE)) {
+            delete.setLong(1, from);
+            delete.setLong(2, to);
+            delete.executeUpdate();
+        }
+        range.write(connection);
+        return range.usernames.size();
+    }
+
+    /**
+     * 테스트용. 요청된 재구축이 끝날 때까지 기다린다.
+     */
+    void awaitRebuilt() throws InterruptedException, ExecutionException {
+        rebuildExecutor.submit(() -> { }).get();
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class PendingKey {
+        private final UsernameGramTable owner;
+        private final EventSource session;
+    }
+
+    /**
+     * member id -> 지금 username (삭제면 null). id 순서로 쓴다.
+     */
+    private static final class Pending {
+        private final Map<Long, String> usernames = new TreeMap<>();
+        /** 이미 gram 이 있을 수 있어서 먼저 지워야 하는 id */
+        private final Set<Long> existing = new HashSet<>();
+
+        void put(Long id, String username, boolean existed) {
+            usernames.put(id, username);
+            if (existed) {
+                existing.add(id);
+            }
+        }
+
+        void delete(Long id) {
+            put(id, null, true);
+        }
+
+        void write(Connection connection) throws SQLException {
+            if (usernames.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement delete = connection.prepareStatement(DELETE_MEMBER)) {
+                for (Long id : usernames.keySet()) {
+                    if (existing.contains(id)) {
+                        delete.setLong(1, id);
+                        delete.addBatch();
+                    }
+                }
+                delete.executeBatch();
+            }
+            try (PreparedStatement merge = connection.prepareStatement(MERGE_GRAM)) {
+                for (Map.Entry<Long, String> entry : usernames.entrySet()) {
+                    if (entry.getValue() == null) {
+                        continue;
+                    }
+                    for (String gram : grams(entry.getValue())) {
+                        merge.setString(1, gram);
+                        merge.setLong(2, entry.getKey());
+                        merge.addBatch();
+                    }
+                }
+                merge.executeBatch();
+            }
+        }
+    }
+}
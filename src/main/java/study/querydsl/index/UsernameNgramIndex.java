@@ -0,0 +1,145 @@
+package study.querydsl.index;
+
+import java.util.Arrays;
+
+/**
+ * username 사전 코드의 trigram 색인. usernamePrefix / usernameContains 후보를 posting 교집합으로 구한다.
+ *
+ * - username 앞에 시작 표시(\0) 두 개를 붙여서 자른다. "^^a", "^ab" 같은 gram 이 생겨서 1~2 글자 prefix 도 색인을 탄다.
+ * - gram 은 char 3개(16bit x 3)를 long 하나로 묶은 키, posting 은 그 gram 을 가진 username 코드 목록.
+ *   코드는 사전에 추가되는 순서(증가)로만 들어오므로 posting 은 항상 정렬돼 있고 교집합은 정렬 병합으로 한다.
+ * - 사전 코드는 지워지지 않으므로 (전체 재구축 때 정리) 여기도 추가만 한다.
+ * - 결과는 후보(거짓 양성 포함)라서 호출한 쪽에서 실제 문자열로 다시 확인한다.
+ */
+final class UsernameNgramIndex {
+
+    private static final String START = "\0\0";
+    private static final int GRAM = 3;
+
+    private final LongIntHashMap gramIds = new LongIntHashMap(1024);
+    private int[][] postings = new int[1024][];
+    private int[] sizes = new int[1024];
+    private int gramCount;
+
+    /**
+     * 사전에 새로 추가된 username 만 넣는다. (코드는 이전보다 커야 한다)
+     */
+    void add(int code, String username) {
+        String padded = START + username;
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            long gram = gram(padded, i);
+            if (gram == 0) {
+                continue;
+            }
+            int id = gramIds.get(gram);
+            if (id < 0) {
+                id = newGram(gram);
+            }
+            //"aaaa" 처럼 같은 gram 이 한 이름에 여러 번 나오면 한 번만
+            if (sizes[id] > 0 && postings[id][sizes[id] - 1] == code) {
+                continue;
+            }
+            if (sizes[id] == postings[id].length) {
+                postings[id] = Arrays.copyOf(postings[id], sizes[id] * 2);
+            }
+            postings[id][sizes[id]++] = code;
+        }
+    }
+
+    /**
+     * @param prefix true 면 앞부분 일치 후보, false 면 부분 문자열 후보
+     * @return 후보 코드 (오름차순). 패턴이 짧아서 gram 을 만들 수 없으면 null (호출한 쪽이 사전을 훑는다)
+     */
+    int[] candidates(String pattern, boolean prefix) {
+        String padded = prefix ? START + pattern : pattern;
+        int grams = padded.length() - GRAM + 1;
+        if (grams <= 0) {
+            return null;
+        }
+        int[] ids = new int[grams];
+        for (int i = 0; i < grams; i++) {
+            long gram = gram(padded, i);
+            if (gram == 0) {
+                return null;
+            }
+            int id = gramIds.get(gram);
+            if (id < 0) {
+                return MemberColumns.EMPTY;
+            }
+            ids[i] = id;
+        }
+        //짧은 posting 부터 교집합해야 중간 결과가 작다.
+        Integer[] order = new Integer[grams];
+        for (int i = 0; i < grams; i++) {
+            order[i] = ids[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(sizes[a], sizes[b]));
+
+        int[] result = Arrays.copyOf(postings[order[0]], sizes[order[0]]);
+        int size = result.length;
+        for (int i = 1; i < grams && size > 0; i++) {
+            if (order[i].equals(order[i - 1])) {
+                continue;
+            }
+            size = intersect(result, size, postings[order[i]], sizes[order[i]]);
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    int gramCount() {
+        return gramCount;
+    }
+
+    private int newGram(long gram) {
+        int id = gramCount++;
+        if (id == postings.length) {
+            postings = Arrays.copyOf(postings, id * 2);
+            sizes = Arrays.copyOf(sizes, id * 2);
+        }
+        postings[id] = new int[2];
+        gramIds.put(gram, id);
+        return id;
+    }
+
+    /**
+     * 정렬된 두 목록의 교집합을 left 앞쪽에 다시 쓴다.
+     * right 가 훨씬 길면 (흔한 gram) 병합 대신 left 원소마다 right 를 이진 탐색한다.
+     * @return 교집합 크기
+     */
+    private static int intersect(int[] left, int leftSize, int[] right, int rightSize) {
+        int size = 0;
+        if ((long) leftSize * 16 < rightSize) {
+            int from = 0;
+            for (int i = 0; i < leftSize && from < rightSize; i++) {
+                int found = Arrays.binarySearch(right, from, rightSize, left[i]);
+                if (found >= 0) {
+                    left[size++] = left[i];
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+            return size;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < leftSize && j < rightSize) {
+            int a = left[i];
+            int b = right[j];
+            if (a == b) {
+                left[size++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return size;
+    }
+
+    private static long gram(String s, int from) {
+        return ((long) s.charAt(from) << 32) | ((long) s.charAt(from + 1) << 16) | s.charAt(from + 2);
+    }
+}
@@ -0,0 +1,133 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberSearchShape;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 레포지토리 메서드별 지연시간(percentile) / 결과 row 수.
+ * 태그: repository, method, phase(total|content|count|estimate|batch), shape(설정된 MemberSearchCondition 필드)
+ *
+ * Timer 는 (메서드 x shape) 조합이 처음 쓰일 때 만들어 배열에 두고, 그 뒤 호출에서는 인덱스로만 꺼낸다.
+ * (호출마다 Tags 객체를 만들지 않는다. 실제로 쓰이는 shape 는 64가지 중 일부라서 미리 다 만들지 않는다)
+ * percentile histogram(버킷 수십 개짜리 시계열)은 Operation 의 histogram=true 인 주요 검색 진입점만 낸다.
+ *
+ * /actuator/metrics/repository.latency?tag=method:searchPageComplex&tag=phase:count
+ */
+@Component
+public class RepositoryMetrics {
+
+    public enum Operation {
+        SEARCH("MemberCustomRepository", "search", "total", true, true),
+        SEARCH_PAGE_SIMPLE("MemberCustomRepository", "searchPageSimple", "total", true, false),
+        SEARCH_PAGE_COMPLEX("MemberCustomRepository", "searchPageComplex", "total", true, true),
+        SEARCH_PAGE_COMPLEX_CONTENT("MemberCustomRepository", "searchPageComplex", "content", true, false),
+        SEARCH_PAGE_COMPLEX_COUNT("MemberCustomRepository", "searchPageComplex", "count", true, false),
+        SEARCH_PAGE_COMPLEX_ESTIMATE("MemberCustomRepository", "searchPageComplex", "estimate", true, false),
+        SEARCH_AFTER("MemberCustomRepository", "searchAfter", "total", true, true),
+        SEARCH_AFTER_ORDER_BY_AGE("MemberCustomRepository", "searchAfterOrderByAge", "total", true, false),
+        SEARCH_STREAM("MemberCustomRepository", "searchStream", "total", true, false),
+        SEARCH_ROWS("MemberCustomRepository", "searchRows", "total", true, false),
+        SEARCH_IN_MEMORY("MemberCustomRepository", "searchInMemory", "total", true, false),
+        SEARCH_IDS_IN_MEMORY("MemberCustomRepository", "searchIdsInMemory", "total", true, false),
+        BULK_UPDATE("MemberCustomRepository", "bulkUpdate", "total", false, false),
+        BULK_DELETE("MemberCustomRepository", "bulkDelete", "total", false, false),
+
+        JPA_SAVE("MemberJpaRepository", "save", "total", false, false),
+        JPA_FIND_BY_ID("MemberJpaRepository", "findById", "total", false, false),
+        JPA_FIND_ALL("MemberJpaRepository", "findAll", "total", false, false),
+        JPA_FIND_BY_USERNAME("MemberJpaRepository", "findByUsername", "total", false, false),
+        JPA_FIND_ALL_QUERYDSL("MemberJpaRepository", "findAll_Querydsl", "total", false, false),
+        JPA_FIND_BY_USERNAME_QUERYDSL("MemberJpaRepository", "findByUsername_Querydsl", "total", false, false),
+        JPA_SEARCH_BY_BUILDER("MemberJpaRepository", "searchByBuilder", "total", true, false),
+        JPA_SEARCH("MemberJpaRepository", "search", "total", true, false),
+        MEMBER_LOAD("MemberLoader", "load", "batch", false, false),
+
+        TEAM_FIND_WITH_MEMBERS("TeamCustomRepository", "findTeamsWithMembers", "total", false, false);
+
+        private final String repository;
+        private final String method;
+        private final String phase;
+        private final boolean conditional;
+        private final boolean histogram;
+
+        Operation(String repository, String method, String phase, boolean conditional, boolean histogram) {
+            this.repository = repository;
+            this.method = method;
+            this.phase = phase;
+            this.conditional = conditional;
+            this.histogram = histogram;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final AtomicReferenceArray<Timer>[] timers;
+    private final AtomicReferenceArray<DistributionSummary>[] rows;
+
+    @SuppressWarnings("unchecked")
+    public RepositoryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.timers = new AtomicReferenceArray[Operation.values().length];
+        this.rows = new AtomicReferenceArray[Operation.values().length];
+        for (Operation operation : Operation.values()) {
+            int shapes = operation.conditional ? MemberSearchShape.COUNT : 1;
+            timers[operation.ordinal()] = new AtomicReferenceArray<>(shapes);
+            rows[operation.ordinal()] = new AtomicReferenceArray<>(shapes);
+        }
+    }
+
+    /**
+     * @param startNanos 호출 직전 System.nanoTime()
+     */
+    public void record(Operation operation, int shape, long startNanos, long rowCount) {
+        int index = operation.conditional ? shape : 0;
+        timer(operation, index).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        rows(operation, index).record(rowCount);
+    }
+
+    public void record(Operation operation, long startNanos, long rowCount) {
+        record(operation, 0, startNanos, rowCount);
+    }
+
+    /**
+     * 동시에 처음 만들어도 registry 가 같은 id 의 meter 를 돌려주므로 누가 넣어도 같다.
+     */
+    private Timer timer(Operation operation, int shape) {
+        AtomicReferenceArray<Timer> slots = timers[operation.ordinal()];
+        Timer timer = slots.get(shape);
+        if (timer == null) {
+            Timer.Builder builder = Timer.builder("repository.latency")
+                    .tag("repository", operation.repository)
+                    .tag("method", operation.method)
+                    .tag("phase", operation.phase)
+                    .tag("shape", MemberSearchShape.describe(shape))
+                    .publishPercentiles(0.5, 0.95, 0.99);
+            if (operation.histogram) {
+                builder.publishPercentileHistogram();
+            }
+            timer = builder.register(registry);
+            slots.set(shape, timer);
+        }
+        return timer;
+    }
+
+    private DistributionSummary rows(Operation operation, int shape) {
+        AtomicReferenceArray<DistributionSummary> slots = rows[operation.ordinal()];
+        DistributionSummary summary = slots.get(shape);
+        if (summary == null) {
+            summary = DistributionSummary.builder("repository.rows")
+                    .tag("repository", operation.repository)
+                    .tag("method", operation.method)
+                    .tag("phase", operation.phase)
+                    .tag("shape", MemberSearchShape.describe(shape))
+                    .register(registry);
+            slots.set(shape, summary);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Projections.bean / Projections.fields 대체. 프로퍼티 이름은 QBean 과 같이 path 이름 또는 as(alias) 로 정한다.
+ * 맞는 setter/field 가 없는 값과 null 값은 QBean 처럼 건너뛴다.
+ */
+public class FastBean<T> extends FactoryExpressionBase<T> {
+
+    private final List<Expression<?>> args;
+    private final boolean fieldAccess;
+    private final Supplier<Object> instantiator;
+    private final BiConsumer<Object, Object>[] setters;
+
+    @SuppressWarnings("unchecked")
+    FastBean(Class<? extends T> type, boolean fieldAccess, Expression<?>... args) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+        this.fieldAccess = fieldAccess;
+
+        ProjectionBindings bindings = ProjectionBindings.of(type);
+        this.instantiator = bindings.defaultConstructor();
+        this.setters = new BiConsumer[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String property = propertyName(args[i]);
+            setters[i] = fieldAccess
+                    ? bindings.field(property)
+                    : bindings.setter(property, args[i].getType());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... values) {
+        Object bean = instantiator.get();
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null) {
+                BiConsumer<Object, Object> setter = setters[i];
+                if (setter != null) {
+                    setter.accept(bean, value);
+                }
+            }
+        }
+        return (T) bean;
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    public boolean isFieldAccess() {
+        return fieldAccess;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    private static String propertyName(Expression<?> expr) {
+        if (expr instanceof Path<?>) {
+            return ((Path<?>) expr).getMetadata().getName();
+        }
+        if (expr instanceof Operation<?>) {
+            Operation<?> operation = (Operation<?>) expr;
+            if (operation.getOperator() == Ops.ALIAS && operation.getArg(1) instanceof Path<?>) {
+                return ((Path<?>) operation.getArg(1)).getMetadata().getName();
+            }
+        }
+        throw new IllegalArgumentException("Unsupported expression " + expr);
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Projections.constructor 대체. 인자 타입으로 public 생성자를 고르고, 없으면 만들 때 ExpressionException.
+ */
+public class FastConstructor<T> extends FactoryExpressionBase<T> {
+
+    private final List<Expression<?>> args;
+    private final Function<Object[], Object> instantiator;
+
+    FastConstructor(Class<? extends T> type, Expression<?>... args) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+        List<Class<?>> argTypes = new ArrayList<>(args.length);
+        for (Expression<?> arg : args) {
+            argTypes.add(arg.getType());
+        }
+        this.instantiator = ProjectionBindings.of(type).constructor(argTypes);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... values) {
+        return (T) instantiator.apply(values);
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+
+/**
+ * Projections.bean / fields / constructor 와 같은 사용법, 같은 결과.
+ * DTO 클래스별 바인딩(생성자, setter, field)을 처음 한 번만 만들어 캐시하고, row 매핑 때는 리플렉션을 쓰지 않는다.
+ * <pre>
+ * queryFactory.select(FastProjections.fields(UserDto.class, member.username.as("name"), member.age))
+ * </pre>
+ */
+public final class FastProjections {
+
+    private FastProjections() {
+    }
+
+    /**
+     * setter 로 값을 넣는다. (기본 생성자 필요)
+     */
+    public static <T> FastBean<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        return new FastBean<>(type, false, exprs);
+    }
+
+    /**
+     * field 에 바로 값을 넣는다. (기본 생성자 필요, getter/setter 불필요)
+     */
+    public static <T> FastBean<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+        return new FastBean<>(type, true, exprs);
+    }
+
+    /**
+     * 인자 타입이 맞는 public 생성자로 만든다.
+     */
+    public static <T> FastConstructor<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+        return new FastConstructor<>(type, exprs);
+    }
+}
@@ -0,0 +1,298 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.ExpressionException;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * DTO 클래스별 생성자 / setter / field 바인딩 캐시.
+ * 클래스당 한 번 MethodHandle 을 만들고, 가능하면 LambdaMetafactory 로 Supplier/BiConsumer 구현을 생성해서
+ * row 마다 리플렉션 호출 없이 일반 인터페이스 호출로 매핑한다.
+ */
+final class ProjectionBindings {
+
+    private static final ClassValue<ProjectionBindings> CACHE = new ClassValue<ProjectionBindings>() {
+        @Override
+        protected ProjectionBindings computeValue(Class<?> type) {
+            return new ProjectionBindings(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final MethodHandles.Lookup lookup;
+    private volatile Supplier<Object> defaultConstructor;
+    private final Map<String, BiConsumer<Object, Object>> setters = new ConcurrentHashMap<>();
+    private final Map<String, BiConsumer<Object, Object>> fields = new ConcurrentHashMap<>();
+    private final Map<List<Class<?>>, Function<Object[], Object>> constructors = new ConcurrentHashMap<>();
+
+    static ProjectionBindings of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    private ProjectionBindings(Class<?> type) {
+        this.type = type;
+        this.lookup = privateLookup(type);
+    }
+
+    /**
+     * 기본 생성자. Projections.bean/fields 처럼 private 이어도 된다.
+     */
+    Supplier<Object> defaultConstructor() {
+        Supplier<Object> constructor = defaultConstructor;
+        if (constructor == null) {
+            constructor = createDefaultConstructor();
+            defaultConstructor = constructor;
+        }
+        return constructor;
+    }
+
+    /**
+     * setX(value) 바인딩. 없으면 null (QBean 과 같이 해당 값은 버린다)
+     */
+    BiConsumer<Object, Object> setter(String property, Class<?> valueType) {
+        return setters.computeIfAbsent(property + ':' + valueType.getName(), key -> {
+            Method method = findSetter(property, valueType);
+            return method != null ? createSetter(method) : null;
+        });
+    }
+
+    /**
+     * field 직접 대입 바인딩. 없으면 null
+     */
+    BiConsumer<Object, Object> field(String property) {
+        return fields.computeIfAbsent(property, name -> {
+            Field field = findField(name);
+            return field != null ? createFieldSetter(field) : null;
+        });
+    }
+
+    /**
+     * 인자 타입에 맞는 public 생성자. Object[] 를 받아 인스턴스를 돌려준다.
+     * primitive 파라미터에 null 이 오면 Projections.constructor 처럼 기본값(0, false)을 넣는다.
+     */
+    Function<Object[], Object> constructor(List<Class<?>> argTypes) {
+        return constructors.computeIfAbsent(argTypes, this::createConstructor);
+    }
+
+    private Supplier<Object> createDefaultConstructor() {
+        MethodHandle handle;
+        try {
+            handle = lookup.findConstructor(type, methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExpressionException("No default constructor found for " + type.getName(), e);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", methodType(Supplier.class),
+                    methodType(Object.class), handle, methodType(type));
+            @SuppressWarnings("unchecked")
+            Supplier<Object> supplier = (Supplier<Object>) site.getTarget().invoke();
+            return supplier;
+        } catch (Throwable e) {
+            //다른 클래스로더 등으로 람다 생성이 안 되면 MethodHandle 직접 호출
+            MethodHandle generic = handle.asType(methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable t) {
+                    throw failure(t);
+                }
+            };
+        }
+    }
+
+    private BiConsumer<Object, Object> createSetter(Method method) {
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept", methodType(BiConsumer.class),
+                    methodType(void.class, Object.class, Object.class), handle,
+                    methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+            @SuppressWarnings("unchecked")
+            BiConsumer<Object, Object> consumer = (BiConsumer<Object, Object>) site.getTarget().invoke();
+            return consumer;
+        } catch (Throwable e) {
+            return generic(handle);
+        }
+    }
+
+    private BiConsumer<Object, Object> createFieldSetter(Field field) {
+        try {
+            //field 접근은 람다로 만들 수 없으므로 MethodHandle 을 그대로 쓴다.
+            return generic(lookup.unreflectSetter(field));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private Function<Object[], Object> createConstructor(List<Class<?>> argTypes) {
+        Constructor<?> constructor = findConstructor(argTypes);
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, argTypes.size())
+                    .asType(methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new ExpressionException(e.getMessage(), e);
+        }
+        Object[] defaults = primitiveDefaults(constructor.getParameterTypes());
+        if (defaults == null) {
+            return args -> {
+                try {
+                    return handle.invokeExact(args);
+                } catch (Throwable t) {
+                    throw failure(t);
+                }
+            };
+        }
+        return args -> {
+            Object[] values = args;
+            for (int i = 0; i < defaults.length; i++) {
+                if (values[i] == null && defaults[i] != null) {
+                    if (values == args) {
+                        values = args.clone();
+                    }
+                    values[i] = defaults[i];
+                }
+            }
+            try {
+                return handle.invokeExact(values);
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        };
+    }
+
+    private static BiConsumer<Object, Object> generic(MethodHandle handle) {
+        MethodHandle generic = handle.asType(methodType(void.class, Object.class, Object.class));
+        return (bean, value) -> {
+            try {
+                generic.invokeExact(bean, value);
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        };
+    }
+
+    private Method findSetter(String property, Class<?> valueType) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Method fallback = null;
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (!method.getName().equals(name) || method.getParameterCount() != 1
+                        || Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                if (wrap(method.getParameterTypes()[0]).isAssignableFrom(wrap(valueType))) {
+                    return method;
+                }
+                if (fallback == null) {
+                    fallback = method;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private Field findField(String property) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (field.getName().equals(property) && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Projections.constructor 와 같이 public 생성자 중 인자 타입이 정확히 같은 것, 없으면 대입 가능한 것을 쓴다.
+     */
+    private Constructor<?> findConstructor(List<Class<?>> argTypes) {
+        Constructor<?> assignable = null;
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length != argTypes.size()) {
+                continue;
+            }
+            boolean exact = true;
+            boolean matches = true;
+            for (int i = 0; i < parameterTypes.length && matches; i++) {
+                Class<?> parameter = wrap(parameterTypes[i]);
+                Class<?> arg = wrap(argTypes.get(i));
+                exact &= parameter == arg;
+                matches = parameter.isAssignableFrom(arg);
+            }
+            if (matches && exact) {
+                return constructor;
+            }
+            if (matches && assignable == null) {
+                assignable = constructor;
+            }
+        }
+        if (assignable == null) {
+            throw new ExpressionException("No constructor found for " + type.getName()
+                    + " with parameters: " + Arrays.toString(argTypes.toArray()));
+        }
+        return assignable;
+    }
+
+    private static Object[] primitiveDefaults(Class<?>[] parameterTypes) {
+        Object[] defaults = null;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i].isPrimitive()) {
+                if (defaults == null) {
+                    defaults = new Object[parameterTypes.length];
+                }
+                try {
+                    defaults[i] = MethodHandles.zero(parameterTypes[i]).invoke();
+                } catch (Throwable t) {
+                    throw failure(t);
+                }
+            }
+        }
+        return defaults;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return type.isPrimitive() ? methodType(type).wrap().returnType() : type;
+    }
+
+    private static MethodHandles.Lookup privateLookup(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            return MethodHandles.lookup();
+        }
+    }
+
+    private static RuntimeException failure(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new ExpressionException(t.getMessage(), t);
+    }
+}
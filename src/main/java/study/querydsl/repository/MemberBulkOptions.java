@@ -0,0 +1,41 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * 청크 단위 벌크 수정/삭제 옵션.
+ * chunkSize 는 한 번에 처리할 member.id 범위의 폭. (범위 안 대상 row 수는 이보다 작거나 같다)
+ */
+@Getter
+public class MemberBulkOptions {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final int chunkSize;
+    private final Duration pause;
+    private final Consumer<MemberBulkProgress> progressListener;
+
+    private MemberBulkOptions(int chunkSize, Duration pause, Consumer<MemberBulkProgress> progressListener) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+        Assert.isTrue(!pause.isNegative(), "pause must not be negative");
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.progressListener = progressListener;
+    }
+
+    public static MemberBulkOptions defaults() {
+        return new MemberBulkOptions(DEFAULT_CHUNK_SIZE, Duration.ZERO, progress -> { });
+    }
+
+    public static MemberBulkOptions of(int chunkSize, Duration pause) {
+        return new MemberBulkOptions(chunkSize, pause, progress -> { });
+    }
+
+    public MemberBulkOptions withProgressListener(Consumer<MemberBulkProgress> progressListener) {
+        return new MemberBulkOptions(chunkSize, pause, progressListener);
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.repository;
+
+import lombok.Value;
+
+/**
+ * 청크 하나가 커밋될 때마다 전달되는 진행 상황.
+ */
+@Value
+public class MemberBulkProgress {
+    int chunk;
+    int totalChunks;
+    /** 이번 청크까지 처리한 member.id 상한 (포함) */
+    long lastId;
+    long chunkRows;
+    long totalRows;
+    long elapsedMillis;
+
+    public double getRatio() {
+        return totalChunks == 0 ? 1.0 : (double) chunk / totalChunks;
+    }
+}
@@ -1,14 +1,70 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamSlice;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface MemberCustomRepository {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * offset 대신 커서 이후부터 조회 (member.id 정렬). 페이지가 깊어져도 비용이 같다.
+     * @param cursor 이전 결과의 nextCursor, 첫 페이지는 null
+     */
+    MemberTeamSlice searchAfter(MemberSearchCondition condition, String cursor, int size);
+
+    /**
+     * (age, member.id) 정렬 커서 페이징.
+     */
+    MemberTeamSlice searchAfterOrderByAge(MemberSearchCondition condition, String cursor, int size);
+
+    /**
+     * 결과를 List 로 모으지 않고 JDBC 커서로 흘려보낸다. 반드시 트랜잭션 안에서 쓰고, 다 쓰면 close 해야 한다.
+     * @param fetchSize 한 번에 DB 에서 가져올 row 수
+     */
+    Stream<MemberTeamDto> searchStream(MemberSearchCondition condition, int fetchSize);
+
+    /**
+     * searchStream 과 같은 결과를 DTO 로 만들지 않고 JDBC ResultSet 그대로 handler 에 넘긴다. (직렬화해서 바로 내보낼 때)
+     * 컬럼 순서: member_id, username, age, team_id, team_name. 반드시 트랜잭션 안에서 쓴다.
+     * @return row 수
+     */
+    long searchRows(MemberSearchCondition condition, int fetchSize, RowCallbackHandler handler);
+
+    /**
+     * where 에 맞는 member 를 id 범위 청크로 나눠서 수정한다. 청크마다 커밋되므로 전체가 원자적이지 않다.
+     * 현재 영속성 컨텍스트에서는 수정된 Member 만 detach 된다.
+     * @param where member, team(left join) 기준 조건
+     * @param assignments ex) update -> update.set(member.age, member.age.add(1))
+     * @return 수정된 row 수
+     */
+    long bulkUpdate(Predicate where, Consumer<JPAUpdateClause> assignments, MemberBulkOptions options);
+
+    /**
+     * bulkUpdate 와 같은 방식으로 삭제한다.
+     * @return 삭제된 row 수
+     */
+    long bulkDelete(Predicate where, MemberBulkOptions options);
+
+    /**
+     * 메모리 컬럼 인덱스(MemberColumnarIndex)로 검색한다. 커밋된 데이터만 보이고, 결과는 member id 오름차순.
+     * 인덱스가 준비 전(시작 직후, 벌크 변경 직후)이면 search 로 DB 를 조회한다.
+     */
+    List<MemberTeamDto> searchInMemory(MemberSearchCondition condition);
+
+    /**
+     * searchInMemory 와 같고 member id 만 돌려준다.
+     */
+    long[] searchIdsInMemory(MemberSearchCondition condition);
 }
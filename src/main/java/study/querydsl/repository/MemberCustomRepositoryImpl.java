@@ -1,40 +1,143 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import study.querydsl.cache.MemberSearchCache;
+import study.querydsl.cache.MemberSearchKey;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamSlice;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.index.MemberColumnarIndex;
+import study.querydsl.metrics.RepositoryMetrics;
+import study.querydsl.metrics.RepositoryMetrics.Operation;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+@Slf4j
 public class MemberCustomRepositoryImpl implements MemberCustomRepository{
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchCache searchCache;
+    private final MemberSearchTemplates searchTemplates;
+    private final RepositoryMetrics metrics;
+    private final TransactionTemplate chunkTransaction;
+    private final PageCountExecutor pageCountExecutor;
+    private final MemberColumnarIndex columnarIndex;
 
     //https://www.inflearn.com/questions/158967
     //spring 빈으로 등록되면 자동 인젝션 받을 수 있다. em 은 기본적으로 빈으로 등록 되어있는듯! -> 애플리케이션 로딩 시점에 EntityManager도 자동 등록됩니다^^
     //빈으로 등록하면 좋은점 : 롬복 활용해서 코드 간결하게 쓸 수 있음
     //주입을 2가지 받아야 된다. -> 멀티쓰레드 환경에서 동시성 문제 발생 하지 않나요? -> 이부분에서 대해서 스터디!! (빈 등록 포함)
-    public MemberCustomRepositoryImpl(EntityManager em) {
+    public MemberCustomRepositoryImpl(EntityManager em, MemberSearchCache searchCache,
+                                      MemberSearchTemplates searchTemplates, RepositoryMetrics metrics,
+                                      PlatformTransactionManager transactionManager, PageCountExecutor pageCountExecutor,
+                                      MemberColumnarIndex columnarIndex) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchCache = searchCache;
+        this.searchTemplates = searchTemplates;
+        this.metrics = metrics;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pageCountExecutor = pageCountExecutor;
+        this.columnarIndex = columnarIndex;
     }
 
+    /**
+     * 같은 조건 조합이 반복되므로 결과를 캐시한다. 캐시된 List 는 수정하면 안된다. (unmodifiable)
+     */
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        long start = System.nanoTime();
+        flushPendingChanges();
+        List<MemberTeamDto> result = searchCache.get(MemberSearchKey.of(condition), () -> fetchSearch(condition));
+        metrics.record(Operation.SEARCH, MemberSearchShape.of(condition), start, result.size());
+        return result;
+    }
+
+    /**
+     * 쿼리를 실행할 때의 auto flush 와 같은 효과. 캐시를 보기 전에 flush 해서
+     * 아직 DB 에 안 나간 변경(persist, changeTeam 등)의 무효화 이벤트를 먼저 발생시킨다.
+     */
+    private void flushPendingChanges() {
+        if (em.isJoinedToTransaction() && em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+    }
+
+    @Override
+    public List<MemberTeamDto> searchInMemory(MemberSearchCondition condition) {
+        long start = System.nanoTime();
+        List<MemberTeamDto> result = columnarIndex.search(condition);
+        if (result == null) {
+            result = fetchSearch(condition);
+        }
+        metrics.record(Operation.SEARCH_IN_MEMORY, MemberSearchShape.of(condition), start, result.size());
+        return result;
+    }
+
+    @Override
+    public long[] searchIdsInMemory(MemberSearchCondition condition) {
+        long start = System.nanoTime();
+        long[] ids = columnarIndex.searchIds(condition);
+        if (ids == null) {
+            ids = fetchSearch(condition).stream()
+                    .mapToLong(MemberTeamDto::getMemberId)
+                    .sorted()
+                    .toArray();
+        }
+        metrics.record(Operation.SEARCH_IDS_IN_MEMORY, MemberSearchShape.of(condition), start, ids.length);
+        return ids;
+    }
+
+    private List<MemberTeamDto> fetchSearch(MemberSearchCondition condition) {
+        return Collections.unmodifiableList(searchTemplates.search(em, condition));
+    }
+
+    /**
+     * Hibernate 는 stream() 을 forward-only ScrollableResults 로 처리한다.
+     * DTO 프로젝션이라 영속성 컨텍스트에 엔티티가 쌓이지 않으므로 결과 크기와 상관없이 메모리가 일정하다.
+     */
+    @Override
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition condition, int fetchSize) {
+        long start = System.nanoTime();
+        long[] rows = new long[1];
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -45,10 +148,46 @@ public class MemberCustomRepositoryImpl implements MemberCustomRepository{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameStartsWith(condition.getUsernamePrefix()),
+                        usernameContains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
-                .fetch();
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .stream()
+                .peek(row -> rows[0]++)
+                .onClose(() -> metrics.record(Operation.SEARCH_STREAM, MemberSearchShape.of(condition), start, rows[0]));
+    }
+
+    @Override
+    public long searchRows(MemberSearchCondition condition, int fetchSize, RowCallbackHandler handler) {
+        long start = System.nanoTime();
+        int shape = MemberSearchShape.of(condition);
+        //네이티브 SQL 은 JPQL 처럼 자동 flush 되지 않는다. 같은 트랜잭션에서 바꾼 member 도 보이도록 먼저 flush
+        if (em.isJoinedToTransaction() && em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+        List<String> grams = searchTemplates.usernameGrams(condition);
+        long rows = em.unwrap(SessionImplementor.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(searchTemplates.contentSql(shape, grams),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                Object[] params = searchTemplates.sqlParameters(condition, grams);
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                ps.setFetchSize(fetchSize);
+                long count = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                        count++;
+                    }
+                }
+                return count;
+            }
+        });
+        metrics.record(Operation.SEARCH_ROWS, shape, start, rows);
+        return rows;
     }
 
     /**
@@ -76,9 +215,144 @@ public class MemberCustomRepositoryImpl implements MemberCustomRepository{
         return StringUtils.hasText(username) ? member.username.eq(username) : null;
     }
 
+    private BooleanExpression usernameStartsWith(String prefix) {
+        return StringUtils.hasText(prefix) ? member.username.startsWith(prefix) : null;
+    }
+
+    /**
+     * gram 테이블을 쓸 수 있으면 gram posting 교집합으로 후보를 좁히고 LIKE 로 확인한다.
+     */
+    private BooleanExpression usernameContains(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        List<String> grams = searchTemplates.usernameGrams(value);
+        BooleanExpression contains = member.username.contains(value);
+        return grams != null ? contains.and(MemberSearchTemplates.usernameHasGrams(grams)) : contains;
+    }
+
+    /**
+     * fetchResults 와 같은 동작 (count 후 content). shape 별 템플릿으로 실행한다.
+     */
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+        long start = System.nanoTime();
+        long total = searchTemplates.count(em, condition);
+        List<MemberTeamDto> content = total == 0
+                ? Collections.emptyList()
+                : searchTemplates.search(em, condition, pageable.getOffset(), pageable.getPageSize());
+
+        metrics.record(Operation.SEARCH_PAGE_SIMPLE, MemberSearchShape.of(condition), start, content.size());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Join 이 필요 없을때, count 쿼리를 만들때 Join 이 굳이 필요하지 않을때.
+     * 최적화 가능.
+     * ex) 카운트 쿼리를 날리고 0이면 content 쿼리를 날리지 않는다거나 등등으로 최적화 가능.
+     *
+     * DEPRECATED -> 적용 예제
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        long start = System.nanoTime();
+        flushPendingChanges();
+        MemberSearchKey key = MemberSearchKey.of(condition, pageable.getOffset(), pageable.getPageSize());
+        Page<MemberTeamDto> page = searchCache.get(key, () -> fetchPageComplex(condition, pageable));
+        metrics.record(Operation.SEARCH_PAGE_COMPLEX, MemberSearchShape.of(condition), start, page.getNumberOfElements());
+        return page;
+    }
+
+    /**
+     * content / count 쿼리 시간을 따로 기록한다. (count 는 실행됐을 때만, rows 에는 count 결과)
+     *
+     * member.search.page.execution=parallel 이면 count 를 작업 스레드에 먼저 넘기고 content 를 실행한다.
+     * 지연시간이 content + count 에서 max(content, count) 가 된다.
+     * 첫 페이지가 pageSize 보다 작으면 PageableExecutionUtils 가 count 를 쓰지 않으므로 finally 에서 취소한다.
+     * content 가 끝났을 때 count 가 아직 시작 전이면(풀에 커넥션이 없어서 등) 기다리지 않고 이 커넥션으로 센다.
+     */
+    private Page<MemberTeamDto> fetchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        int shape = MemberSearchShape.of(condition);
+        long estimateStart = System.nanoTime();
+        Long estimate = pageCountExecutor.estimateTotal(condition);
+        if (estimate != null) {
+            metrics.record(Operation.SEARCH_PAGE_COMPLEX_ESTIMATE, shape, estimateStart, estimate);
+            return estimatedPage(condition, pageable, shape, estimate);
+        }
+
+        PageCountExecutor.PendingCount parallelCount = pageCountExecutor.isParallel()
+                ? pageCountExecutor.submit(() -> countPageComplex(condition, shape, pageCountExecutor.getCountTimeoutMillis()))
+                : null;
+        Page<MemberTeamDto> page;
+        try {
+            List<MemberTeamDto> content = fetchPageContent(condition, pageable, shape);
+            page = PageableExecutionUtils.getPage(content, pageable,
+                    () -> parallelCount != null
+                            ? pageCountExecutor.await(parallelCount, () -> countPageComplex(condition, shape, 0))
+                            : countPageComplex(condition, shape, 0));
+        } finally {
+            if (parallelCount != null) {
+                parallelCount.cancel();
+            }
+        }
+        return pageCountExecutor.isEstimatedTotal()
+                ? new EstimatedPage<>(page.getContent(), pageable, page.getTotalElements(), true)
+                : page;
+//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
+//        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 추정치는 실제 content 와 어긋날 수 있으므로 최소한 지금 페이지까지는 있다고 맞춘다.
+     * (꽉 찬 페이지면 다음 페이지가 있다고 본다)
+     */
+    private Page<MemberTeamDto> estimatedPage(MemberSearchCondition condition, Pageable pageable, int shape, long estimate) {
+        List<MemberTeamDto> content = fetchPageContent(condition, pageable, shape);
+        long seen = pageable.getOffset() + content.size() + (content.size() == pageable.getPageSize() ? 1 : 0);
+        if (content.size() < pageable.getPageSize()) {
+            //마지막 페이지면 건수를 정확히 안다.
+            return new EstimatedPage<>(content, pageable, seen, !content.isEmpty() || pageable.getOffset() == 0);
+        }
+        return new EstimatedPage<>(content, pageable, Math.max(estimate, seen), false);
+    }
+
+    private List<MemberTeamDto> fetchPageContent(MemberSearchCondition condition, Pageable pageable, int shape) {
+        long contentStart = System.nanoTime();
+        List<MemberTeamDto> content = searchTemplates.search(em, condition, pageable.getOffset(), pageable.getPageSize());
+        metrics.record(Operation.SEARCH_PAGE_COMPLEX_CONTENT, shape, contentStart, content.size());
+        return Collections.unmodifiableList(content);
+    }
+
+    /**
+     * @param timeoutMillis 0 이면 타임아웃 없음
+     */
+    private long countPageComplex(MemberSearchCondition condition, int shape, int timeoutMillis) {
+        long countStart = System.nanoTime();
+        long total = timeoutMillis > 0
+                ? searchTemplates.count(em, condition, timeoutMillis)
+                : searchTemplates.count(em, condition);
+        metrics.record(Operation.SEARCH_PAGE_COMPLEX_COUNT, shape, countStart, total);
+        return total;
+    }
+
+    /**
+     * keyset 페이징. offset 은 앞 페이지 row 를 모두 읽고 버리지만,
+     * member.id > :lastId 는 PK 인덱스에서 바로 시작 위치를 찾으므로 몇 번째 페이지든 비용이 같다.
+     * size + 1 건을 조회해서 다음 페이지 존재 여부를 판단한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemberTeamSlice searchAfter(MemberSearchCondition condition, String cursor, int size) {
+        Assert.isTrue(size > 0, "size must be positive");
+        long start = System.nanoTime();
+        MemberCursor last = MemberCursor.decode(cursor);
+        if (last != null && last.isAgeOrder()) {
+            throw new IllegalArgumentException("cursor is not for member.id order: " + cursor);
+        }
+
+        List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -88,28 +362,34 @@ public class MemberCustomRepositoryImpl implements MemberCustomRepository{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameStartsWith(condition.getUsernamePrefix()),
+                        usernameContains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+                        ageLoe(condition.getAgeLoe()),
+                        idAfter(last))
+                .orderBy(member.id.asc())
+                .limit(size + 1)
+                .fetch();
 
-        return new PageImpl<>(content, pageable, total);
+        MemberTeamSlice slice = toSlice(content, size, false);
+        metrics.record(Operation.SEARCH_AFTER, MemberSearchShape.of(condition), start, slice.getContent().size());
+        return slice;
     }
 
     /**
-     * Join 이 필요 없을때, count 쿼리를 만들때 Join 이 굳이 필요하지 않을때.
-     * 최적화 가능.
-     * ex) 카운트 쿼리를 날리고 0이면 content 쿼리를 날리지 않는다거나 등등으로 최적화 가능.
-     *
-     * DEPRECATED -> 적용 예제
+     * (age, id) 복합 커서. age 가 같은 row 는 id 로 순서를 고정해야 누락/중복이 없다.
      */
     @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public MemberTeamSlice searchAfterOrderByAge(MemberSearchCondition condition, String cursor, int size) {
+        Assert.isTrue(size > 0, "size must be positive");
+        long start = System.nanoTime();
+        MemberCursor last = MemberCursor.decode(cursor);
+        if (last != null && !last.isAgeOrder()) {
+            throw new IllegalArgumentException("cursor is not for (age, member.id) order: " + cursor);
+        }
+
         List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -120,25 +400,155 @@ public class MemberCustomRepositoryImpl implements MemberCustomRepository{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameStartsWith(condition.getUsernamePrefix()),
+                        usernameContains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                        ageLoe(condition.getAgeLoe()),
+                        ageAndIdAfter(last))
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1)
                 .fetch();
 
-        JPAQuery<Long> countQuery = queryFactory
-                .select(member.count())
+        MemberTeamSlice slice = toSlice(content, size, true);
+        metrics.record(Operation.SEARCH_AFTER_ORDER_BY_AGE, MemberSearchShape.of(condition), start, slice.getContent().size());
+        return slice;
+    }
+
+    private BooleanExpression idAfter(MemberCursor last) {
+        return last != null ? member.id.gt(last.getMemberId()) : null;
+    }
+
+    private BooleanExpression ageAndIdAfter(MemberCursor last) {
+        if (last == null) {
+            return null;
+        }
+        return member.age.gt(last.getAge())
+                .or(member.age.eq(last.getAge()).and(member.id.gt(last.getMemberId())));
+    }
+
+    private MemberTeamSlice toSlice(List<MemberTeamDto> rows, int size, boolean ageOrder) {
+        if (rows.size() <= size) {
+            return new MemberTeamSlice(rows, null);
+        }
+        List<MemberTeamDto> content = rows.subList(0, size);
+        MemberTeamDto tail = content.get(size - 1);
+        MemberCursor next = ageOrder
+                ? MemberCursor.ofAgeAndId(tail.getAge(), tail.getMemberId())
+                : MemberCursor.ofId(tail.getMemberId());
+        return new MemberTeamSlice(content, next.encode());
+    }
+
+    @Override
+    public long bulkUpdate(Predicate where, Consumer<JPAUpdateClause> assignments, MemberBulkOptions options) {
+        return executeInChunks(Operation.BULK_UPDATE, where, options, ids -> {
+            JPAUpdateClause update = queryFactory.update(member).where(member.id.in(ids));
+            assignments.accept(update);
+            return update.execute();
+        });
+    }
+
+    @Override
+    public long bulkDelete(Predicate where, MemberBulkOptions options) {
+        return executeInChunks(Operation.BULK_DELETE, where, options,
+                ids -> queryFactory.delete(member).where(member.id.in(ids)).execute());
+    }
+
+    /**
+     * 대상 id 의 min~max 를 chunkSize 폭으로 나눠서 청크마다 새 트랜잭션(REQUIRES_NEW)으로 처리한다.
+     * 한 statement 가 수백만 row 의 락을 오래 잡지 않도록 하기 위함.
+     *
+     * 청크 트랜잭션 안에서 대상 id 를 먼저 select ... for update 로 잠그고 id IN 으로 수정/삭제한다.
+     * (벌크 JPQL 은 team 조인을 못하므로 where 에 team 조건이 있어도 동작하게 하려는 것도 있음)
+     * 커밋 후에는 호출한 쪽 영속성 컨텍스트에서 그 id 의 Member 만 detach 한다. em.clear() 처럼 전부 날리지 않는다.
+     *
+     * 주의: 호출한 트랜잭션이 대상 row 를 이미 수정(flush)했다면 청크 트랜잭션이 그 락을 기다리게 된다.
+     * 가능하면 트랜잭션 밖에서 호출할 것. team.members 컬렉션에 들어있는 Member 는 갱신되지 않는다.
+     */
+    private long executeInChunks(Operation operation, Predicate where, MemberBulkOptions options,
+                                 ToLongFunction<List<Long>> action) {
+        long start = System.nanoTime();
+        SessionImplementor caller = em.isJoinedToTransaction() ? em.unwrap(SessionImplementor.class) : null;
+
+        Tuple bounds = queryFactory
+                .select(member.id.min(), member.id.max())
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .where(where)
+                .fetchOne();
+        Long minId = bounds.get(member.id.min());
+        Long maxId = bounds.get(member.id.max());
+        if (minId == null) {
+            metrics.record(operation, start, 0);
+            return 0;
+        }
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
-//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
-//        return new PageImpl<>(content, pageable, total);
+        int chunkSize = options.getChunkSize();
+        int totalChunks = (int) ((maxId - minId) / chunkSize + 1);
+        long totalRows = 0;
+        for (int chunk = 1; chunk <= totalChunks; chunk++) {
+            long from = minId + (long) (chunk - 1) * chunkSize;
+            long to = Math.min(maxId, from + chunkSize - 1);
+            long[] rows = new long[1];
+            List<Long> ids = chunkTransaction.execute(status -> {
+                List<Long> matched = queryFactory
+                        .select(member.id)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(where, member.id.between(from, to))
+                        .forUpdate()
+                        .fetch();
+                if (!matched.isEmpty()) {
+                    rows[0] = action.applyAsLong(matched);
+                }
+                return matched;
+            });
+            totalRows += rows[0];
+
+            if (caller != null) {
+                evictMembers(caller, ids);
+            }
+            MemberBulkProgress progress = new MemberBulkProgress(chunk, totalChunks, to, rows[0], totalRows,
+                    (System.nanoTime() - start) / 1_000_000);
+            log.debug("{} chunk {}/{} (id <= {}) rows={} total={}",
+                    operation, chunk, totalChunks, to, rows[0], totalRows);
+            options.getProgressListener().accept(progress);
+
+            if (chunk < totalChunks) {
+                pause(options, chunk);
+            }
+        }
+
+        metrics.record(operation, start, totalRows);
+        return totalRows;
+    }
+
+    private void evictMembers(SessionImplementor session, List<Long> ids) {
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        PersistenceContext context = session.getPersistenceContextInternal();
+        for (Long id : ids) {
+            EntityKey key = session.generateEntityKey(id, persister);
+            Object entity = context.getEntity(key);
+            if (entity != null) {
+                session.evict(entity);
+            }
+            Object proxy = context.getProxy(key);
+            if (proxy != null) {
+                session.evict(proxy);
+            }
+        }
+    }
+
+    private void pause(MemberBulkOptions options, int chunk) {
+        if (options.getPause().isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(options.getPause().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bulk operation interrupted after chunk " + chunk, e);
+        }
     }
 
 }
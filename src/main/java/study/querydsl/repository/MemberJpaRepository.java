@@ -4,11 +4,14 @@ import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.metrics.RepositoryMetrics;
+import study.querydsl.metrics.RepositoryMetrics.Operation;
 
 import javax.persistence.EntityManager;
 import java.util.List;
@@ -22,53 +25,83 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchTemplates searchTemplates;
+    private final RepositoryMetrics metrics;
 
     //https://www.inflearn.com/questions/158967
     //spring 빈으로 등록되면 자동 인젝션 받을 수 있다. em 은 기본적으로 빈으로 등록 되어있는듯! -> 애플리케이션 로딩 시점에 EntityManager도 자동 등록됩니다^^
     //빈으로 등록하면 좋은점 : 롬복 활용해서 코드 간결하게 쓸 수 있음
     //주입을 2가지 받아야 된다. -> 멀티쓰레드 환경에서 동시성 문제 발생 하지 않나요? -> 이부분에서 대해서 스터디!! (빈 등록 포함)
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchTemplates searchTemplates, RepositoryMetrics metrics) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchTemplates = searchTemplates;
+        this.metrics = metrics;
     }
 
     public void save(Member member) {
+        long start = System.nanoTime();
         em.persist(member);
+        metrics.record(Operation.JPA_SAVE, start, 1);
     }
+    //반복문에서 여러 id 를 읽을 때는 MemberLoader (in 쿼리로 모아서 조회)
     public Optional<Member> findById(Long id) {
+        long start = System.nanoTime();
         Member findMember = em.find(Member.class, id);
+        metrics.record(Operation.JPA_FIND_BY_ID, start, findMember != null ? 1 : 0);
         return Optional.ofNullable(findMember);
     }
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class)
+        long start = System.nanoTime();
+        List<Member> result = em.createQuery("select m from Member m", Member.class)
                 .getResultList();
+        metrics.record(Operation.JPA_FIND_ALL, start, result.size());
+        return result;
     }
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+        long start = System.nanoTime();
+        List<Member> result = em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
                 .getResultList();
+        metrics.record(Operation.JPA_FIND_BY_USERNAME, start, result.size());
+        return result;
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
-        return queryFactory
+        long start = System.nanoTime();
+        List<Member> result = queryFactory
                 .selectFrom(member).fetch();
+        metrics.record(Operation.JPA_FIND_ALL_QUERYDSL, start, result.size());
+        return result;
     }
     public List<Member> findByUsername_Querydsl(String username) {
-        return queryFactory
+        long start = System.nanoTime();
+        List<Member> result = queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
                 .fetch();
+        metrics.record(Operation.JPA_FIND_BY_USERNAME_QUERYDSL, start, result.size());
+        return result;
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+        long start = System.nanoTime();
 
         BooleanBuilder builder = new BooleanBuilder();
         //null & empty 둘다 확인
         if (StringUtils.hasText(condition.getUsername())) {
             builder.and(member.username.eq(condition.getUsername()));
         }
-        if (StringUtils.hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
+        if (StringUtils.hasText(condition.getTeamName())) {
+            builder.and(team.name.eq(condition.getTeamName()));
+        }
+        if (StringUtils.hasText(condition.getUsernamePrefix())) {
+            builder.and(member.username.startsWith(condition.getUsernamePrefix()));
+        }
+        if (StringUtils.hasText(condition.getUsernameContains())) {
+            builder.and(member.username.contains(condition.getUsernameContains()));
         }
         if (condition.getAgeGoe() != null) {
             builder.and(member.age.goe(condition.getAgeGoe()));
@@ -77,7 +110,7 @@ public class MemberJpaRepository {
             builder.and(member.age.loe(condition.getAgeLoe()));
         }
 
-        return queryFactory
+        List<MemberTeamDto> result = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -90,23 +123,19 @@ public class MemberJpaRepository {
                 .where(builder)
                 .fetch();
 
+        metrics.record(Operation.JPA_SEARCH_BY_BUILDER, MemberSearchShape.of(condition), start, result.size());
+        return result;
     }
 
+    /**
+     * where 파라미터 방식과 같은 쿼리를 shape 별 템플릿으로 실행. (조립/직렬화는 최초 1회)
+     */
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch();
+        long start = System.nanoTime();
+        List<MemberTeamDto> result = searchTemplates.search(em, condition);
+        metrics.record(Operation.JPA_SEARCH, MemberSearchShape.of(condition), start, result.size());
+        return result;
     }
 
     /**
@@ -0,0 +1,234 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+import study.querydsl.metrics.RepositoryMetrics;
+import study.querydsl.metrics.RepositoryMetrics.Operation;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 반복문 안의 MemberJpaRepository.findById (id 하나당 select 하나)를 모아서 in 쿼리로 실행하는 DataLoader 스타일 로더.
+ *
+ * - load(id) 는 바로 조회하지 않고 future 를 돌려준다. 같은 트랜잭션 안에서 모인 id 는
+ *   dispatch() 를 호출하거나, 모인 id 가 max-batch-size 에 닿거나, 커밋 직전에 한꺼번에 조회된다.
+ *   조회 전에 future 를 join/get 하면 그 자리에서 dispatch 한다. (기다리기만 하면 아무도 완료시키지 않는다)
+ * - 영속성 컨텍스트에 이미 있는 member 는 쿼리 없이 바로 완료한다. (em.find 와 같은 인스턴스)
+ * - in 목록은 max-batch-size 로 자른다. (in_clause_parameter_padding 이 켜져 있어 쿼리 모양도 몇 개로 고정된다)
+ * - 모으는 단위는 트랜잭션(= 영속성 컨텍스트)이다. 트랜잭션 밖에서는 모을 곳이 없어서 load 가 바로 조회한다.
+ *   롤백되면 조회 안 된 future 는 취소된다.
+ */
+@Component
+public class MemberLoader {
+
+    private final EntityManager em;
+    private final RepositoryMetrics metrics;
+    private final int maxBatchSize;
+
+    public MemberLoader(EntityManager em, RepositoryMetrics metrics,
+                        @Value("${member.loader.max-batch-size:100}") int maxBatchSize) {
+        Assert.isTrue(maxBatchSize > 0, "max-batch-size must be positive");
+        this.em = em;
+        this.metrics = metrics;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return 조회되면 완료되는 future. 없는 id 면 Optional.empty()
+     */
+    public CompletableFuture<Optional<Member>> load(Long id) {
+        Assert.notNull(id, "id must not be null");
+        Optional<Member> loaded = findInPersistenceContext(id);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+        Map<Long, CompletableFuture<Optional<Member>>> pending = pending();
+        if (pending == null) {
+            CompletableFuture<Optional<Member>> future = new CompletableFuture<>();
+            Map<Long, CompletableFuture<Optional<Member>>> single = new HashMap<>();
+            single.put(id, future);
+            fetch(single);
+            return future;
+        }
+        CompletableFuture<Optional<Member>> future = pending.computeIfAbsent(id, key -> new PendingLoad());
+        if (pending.size() >= maxBatchSize) {
+            dispatch();
+        }
+        return future;
+    }
+
+    /**
+     * ids 를 모두 load 하고 바로 dispatch 한다.
+     * @return id -> member (입력 순서, 없는 id 는 빠진다)
+     */
+    public Map<Long, Member> loadMany(Collection<Long> ids) {
+        Map<Long, CompletableFuture<Optional<Member>>> futures = new LinkedHashMap<>();
+        for (Long id : ids) {
+            futures.put(id, load(id));
+        }
+        dispatch();
+        Map<Long, Member> result = new LinkedHashMap<>();
+        futures.forEach((id, future) -> future.join().ifPresent(member -> result.put(id, member)));
+        return result;
+    }
+
+    /**
+     * 모인 id 를 조회해서 future 를 완료한다.
+     */
+    public void dispatch() {
+        Map<Long, CompletableFuture<Optional<Member>>> pending = pending();
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        Map<Long, CompletableFuture<Optional<Member>>> batch = new HashMap<>(pending);
+        pending.clear();
+        fetch(batch);
+    }
+
+    private void fetch(Map<Long, CompletableFuture<Optional<Member>>> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        //load 이후 다른 조회로 영속성 컨텍스트에 들어온 member 는 다시 읽지 않는다.
+        batch.forEach((id, future) -> {
+            Optional<Member> loaded = findInPersistenceContext(id);
+            if (loaded != null) {
+                future.complete(loaded);
+            } else {
+                ids.add(id);
+            }
+        });
+        for (int from = 0; from < ids.size(); from += maxBatchSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + maxBatchSize, ids.size()));
+            long start = System.nanoTime();
+            List<Member> members;
+            try {
+                members = em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                        .setParameter("ids", chunk)
+                        .getResultList();
+            } catch (RuntimeException e) {
+                ids.subList(from, ids.size()).forEach(id -> batch.get(id).completeExceptionally(e));
+                throw e;
+            }
+            metrics.record(Operation.MEMBER_LOAD, start, members.size());
+            for (Member member : members) {
+                batch.get(member.getId()).complete(Optional.of(member));
+            }
+            for (Long id : chunk) {
+                batch.get(id).complete(Optional.empty());
+            }
+        }
+    }
+
+    /**
+     * @return 영속성 컨텍스트에 있으면 그 member (삭제된 것은 empty), 없으면 null
+     */
+    private Optional<Member> findInPersistenceContext(Long id) {
+        //트랜잭션 밖의 공유 EntityManager 는 호출마다 새 영속성 컨텍스트라 볼 것이 없다.
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        PersistenceContext context = session.getPersistenceContextInternal();
+        EntityKey key = session.generateEntityKey(id, persister);
+        Object entity = context.getEntity(key);
+        if (entity == null) {
+            return null;
+        }
+        EntityEntry entry = context.getEntry(entity);
+        if (entry != null && (entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE)) {
+            return Optional.empty();
+        }
+        return Optional.of((Member) entity);
+    }
+
+    /**
+     * 현재 트랜잭션에 묶인 대기 목록. 트랜잭션 동기화가 없으면 null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, CompletableFuture<Optional<Member>>> pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Long, CompletableFuture<Optional<Member>>> pending =
+                (Map<Long, CompletableFuture<Optional<Member>>>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        Map<Long, CompletableFuture<Optional<Member>>> created = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                dispatch();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MemberLoader.this);
+                created.values().forEach(future -> future.cancel(false));
+                created.clear();
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 대기 목록에 들어간 future. 조회 전에 join/get 하면 먼저 dispatch 한다.
+     * thenApply 같은 콜백만 걸어 둔 경우는 dispatch() 나 커밋 직전에 완료된다.
+     */
+    private final class PendingLoad extends CompletableFuture<Optional<Member>> {
+
+        @Override
+        public Optional<Member> join() {
+            dispatchIfPending();
+            return super.join();
+        }
+
+        @Override
+        public Optional<Member> get() throws InterruptedException, ExecutionException {
+            dispatchIfPending();
+            return super.get();
+        }
+
+        @Override
+        public Optional<Member> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!isDone()) {
+                dispatch();
+            }
+            return super.get(timeout, unit);
+        }
+
+        private void dispatchIfPending() {
+            if (isDone()) {
+                return;
+            }
+            dispatch();
+            //다른 트랜잭션(스레드)의 대기 목록에 있으면 여기서는 완료시킬 수 없다.
+            if (!isDone()) {
+                throw new IllegalStateException("member load is pending in another transaction; dispatch it there");
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "member.search.page")
+public class MemberSearchPageProperties {
+
+    public enum Execution {SEQUENTIAL, PARALLEL}
+
+    public enum Total {EXACT, ESTIMATED}
+
+    /** searchPageComplex 의 content / count 쿼리 실행 방식 */
+    private Execution execution = Execution.SEQUENTIAL;
+
+    /** 동시에 실행할 수 있는 count 쿼리 수. 커넥션 풀 크기보다 충분히 작게 잡는다. */
+    private int parallelism = 4;
+
+    /** 대기 중인 count 작업 수. 넘치면 호출한 스레드에서 순차 실행한다. */
+    private int queueCapacity = 64;
+
+    /** count 쿼리 타임아웃 (JDBC query timeout, 결과 대기 시간 모두) */
+    private Duration countTimeout = Duration.ofSeconds(5);
+
+    /** estimated 면 count 를 팀/age 통계와 username 스케치로 추정한다. */
+    private Total total = Total.EXACT;
+
+    /** 추정치가 이보다 작으면 정확한 count 를 실행한다. (작은 결과는 count 도 싸다) */
+    private long estimateExactThreshold = 1000;
+}
@@ -0,0 +1,76 @@
+package study.querydsl.repository;
+
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * MemberSearchCondition 의 여섯 조건이 각각 있는지/없는지 조합 (2^6 = 64가지).
+ * 조건 값이 달라도 shape 가 같으면 같은 JPQL 을 쓴다.
+ */
+public final class MemberSearchShape {
+
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int USERNAME_PREFIX = 1 << 4;
+    public static final int USERNAME_CONTAINS = 1 << 5;
+
+    public static final int COUNT = 1 << 6;
+
+    private MemberSearchShape() {
+    }
+
+    public static int of(MemberSearchCondition condition) {
+        int shape = 0;
+        if (StringUtils.hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (StringUtils.hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        if (StringUtils.hasText(condition.getUsernamePrefix())) {
+            shape |= USERNAME_PREFIX;
+        }
+        if (StringUtils.hasText(condition.getUsernameContains())) {
+            shape |= USERNAME_CONTAINS;
+        }
+        return shape;
+    }
+
+    public static boolean has(int shape, int condition) {
+        return (shape & condition) != 0;
+    }
+
+    /**
+     * ex) "username+ageGoe", 조건이 없으면 "none"
+     */
+    public static String describe(int shape) {
+        if (shape == 0) {
+            return "none";
+        }
+        StringBuilder sb = new StringBuilder();
+        append(sb, shape, USERNAME, "username");
+        append(sb, shape, USERNAME_PREFIX, "usernamePrefix");
+        append(sb, shape, USERNAME_CONTAINS, "usernameContains");
+        append(sb, shape, TEAM_NAME, "teamName");
+        append(sb, shape, AGE_GOE, "ageGoe");
+        append(sb, shape, AGE_LOE, "ageLoe");
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, int shape, int condition, String name) {
+        if (has(shape, condition)) {
+            if (sb.length() > 0) {
+                sb.append('+');
+            }
+            sb.append(name);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.index.UsernameGramTable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberUsernameGram.memberUsernameGram;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 검색 쿼리를 shape(64가지)별로 한 번만 Querydsl 로 조립 + JPQL 직렬화해 두고,
+ * 호출할 때는 파라미터 값만 바인딩한다.
+ * 조건 값 자리에는 상수 대신 Param 을 넣어서 JPQL 문자열이 값과 상관없이 같게 만든다.
+ * (JPQL 문자열이 같으니 Hibernate 쿼리 플랜 캐시도 그대로 재사용된다)
+ *
+ * usernameContains 가 있는 shape 는 gram 조건을 더한 템플릿을 하나 더 둔다.
+ * UsernameGramTable 이 gram 을 주면(3글자 이상, 테이블 준비됨, 쓰기 트랜잭션 아님) 그 템플릿으로
+ * member_username_gram posting 교집합에 든 member 만 LIKE 로 확인하고, 아니면 LIKE 만 쓴다.
+ */
+@Component
+public class MemberSearchTemplates {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> USERNAME_PREFIX = new Param<>(String.class, "usernamePrefix");
+    private static final Param<String> USERNAME_CONTAINS = new Param<>(String.class, "usernameContains");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+    @SuppressWarnings("rawtypes")
+    private static final Param<Collection> USERNAME_GRAMS = new Param<>(Collection.class, "usernameGrams");
+    private static final Param<Long> USERNAME_GRAM_COUNT = new Param<>(Long.class, "usernameGramCount");
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private final UsernameGramTable gramTable;
+    private final Template[] contentTemplates = new Template[MemberSearchShape.COUNT];
+    private final Template[] countTemplates = new Template[MemberSearchShape.COUNT];
+    /** usernameContains 가 있는 shape 만 (나머지는 null) */
+    private final Template[] gramContentTemplates = new Template[MemberSearchShape.COUNT];
+    private final Template[] gramCountTemplates = new Template[MemberSearchShape.COUNT];
+    private final String[] contentSql = new String[MemberSearchShape.COUNT];
+
+    public MemberSearchTemplates(UsernameGramTable gramTable) {
+        this.gramTable = gramTable;
+        for (int shape = 0; shape < MemberSearchShape.COUNT; shape++) {
+            contentTemplates[shape] = contentTemplate(shape, false);
+            countTemplates[shape] = countTemplate(shape, false);
+            if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS)) {
+                gramContentTemplates[shape] = contentTemplate(shape, true);
+                gramCountTemplates[shape] = countTemplate(shape, true);
+            }
+            contentSql[shape] = sql(shape, 0);
+        }
+    }
+
+    private static Template contentTemplate(int shape, boolean grams) {
+        return Template.of(joinTeam(new JPAQuery<Void>()
+                .select(member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name)
+                .from(member), shape)
+                .where(predicates(shape, grams)));
+    }
+
+    private static Template countTemplate(int shape, boolean grams) {
+        //team 조건이 없으면 count 에는 team 조인이 필요 없다. (member -> team 은 다대일이라 건수가 같다)
+        JPAQuery<Long> count = new JPAQuery<Void>()
+                .select(member.count())
+                .from(member);
+        if (MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)) {
+            count.join(member.team, team);
+        }
+        return Template.of(count.where(predicates(shape, grams)));
+    }
+
+    /**
+     * content 템플릿과 같은 조인/조건의 네이티브 SQL. (엔티티/DTO 없이 ResultSet 을 바로 읽는 searchRows 용)
+     * 컬럼 순서: member_id, username, age, team_id, team_name
+     *
+     * @param gramCount usernameContains 를 좁힐 gram 자리 수 (0 이면 LIKE 만)
+     */
+    private static String sql(int shape, int gramCount) {
+        StringBuilder sql = new StringBuilder("select m.member_id, m.username, m.age, t.team_id, t.name as team_name"
+                + " from member m ")
+                .append(MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME) ? "join" : "left join")
+                .append(" team t on m.team_id = t.team_id");
+        List<String> predicates = new ArrayList<>(4);
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME)) {
+            predicates.add("m.username = ?");
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_PREFIX)) {
+            predicates.add("m.username like ? escape '" + LIKE_ESCAPE + "'");
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS)) {
+            predicates.add("m.username like ? escape '" + LIKE_ESCAPE + "'");
+            if (gramCount > 0) {
+                predicates.add("m.member_id in (select g.member_id from member_username_gram g where g.gram in ("
+                        + String.join(", ", Collections.nCopies(gramCount, "?"))
+                        + ") group by g.member_id having count(*) = ?)");
+            }
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)) {
+            predicates.add("t.name = ?");
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_GOE)) {
+            predicates.add("m.age >= ?");
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_LOE)) {
+            predicates.add("m.age <= ?");
+        }
+        if (!predicates.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", predicates));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * team.name = ? 조건이 있으면 left join 결과에서 team 이 null 인 row 는 어차피 걸러진다.
+     * inner join 으로 바꿔야 DB 가 team(name 인덱스) 쪽부터 읽고 member(team_id, age) 인덱스로 들어갈 수 있다.
+     * (left join 은 조인 순서를 바꿀 수 없어서 member 를 전부 읽는다)
+     */
+    private static <T> JPAQuery<T> joinTeam(JPAQuery<T> query, int shape) {
+        return MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)
+                ? query.join(member.team, team)
+                : query.leftJoin(member.team, team);
+    }
+
+    public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition) {
+        return toDtos(content(em, condition).getResultList());
+    }
+
+    public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition, long offset, int limit) {
+        return toDtos(content(em, condition)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList());
+    }
+
+    public long count(EntityManager em, MemberSearchCondition condition) {
+        return (Long) count(em, condition, usernameGrams(condition)).getSingleResult();
+    }
+
+    /**
+     * @param timeoutMillis JDBC query timeout (드라이버는 초 단위로 적용한다)
+     */
+    public long count(EntityManager em, MemberSearchCondition condition, int timeoutMillis) {
+        return (Long) count(em, condition, usernameGrams(condition))
+                .setHint(QUERY_TIMEOUT_HINT, Math.max(timeoutMillis, 1000))
+                .getSingleResult();
+    }
+
+    private Query content(EntityManager em, MemberSearchCondition condition) {
+        int shape = MemberSearchShape.of(condition);
+        List<String> grams = usernameGrams(condition);
+        return (grams != null ? gramContentTemplates[shape] : contentTemplates[shape]).bind(em, condition, grams);
+    }
+
+    private Query count(EntityManager em, MemberSearchCondition condition, List<String> grams) {
+        int shape = MemberSearchShape.of(condition);
+        return (grams != null ? gramCountTemplates[shape] : countTemplates[shape]).bind(em, condition, grams);
+    }
+
+    /**
+     * usernameContains 를 좁힐 gram. gram 을 쓸 수 없으면 null
+     */
+    public List<String> usernameGrams(MemberSearchCondition condition) {
+        return usernameGrams(condition.getUsernameContains());
+    }
+
+    public List<String> usernameGrams(String contains) {
+        return gramTable.queryGrams(contains);
+    }
+
+    public String contentSql(int shape) {
+        return contentSql[shape];
+    }
+
+    /**
+     * @param grams usernameGrams 결과. gram 자리 수는 2의 거듭제곱으로 올려서 SQL 문자열 가짓수를 줄인다
+     */
+    public String contentSql(int shape, List<String> grams) {
+        return grams != null ? sql(shape, paddedSize(grams.size())) : contentSql[shape];
+    }
+
+    public Object[] sqlParameters(MemberSearchCondition condition) {
+        return sqlParameters(condition, null);
+    }
+
+    /**
+     * contentSql 의 ? 순서대로 바인딩할 값
+     */
+    public Object[] sqlParameters(MemberSearchCondition condition, List<String> grams) {
+        int shape = MemberSearchShape.of(condition);
+        List<Object> params = new ArrayList<>(4);
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME)) {
+            params.add(condition.getUsername());
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_PREFIX)) {
+            params.add(startsWithPattern(condition.getUsernamePrefix()));
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS)) {
+            params.add(containsPattern(condition.getUsernameContains()));
+            if (grams != null) {
+                //남는 자리는 마지막 gram 을 반복한다. (in 목록 중복은 결과에 영향 없음)
+                int padded = paddedSize(grams.size());
+                for (int i = 0; i < padded; i++) {
+                    params.add(grams.get(Math.min(i, grams.size() - 1)));
+                }
+                params.add((long) grams.size());
+            }
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)) {
+            params.add(condition.getTeamName());
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_GOE)) {
+            params.add(condition.getAgeGoe());
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_LOE)) {
+            params.add(condition.getAgeLoe());
+        }
+        return params.toArray();
+    }
+
+    private static int paddedSize(int size) {
+        return Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+    }
+
+    /**
+     * 테스트/디버깅용. shape 별로 만들어진 JPQL.
+     */
+    public String contentJpql(int shape) {
+        return contentTemplates[shape].jpql;
+    }
+
+    public String countJpql(int shape) {
+        return countTemplates[shape].jpql;
+    }
+
+    public String gramContentJpql(int shape) {
+        return gramContentTemplates[shape].jpql;
+    }
+
+    /**
+     * member.id in (gram 을 전부 가진 member). 동적 쿼리(searchAfter 등)에서도 쓴다.
+     * gram 은 후보만 좁히므로 usernameContains LIKE 조건과 같이 써야 한다.
+     */
+    public static BooleanExpression usernameHasGrams(List<String> grams) {
+        return usernameHasGrams(memberUsernameGram.gram.in(grams), Expressions.constant((long) grams.size()));
+    }
+
+    private static BooleanExpression usernameHasGrams(Predicate gramIn, Expression<Long> gramCount) {
+        JPQLQuery<Long> members = JPAExpressions
+                .select(memberUsernameGram.memberId)
+                .from(memberUsernameGram)
+                .where(gramIn)
+                .groupBy(memberUsernameGram.memberId)
+                .having(Wildcard.count.eq(gramCount));
+        return member.id.in(members);
+    }
+
+    private static Predicate[] predicates(int shape, boolean grams) {
+        List<Predicate> predicates = new ArrayList<>(4);
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME)) {
+            predicates.add(member.username.eq(USERNAME));
+        }
+        //prefix 는 username 인덱스 범위 검색이 된다. contains 는 LIKE 만으로는 scan 이라 gram 후보로 좁힌다.
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_PREFIX)) {
+            predicates.add(member.username.like(USERNAME_PREFIX, LIKE_ESCAPE));
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS)) {
+            predicates.add(member.username.like(USERNAME_CONTAINS, LIKE_ESCAPE));
+            if (grams) {
+                //Param 은 값(목록)을 모르는 채로 직렬화되므로 괄호는 템플릿에 직접 쓴다
+                predicates.add(usernameHasGrams(
+                        Expressions.booleanTemplate("{0} in ({1})", memberUsernameGram.gram, USERNAME_GRAMS),
+                        USERNAME_GRAM_COUNT));
+            }
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)) {
+            predicates.add(team.name.eq(TEAM_NAME));
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_GOE)) {
+            predicates.add(member.age.goe(AGE_GOE));
+        }
+        if (MemberSearchShape.has(shape, MemberSearchShape.AGE_LOE)) {
+            predicates.add(member.age.loe(AGE_LOE));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    /**
+     * like 패턴. 값 안의 %, _ 는 문자 그대로 찾도록 escape 한다. (null 이면 null)
+     */
+    static String startsWithPattern(String value) {
+        return value != null ? escapeLike(value) + "%" : null;
+    }
+
+    static String containsPattern(String value) {
+        return value != null ? "%" + escapeLike(value) + "%" : null;
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<MemberTeamDto> toDtos(List<?> rows) {
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : (List<Object[]>) rows) {
+            result.add(new MemberTeamDto(
+                    (Long) row[0],
+                    (String) row[1],
+                    (Integer) row[2],
+                    (Long) row[3],
+                    (String) row[4]));
+        }
+        return result;
+    }
+
+    private static class Template {
+        private final String jpql;
+        private final List<Object> constants;
+
+        private Template(String jpql, List<Object> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+
+        static Template of(JPAQuery<?> query) {
+            JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+            serializer.serialize(query.getMetadata(), false, null);
+            return new Template(serializer.toString(),
+                    Collections.unmodifiableList(new ArrayList<>(serializer.getConstants())));
+        }
+
+        Query bind(EntityManager em, MemberSearchCondition condition, List<String> grams) {
+            Map<ParamExpression<?>, Object> params = new HashMap<>(16);
+            params.put(USERNAME, condition.getUsername());
+            params.put(USERNAME_PREFIX, startsWithPattern(condition.getUsernamePrefix()));
+            params.put(USERNAME_CONTAINS, containsPattern(condition.getUsernameContains()));
+            params.put(TEAM_NAME, condition.getTeamName());
+            params.put(AGE_GOE, condition.getAgeGoe());
+            params.put(AGE_LOE, condition.getAgeLoe());
+            if (grams != null) {
+                params.put(USERNAME_GRAMS, grams);
+                params.put(USERNAME_GRAM_COUNT, (long) grams.size());
+            }
+            Query query = em.createQuery(jpql);
+            JPAUtil.setConstants(query, constants, params);
+            return query;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.statistics.MemberCountEstimator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * searchPageComplex 의 count 쿼리를 content 쿼리와 동시에 실행하기 위한 작업 스레드.
+ * (member.search.page.total=estimated 면 count 대신 추정치를 먼저 본다)
+ * count 는 작업 스레드에서 별도 커넥션 + 읽기 전용 트랜잭션으로 실행된다.
+ *
+ * 커넥션 누수 방지
+ * - 트랜잭션은 TransactionTemplate 이 열고 닫으므로 작업이 어떻게 끝나든 커넥션은 반납된다.
+ * - 결과가 필요 없어지면(짧은 첫 페이지, content 실패, 대기 타임아웃) cancel() 한다.
+ *   아직 시작 안 한 작업은 쿼리 없이 버려지고, 이미 실행 중인 쿼리는 JDBC query timeout 으로 끝난다.
+ *   (인터럽트는 드라이버에 따라 커넥션을 깨뜨릴 수 있어서 쓰지 않는다)
+ *
+ * 커넥션 풀이 바닥나면
+ * - 호출한 스레드는 자기 커넥션을 쥔 채로 기다리므로, 작업 스레드가 커넥션을 못 받으면 count 가 시작도 못 한다.
+ * - 그래서 await 시점에 작업이 아직 커넥션을 잡고 쿼리를 시작하지 않았으면 기다리지 않고
+ *   호출한 스레드의 커넥션으로 직접 센다. (순차 실행과 같은 비용)
+ * - 나중에 커넥션을 받은 작업은 포기된 것을 보고 쿼리 없이 바로 반납한다.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(MemberSearchPageProperties.class)
+public class PageCountExecutor implements DisposableBean {
+
+    private final MemberSearchPageProperties properties;
+    private final MemberCountEstimator estimator;
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public PageCountExecutor(MemberSearchPageProperties properties, MemberCountEstimator estimator,
+                             PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.estimator = estimator;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getParallelism(), properties.getParallelism(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()), runnable -> {
+                    Thread thread = new Thread(runnable, "page-count-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 다른 커넥션에서는 호출한 트랜잭션의 커밋 안 된 변경이 보이지 않는다.
+     * 그래서 쓰기 트랜잭션 안에서 호출되면 병렬로 돌리지 않는다.
+     */
+    public boolean isParallel() {
+        if (properties.getExecution() != MemberSearchPageProperties.Execution.PARALLEL) {
+            return false;
+        }
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    public boolean isEstimatedTotal() {
+        return properties.getTotal() == MemberSearchPageProperties.Total.ESTIMATED;
+    }
+
+    /**
+     * @return 추정 모드가 아니거나, 추정할 수 없거나, 추정치가 estimate-exact-threshold 보다 작으면 null (정확한 count 를 쓸 것)
+     */
+    public Long estimateTotal(MemberSearchCondition condition) {
+        if (!isEstimatedTotal()) {
+            return null;
+        }
+        Long estimate = estimator.estimate(condition);
+        return estimate != null && estimate >= properties.getEstimateExactThreshold() ? estimate : null;
+    }
+
+    public int getCountTimeoutMillis() {
+        return (int) properties.getCountTimeout().toMillis();
+    }
+
+    /**
+     * @return 큐가 가득 차면 null (호출한 쪽에서 순차 실행)
+     */
+    public PendingCount submit(LongSupplier count) {
+        PendingCount pending = new PendingCount();
+        try {
+            //트랜잭션이 시작됐으면 커넥션은 이미 잡혀 있다. 그 뒤에 시작할지 정한다.
+            pending.future = executor.submit(() -> readOnlyTransaction.execute(status ->
+                    pending.start() ? count.getAsLong() : null));
+            return pending;
+        } catch (RejectedExecutionException e) {
+            log.debug("page count queue is full, running count on caller thread");
+            return null;
+        }
+    }
+
+    /**
+     * @param inline 작업이 아직 쿼리를 시작하지 못했을 때 호출한 스레드에서 실행할 count
+     */
+    public long await(PendingCount count, LongSupplier inline) {
+        if (count.abandon()) {
+            log.debug("page count has not started (no free connection?), running count on caller thread");
+            return inline.getAsLong();
+        }
+        Future<Long> future = count.future;
+        try {
+            return future.get(properties.getCountTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new QueryTimeoutException("count query did not finish in " + properties.getCountTimeout(), e);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 작업 스레드에 넘긴 count. 작업이 커넥션을 잡고 시작하는 것과 호출한 쪽이 포기하는 것 중 먼저 된 쪽만 성공한다.
+     */
+    public static final class PendingCount {
+
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Future<Long> future;
+
+        private boolean start() {
+            return state.compareAndSet(WAITING, RUNNING);
+        }
+
+        private boolean abandon() {
+            return state.compareAndSet(WAITING, ABANDONED);
+        }
+
+        /**
+         * 결과가 필요 없을 때. 아직 시작 안 한 작업은 쿼리 없이 끝난다.
+         */
+        public void cancel() {
+            abandon();
+            future.cancel(false);
+        }
+    }
+}
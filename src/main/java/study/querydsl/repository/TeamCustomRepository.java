@@ -0,0 +1,9 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.TeamMembersDto;
+
+public interface TeamCustomRepository {
+    Slice<TeamMembersDto> findTeamsWithMembers(Pageable pageable);
+}
@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.RepositoryMetrics;
+import study.querydsl.metrics.RepositoryMetrics.Operation;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+public class TeamCustomRepositoryImpl implements TeamCustomRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final RepositoryMetrics metrics;
+
+    public TeamCustomRepositoryImpl(EntityManager em, RepositoryMetrics metrics) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.metrics = metrics;
+    }
+
+    /**
+     * team.members 를 fetch join 하면 페이징을 메모리에서 한다. (HHH000104, 전체 row 를 다 읽는다)
+     * 지연 로딩으로 members 를 건드리면 팀 수만큼 select 가 나간다. (N+1)
+     * 그래서 팀 페이지는 DB 에서 자르고, 그 페이지 팀들의 멤버는 IN 쿼리 한 번으로 가져와서 붙인다.
+     * 페이지 크기와 상관없이 쿼리는 최대 2번. (팀이 없으면 1번)
+     *
+     * 정렬은 Team 의 단순 필드(id, name)만 지원. 마지막에 team.id 를 붙여 순서를 고정한다.
+     */
+    @Override
+    public Slice<TeamMembersDto> findTeamsWithMembers(Pageable pageable) {
+        long start = System.nanoTime();
+        List<Tuple> teams = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .orderBy(teamOrder(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1)
+                .fetch();
+
+        boolean hasNext = teams.size() > pageable.getPageSize();
+        if (hasNext) {
+            teams = teams.subList(0, pageable.getPageSize());
+        }
+
+        Map<Long, TeamMembersDto> result = new LinkedHashMap<>();
+        for (Tuple row : teams) {
+            Long teamId = row.get(team.id);
+            result.put(teamId, new TeamMembersDto(teamId, row.get(team.name)));
+        }
+
+        long memberCount = 0;
+        if (!result.isEmpty()) {
+            //member.team.id 는 FK 컬럼이라 team 조인 없이 조회된다.
+            List<Tuple> members = queryFactory
+                    .select(member.id, member.username, member.age, member.team.id)
+                    .from(member)
+                    .where(member.team.id.in(result.keySet()))
+                    .orderBy(member.team.id.asc(), member.id.asc())
+                    .fetch();
+            for (Tuple row : members) {
+                TeamMembersDto dto = result.get(row.get(member.team.id));
+                dto.getMembers().add(new MemberTeamDto(
+                        row.get(member.id),
+                        row.get(member.username),
+                        row.get(member.age),
+                        dto.getTeamId(),
+                        dto.getTeamName()));
+            }
+            memberCount = members.size();
+        }
+
+        metrics.record(Operation.TEAM_FIND_WITH_MEMBERS, start, memberCount);
+        return new SliceImpl<>(new ArrayList<>(result.values()), pageable, hasNext);
+    }
+
+    private OrderSpecifier<?>[] teamOrder(Sort sort) {
+        PathBuilder<Team> path = new PathBuilder<>(Team.class, team.getMetadata());
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if ("members".equals(order.getProperty())) {
+                throw new IllegalArgumentException("cannot sort teams by members");
+            }
+            orders.add(new OrderSpecifier<>(order.isAscending() ? Order.ASC : Order.DESC,
+                    path.getComparable(order.getProperty(), Comparable.class)));
+        }
+        orders.add(team.id.asc());
+        return orders.toArray(new OrderSpecifier<?>[0]);
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository;
+
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHint;
+import org.springframework.stereotype.Repository;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+@Repository
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamCustomRepository {
+
+    /**
+     * 쿼리 캐시에는 team id 만 남고 엔티티는 team 리전에서 꺼낸다.
+     * team 테이블이 바뀌면(벌크 포함) Hibernate 가 update timestamps 로 결과를 버린다.
+     */
+    @org.springframework.data.jpa.repository.QueryHints({
+            @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+            @QueryHint(name = QueryHints.CACHE_REGION, value = "team-by-name")})
+    List<Team> findByName(String name);
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.TeamAgeCount;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamAgeCount.teamAgeCount;
+import static study.querydsl.entity.QTeamStatistics.teamStatistics;
+
+/**
+ * 팀별 집계 조회. member 테이블은 읽지 않고 미리 유지된 통계만 읽는다. (O(팀 수 x age 종류))
+ * MemberTest.group 의 groupBy(team.name) + avg 를 대체.
+ */
+@Repository
+public class TeamStatisticsRepository {
+
+    private static final int HISTOGRAM_BUCKET = 10;
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatisticsRepository(EntityManager em) {
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    public List<TeamStatisticsDto> findAll() {
+        List<Tuple> totals = queryFactory
+                .select(team.id, team.name, teamStatistics.memberCount, teamStatistics.ageSum)
+                .from(teamStatistics)
+                .join(team).on(team.id.eq(teamStatistics.teamId))
+                .orderBy(team.name.asc())
+                .fetch();
+
+        List<TeamAgeCount> ages = queryFactory
+                .selectFrom(teamAgeCount)
+                .where(teamAgeCount.memberCount.gt(0))
+                .orderBy(teamAgeCount.teamId.asc(), teamAgeCount.age.asc())
+                .fetch();
+
+        Map<Long, TeamStatisticsDto> result = new LinkedHashMap<>();
+        for (Tuple row : totals) {
+            TeamStatisticsDto dto = new TeamStatisticsDto();
+            dto.setTeamId(row.get(team.id));
+            dto.setTeamName(row.get(team.name));
+            dto.setMemberCount(row.get(teamStatistics.memberCount));
+            dto.setAgeSum(row.get(teamStatistics.ageSum));
+            dto.setAvgAge(dto.getMemberCount() > 0 ? (double) dto.getAgeSum() / dto.getMemberCount() : null);
+            dto.setAgeHistogram(new TreeMap<>());
+            result.put(dto.getTeamId(), dto);
+        }
+        for (TeamAgeCount age : ages) {
+            TeamStatisticsDto dto = result.get(age.getTeamId());
+            if (dto == null) {
+                continue;
+            }
+            //age 오름차순이므로 처음 나온 값이 min, 마지막 값이 max
+            if (dto.getMinAge() == null) {
+                dto.setMinAge(age.getAge());
+            }
+            dto.setMaxAge(age.getAge());
+            int bucket = Math.floorDiv(age.getAge(), HISTOGRAM_BUCKET) * HISTOGRAM_BUCKET;
+            dto.getAgeHistogram().merge(bucket, age.getMemberCount(), Long::sum);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    public TeamStatisticsDto findByTeamName(String teamName) {
+        for (TeamStatisticsDto dto : findAll()) {
+            if (dto.getTeamName().equals(teamName)) {
+                return dto;
+            }
+        }
+        return null;
+    }
+}
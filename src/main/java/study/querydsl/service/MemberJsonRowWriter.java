@@ -0,0 +1,71 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * searchRows 의 ResultSet 한 row 를 MemberTeamDto 를 Jackson 으로 직렬화한 것과 같은 JSON 한 줄로 쓴다.
+ * Tuple / DTO / JsonNode 를 만들지 않고, 필드 이름은 미리 인코딩해 둔 것을 쓴다.
+ * 출력 버퍼는 JsonGenerator 의 재사용 버퍼(BufferRecycler) 하나라서 요청당 메모리는 row 수와 상관없이 일정하다.
+ */
+class MemberJsonRowWriter implements RowCallbackHandler {
+
+    //MemberTeamDto 필드 선언 순서 (Jackson 기본 순서와 같다)
+    private static final SerializableString MEMBER_ID = new SerializedString("memberId");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString AGE = new SerializedString("age");
+    private static final SerializableString TEAM_ID = new SerializedString("teamId");
+    private static final SerializableString TEAM_NAME = new SerializedString("teamName");
+
+    private final JsonGenerator generator;
+    private final int flushEvery;
+    private long written;
+
+    /**
+     * @param flushEvery 이 row 수마다 flush 해서 쿼리가 끝나기 전에 앞쪽 row 를 내보낸다.
+     */
+    MemberJsonRowWriter(JsonGenerator generator, int flushEvery) {
+        this.generator = generator;
+        this.flushEvery = Math.max(flushEvery, 1);
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName(MEMBER_ID);
+            writeLong(rs.getLong(1), rs.wasNull());
+            generator.writeFieldName(USERNAME);
+            generator.writeString(rs.getString(2));
+            //age 는 DTO 에서 int 라 null 도 0 으로 나간다.
+            generator.writeFieldName(AGE);
+            generator.writeNumber(rs.getInt(3));
+            generator.writeFieldName(TEAM_ID);
+            writeLong(rs.getLong(4), rs.wasNull());
+            generator.writeFieldName(TEAM_NAME);
+            generator.writeString(rs.getString(5));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++written % flushEvery == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLong(long value, boolean isNull) throws IOException {
+        if (isNull) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
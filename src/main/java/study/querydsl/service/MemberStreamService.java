@@ -0,0 +1,46 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+@Service
+@RequiredArgsConstructor
+public class MemberStreamService {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.search.stream-fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * 검색 결과를 NDJSON(한 줄에 json 하나)으로 바로 써 내려간다.
+     * fetchSize 만큼 쓸 때마다 flush 해서 쿼리가 끝나기 전에 앞쪽 row 가 클라이언트에 도착한다.
+     * StreamingResponseBody 는 별도 스레드에서 실행되므로 트랜잭션은 여기서 연다.
+     *
+     * row 를 MemberTeamDto 로 만들지 않고 ResultSet 에서 바로 JSON 으로 쓴다. (MemberJsonRowWriter)
+     * 출력은 MemberTeamDto 를 objectMapper 로 쓴 것과 같다.
+     */
+    @Transactional(readOnly = true)
+    public void writeNdjson(MemberSearchCondition condition, OutputStream out) throws IOException {
+        //close 해야 generator 버퍼가 재사용 풀로 돌아간다. 응답 스트림은 닫지 않는다.
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.setRootValueSeparator(null);
+            memberRepository.searchRows(condition, fetchSize, new MemberJsonRowWriter(generator, fetchSize));
+        } catch (UncheckedIOException e) {
+            //클라이언트가 끊긴 경우 등
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package study.querydsl.statistics;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamAgeCount.teamAgeCount;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * searchPageComplex 의 count 를 member 테이블을 읽지 않고 추정한다.
+ *
+ * - team / age 조건: team_age_count (팀 x age 별 건수, TeamStatisticsUpdater 가 유지)를 합산한다.
+ *   이 부분은 통계가 최신이면 정확한 값이다. 통계는 histogram-ttl 동안 메모리에 두고 쓴다.
+ * - username 조건: 전체 고유 username 수(HyperLogLog)로 나눈다. username 이 고르게 분포한다고 가정한 값.
+ * - username prefix / contains 조건: 선택도를 알 수 없어서 추정하지 않는다. (정확한 count 로 대체)
+ *
+ * 비용은 (팀 수 x age 종류) 에만 비례하고 member 수와는 상관없다.
+ */
+@Slf4j
+@Component
+public class MemberCountEstimator implements MemberChangeListener {
+
+    private static final int SKETCH_PRECISION = 14;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long histogramTtlNanos;
+
+    private volatile Histograms histograms;
+    private volatile HyperLogLog usernames;
+
+    public MemberCountEstimator(EntityManager em, PlatformTransactionManager transactionManager,
+                                @Value("${member.search.page.estimate.histogram-ttl:5s}") Duration histogramTtl) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.histogramTtlNanos = histogramTtl.toNanos();
+    }
+
+    /**
+     * @return 아직 username 스케치가 없거나 username 패턴 조건이 있으면 null
+     */
+    public Long estimate(MemberSearchCondition condition) {
+        HyperLogLog sketch = usernames;
+        if (sketch == null
+                || StringUtils.hasText(condition.getUsernamePrefix())
+                || StringUtils.hasText(condition.getUsernameContains())) {
+            return null;
+        }
+        Histograms current = histograms();
+        NavigableMap<Integer, Long> histogram = StringUtils.hasText(condition.getTeamName())
+                ? current.byTeamName.get(condition.getTeamName())
+                : current.all;
+        if (histogram == null) {
+            return 0L;
+        }
+        int low = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+        int high = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+        if (low > high) {
+            return 0L;
+        }
+        long rows = 0;
+        for (long count : histogram.subMap(low, true, high, true).values()) {
+            rows += count;
+        }
+        if (StringUtils.hasText(condition.getUsername())) {
+            rows = Math.round((double) rows / Math.max(1, sketch.estimate()));
+        }
+        return rows;
+    }
+
+    private Histograms histograms() {
+        Histograms current = histograms;
+        if (current == null || System.nanoTime() - current.loadedAt > histogramTtlNanos) {
+            synchronized (this) {
+                current = histograms;
+                if (current == null || System.nanoTime() - current.loadedAt > histogramTtlNanos) {
+                    current = loadHistograms();
+                    histograms = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Histograms loadHistograms() {
+        return readOnlyTransaction.execute(status -> {
+            Histograms loaded = new Histograms();
+            for (Tuple row : queryFactory
+                    .select(teamAgeCount.age, teamAgeCount.memberCount, team.name)
+                    .from(teamAgeCount)
+                    .leftJoin(team).on(team.id.eq(teamAgeCount.teamId))
+                    .where(teamAgeCount.memberCount.gt(0))
+                    .fetch()) {
+                int age = row.get(teamAgeCount.age);
+                long count = row.get(teamAgeCount.memberCount);
+                loaded.all.merge(age, count, Long::sum);
+                String teamName = row.get(team.name);
+                if (teamName != null) {
+                    loaded.byTeamName.computeIfAbsent(teamName, name -> new TreeMap<>()).merge(age, count, Long::sum);
+                }
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        if (change.getAfter() == null || change.getAfter().getUsername() == null) {
+            return;
+        }
+        String username = change.getAfter().getUsername();
+        change.getSession().getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (success, session) -> {
+                    HyperLogLog sketch = usernames;
+                    if (success && sketch != null) {
+                        sketch.add(username);
+                    }
+                });
+    }
+
+    @Override
+    public void onBulkChange() {
+        //벌크로 바뀐 username 은 다음 주기 재구축 때 반영된다. 추정치라 그 정도는 허용.
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread thread = new Thread(this::rebuildUsernameSketch, "username-sketch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * HyperLogLog 는 삭제를 못하므로 주기적으로 다시 만든다.
+     */
+    @Scheduled(fixedDelayString = "${member.search.page.estimate.sketch-rebuild-interval:PT1H}",
+            initialDelayString = "${member.search.page.estimate.sketch-rebuild-interval:PT1H}")
+    public void rebuildUsernameSketch() {
+        long start = System.nanoTime();
+        try {
+            HyperLogLog sketch = readOnlyTransaction.execute(status -> {
+                HyperLogLog built = new HyperLogLog(SKETCH_PRECISION);
+                try (Stream<String> rows = queryFactory
+                        .select(member.username)
+                        .from(member)
+                        .where(member.username.isNotNull())
+                        .setHint(QueryHints.FETCH_SIZE, 10_000)
+                        .stream()) {
+                    rows.forEach(built::add);
+                }
+                return built;
+            });
+            usernames = sketch;
+            log.info("username sketch rebuilt: ~{} distinct usernames in {} ms",
+                    sketch.estimate(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("username sketch rebuild failed, estimated totals fall back to exact counts", e);
+        }
+    }
+
+    private static class Histograms {
+        private final long loadedAt = System.nanoTime();
+        private final NavigableMap<Integer, Long> all = new TreeMap<>();
+        private final Map<String, NavigableMap<Integer, Long>> byTeamName = new HashMap<>();
+    }
+}
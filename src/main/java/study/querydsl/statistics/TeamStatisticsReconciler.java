@@ -0,0 +1,147 @@
+package study.querydsl.statistics;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.TeamStatistics;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeamAgeCount.teamAgeCount;
+import static study.querydsl.entity.QTeamStatistics.teamStatistics;
+
+/**
+ * member 테이블을 다시 집계해서 팀 통계를 덮어쓴다. 증분 반영이 놓친 변경(벌크 JPQL, 직접 SQL 등)으로 생긴 오차 보정용.
+ * - 주기 실행: team-statistics.reconcile-interval (기본 10분)
+ * - 벌크 변경 감지 시: requestReconcile() 후 다음 점검(기본 5초) 때 실행
+ */
+@Slf4j
+@Component
+public class TeamStatisticsReconciler {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    public TeamStatisticsReconciler(EntityManager em, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void requestReconcile() {
+        requested.set(true);
+    }
+
+    /**
+     * 기존 DB 로 뜰 때 통계 테이블이 비어 있거나 어긋나 있을 수 있다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        requestReconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${team-statistics.reconcile-check-interval:PT5S}")
+    public void reconcileIfRequested() {
+        if (requested.compareAndSet(true, false)) {
+            reconcile();
+        }
+    }
+
+    /**
+     * 증분 반영(TeamStatisticsUpdater)도 재계산과 겹치지 않게 여기서 별도 트랜잭션으로 실행한다.
+     * (재계산 도중에 반영된 증분이 재계산 결과에 덮여 사라지지 않도록)
+     */
+    synchronized void applyDelta(Work work) {
+        transactionTemplate.executeWithoutResult(status -> em.unwrap(Session.class).doWork(work));
+    }
+
+    /**
+     * 통계 테이블을 지우고 다시 넣지 않고 MERGE 로 덮어쓴다. 다른 인스턴스의 증분 반영과 동시에 돌아도 중복 키가 나지 않는다.
+     * 집계 결과에 없는 (member 가 없어진) 키만 지운다.
+     */
+    @Scheduled(fixedDelayString = "${team-statistics.reconcile-interval:PT10M}",
+            initialDelayString = "${team-statistics.reconcile-interval:PT10M}")
+    public synchronized void reconcile() {
+        long start = System.nanoTime();
+        int teams = transactionTemplate.execute(status -> {
+            List<Tuple> rows = queryFactory
+                    .select(member.team.id, member.age, member.count())
+                    .from(member)
+                    .groupBy(member.team.id, member.age)
+                    .fetch();
+
+            Map<Long, long[]> totals = new TreeMap<>();
+            Map<Long, Map<Integer, Long>> ages = new TreeMap<>();
+            for (Tuple row : rows) {
+                Long teamId = row.get(member.team.id) != null ? row.get(member.team.id) : TeamStatistics.NO_TEAM;
+                int age = row.get(member.age);
+                long count = row.get(member.count());
+                ages.computeIfAbsent(teamId, id -> new TreeMap<>()).put(age, count);
+                long[] total = totals.computeIfAbsent(teamId, id -> new long[2]);
+                total[0] += count;
+                total[1] += count * age;
+            }
+
+            List<Long> staleTeams = new ArrayList<>(queryFactory.select(teamStatistics.teamId).from(teamStatistics).fetch());
+            staleTeams.removeAll(totals.keySet());
+            //member 가 없어진 팀은 age 전부, 남아 있는 팀은 없어진 age 만 팀별로 모은다.
+            Set<Long> staleAgeTeams = new TreeSet<>();
+            Map<Long, List<Integer>> staleAges = new TreeMap<>();
+            for (Tuple row : queryFactory.select(teamAgeCount.teamId, teamAgeCount.age).from(teamAgeCount).fetch()) {
+                Long teamId = row.get(teamAgeCount.teamId);
+                Map<Integer, Long> teamAges = ages.get(teamId);
+                if (teamAges == null) {
+                    staleAgeTeams.add(teamId);
+                } else if (!teamAges.containsKey(row.get(teamAgeCount.age))) {
+                    staleAges.computeIfAbsent(teamId, id -> new ArrayList<>()).add(row.get(teamAgeCount.age));
+                }
+            }
+
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement merge = connection.prepareStatement(TeamStatisticsUpserts.SET_TEAM)) {
+                    for (Map.Entry<Long, long[]> entry : totals.entrySet()) {
+                        TeamStatisticsUpserts.team(merge, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+                    }
+                }
+                try (PreparedStatement merge = connection.prepareStatement(TeamStatisticsUpserts.SET_AGE)) {
+                    for (Map.Entry<Long, Map<Integer, Long>> team : ages.entrySet()) {
+                        for (Map.Entry<Integer, Long> age : team.getValue().entrySet()) {
+                            TeamStatisticsUpserts.age(merge, team.getKey(), age.getKey(), age.getValue());
+                        }
+                    }
+                }
+            });
+            if (!staleTeams.isEmpty()) {
+                queryFactory.delete(teamStatistics).where(teamStatistics.teamId.in(staleTeams)).execute();
+            }
+            if (!staleAgeTeams.isEmpty()) {
+                queryFactory.delete(teamAgeCount).where(teamAgeCount.teamId.in(staleAgeTeams)).execute();
+            }
+            //row 마다가 아니라 팀마다 delete 한 번
+            staleAges.forEach((teamId, teamAges) -> queryFactory.delete(teamAgeCount)
+                    .where(teamAgeCount.teamId.eq(teamId), teamAgeCount.age.in(teamAges))
+                    .execute());
+            return totals.size();
+        });
+        log.info("team statistics reconciled: {} teams in {} ms", teams, (System.nanoTime() - start) / 1_000_000);
+    }
+}
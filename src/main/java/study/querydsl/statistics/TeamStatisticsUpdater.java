@@ -0,0 +1,222 @@
+package study.querydsl.statistics;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.EventSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.TeamStatistics;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.event.MemberState;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Member insert/delete/age 변경/changeTeam 을 팀 통계(team_statistics, team_age_count)에 증분 반영한다.
+ *
+ * flush 도중에는 쿼리를 날릴 수 없으므로 트랜잭션별로 변화량만 모아두고, 커밋된 뒤에 반영한다.
+ * - 모으는 변화량은 트랜잭션 리소스로 묶고 afterCompletion 에서 풀기 때문에 커밋/롤백 어느 쪽이든 남지 않는다.
+ * - 커밋된 변화량은 하나로 합쳐두고 작업 스레드 하나가 별도 트랜잭션으로 반영한다.
+ *   그래서 통계 반영이 느리거나 실패해도 사용자의 Member 트랜잭션은 영향을 받지 않고(실패하면 재계산 요청),
+ *   커밋하는 스레드가 커넥션을 하나 더 잡지도 않는다.
+ * - 반영은 키(team, age) 순서로 MERGE 한다. 여러 인스턴스가 동시에 반영해도 중복 키/데드락이 나지 않는다.
+ * - 롤백되면 모아둔 변화량은 버린다.
+ * 커밋과 반영 사이에 재계산이 돌면 그 변화량이 두 번 들어갈 수 있는데, 다음 재계산에서 맞춰진다.
+ * 벌크 JPQL 은 이벤트가 없으므로 TeamStatisticsReconciler 에 재계산을 요청한다.
+ */
+@Slf4j
+@Component
+public class TeamStatisticsUpdater implements MemberChangeListener, DisposableBean {
+
+    private final TeamStatisticsReconciler reconciler;
+    private final ExecutorService applyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "team-statistics-apply");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 커밋됐지만 아직 반영하지 않은 변화량 (모든 트랜잭션 합) */
+    private Delta committed = new Delta();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+
+    public TeamStatisticsUpdater(TeamStatisticsReconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    @Override
+    public void onMemberChange(MemberChange change) {
+        if (change.isBeforeUnknown()) {
+            log.warn("member {} changed without previous state, team statistics will be reconciled",
+                    change.getAfter().getId());
+            reconciler.requestReconcile();
+            return;
+        }
+        MemberState before = change.getBefore();
+        MemberState after = change.getAfter();
+        if (before != null && after != null
+                && Objects.equals(before.getTeamId(), after.getTeamId()) && before.getAge() == after.getAge()) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.warn("member changed outside a spring transaction, team statistics will be reconciled");
+            reconciler.requestReconcile();
+            return;
+        }
+        Delta delta = pending(change.getSession());
+        if (before != null) {
+            delta.add(before, -1);
+        }
+        if (after != null) {
+            delta.add(after, 1);
+        }
+    }
+
+    @Override
+    public void onBulkChange() {
+        reconciler.requestReconcile();
+    }
+
+    /**
+     * 세션(트랜잭션)별 변화량. 처음 만들 때 afterCompletion 정리(커밋이면 반영)를 등록한다.
+     */
+    private Delta pending(EventSource session) {
+        PendingKey key = new PendingKey(this, session);
+        Delta delta = (Delta) TransactionSynchronizationManager.getResource(key);
+        if (delta != null) {
+            return delta;
+        }
+        Delta created = new Delta();
+        TransactionSynchronizationManager.bindResource(key, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                if (status == STATUS_COMMITTED) {
+                    commit(created);
+                }
+            }
+        });
+        return created;
+    }
+
+    private void commit(Delta delta) {
+        synchronized (this) {
+            committed.addAll(delta);
+        }
+        if (applyScheduled.compareAndSet(false, true)) {
+            try {
+                applyExecutor.execute(this::applyCommitted);
+            } catch (RejectedExecutionException e) {
+                applyScheduled.set(false);
+                reconciler.requestReconcile();
+            }
+        }
+    }
+
+    private void applyCommitted() {
+        applyScheduled.set(false);
+        Delta delta;
+        synchronized (this) {
+            delta = committed;
+            committed = new Delta();
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        try {
+            reconciler.applyDelta(delta::apply);
+        } catch (RuntimeException e) {
+            log.warn("failed to apply team statistics delta, team statistics will be reconciled", e);
+            reconciler.requestReconcile();
+        }
+    }
+
+    /**
+     * 지금까지 커밋된 변화량이 반영될 때까지 기다린다. (테스트용)
+     */
+    void awaitApplied() throws InterruptedException, ExecutionException {
+        applyExecutor.submit(this::applyCommitted).get();
+    }
+
+    @Override
+    public void destroy() {
+        applyExecutor.shutdownNow();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class PendingKey {
+        private final TeamStatisticsUpdater owner;
+        private final EventSource session;
+    }
+
+    /**
+     * 트랜잭션 동안의 팀별/age별 변화량. 키 순서(TreeMap)로 반영한다.
+     */
+    private static class Delta {
+        private final Map<Long, long[]> teams = new TreeMap<>();
+        private final Map<Long, Map<Integer, Long>> ages = new TreeMap<>();
+
+        synchronized void add(MemberState state, int sign) {
+            Long teamId = state.getTeamId() != null ? state.getTeamId() : TeamStatistics.NO_TEAM;
+            long[] team = teams.computeIfAbsent(teamId, id -> new long[2]);
+            team[0] += sign;
+            team[1] += (long) sign * state.getAge();
+            ages.computeIfAbsent(teamId, id -> new TreeMap<>())
+                    .merge(state.getAge(), (long) sign, Long::sum);
+        }
+
+        synchronized void addAll(Delta other) {
+            synchronized (other) {
+                other.teams.forEach((teamId, value) -> {
+                    long[] team = teams.computeIfAbsent(teamId, id -> new long[2]);
+                    team[0] += value[0];
+                    team[1] += value[1];
+                });
+                other.ages.forEach((teamId, counts) -> {
+                    Map<Integer, Long> team = ages.computeIfAbsent(teamId, id -> new TreeMap<>());
+                    counts.forEach((age, count) -> team.merge(age, count, Long::sum));
+                });
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return teams.isEmpty();
+        }
+
+        synchronized void apply(Connection connection) throws SQLException {
+            try (PreparedStatement merge = connection.prepareStatement(TeamStatisticsUpserts.ADD_TEAM)) {
+                for (Map.Entry<Long, long[]> entry : teams.entrySet()) {
+                    long[] value = entry.getValue();
+                    if (value[0] != 0 || value[1] != 0) {
+                        TeamStatisticsUpserts.team(merge, entry.getKey(), value[0], value[1]);
+                    }
+                }
+            }
+            try (PreparedStatement merge = connection.prepareStatement(TeamStatisticsUpserts.ADD_AGE)) {
+                for (Map.Entry<Long, Map<Integer, Long>> team : ages.entrySet()) {
+                    for (Map.Entry<Integer, Long> age : team.getValue().entrySet()) {
+                        if (age.getValue() != 0) {
+                            TeamStatisticsUpserts.age(merge, team.getKey(), age.getKey(), age.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.statistics;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * team_statistics / team_age_count 를 한 statement 로 upsert 한다. (update 후 0 건이면 insert 하지 않는다)
+ *
+ * 표준 MERGE 라 H2, Oracle, SQL Server 에서 그대로 돈다. (MySQL 은 insert ... on duplicate key update,
+ * PostgreSQL 은 insert ... on conflict 로 바꿔야 한다)
+ * 같은 키를 두 트랜잭션이 동시에 처음 넣으면 DB 에 따라 MERGE 도 중복 키로 실패할 수 있어서,
+ * 그 경우는 이미 row 가 있으므로 한 번 더 실행하면 update 쪽으로 간다.
+ */
+final class TeamStatisticsUpserts {
+
+    /** 파라미터: team_id, member_count 변화량, age_sum 변화량 */
+    static final String ADD_TEAM = "merge into team_statistics t"
+            + " using (select cast(? as bigint) team_id, cast(? as bigint) member_count, cast(? as bigint) age_sum) s"
+            + " on t.team_id = s.team_id"
+            + " when matched then update set member_count = t.member_count + s.member_count, age_sum = t.age_sum + s.age_sum"
+            + " when not matched then insert (team_id, member_count, age_sum) values (s.team_id, s.member_count, s.age_sum)";
+
+    /** 파라미터: team_id, member_count, age_sum */
+    static final String SET_TEAM = "merge into team_statistics t"
+            + " using (select cast(? as bigint) team_id, cast(? as bigint) member_count, cast(? as bigint) age_sum) s"
+            + " on t.team_id = s.team_id"
+            + " when matched then update set member_count = s.member_count, age_sum = s.age_sum"
+            + " when not matched then insert (team_id, member_count, age_sum) values (s.team_id, s.member_count, s.age_sum)";
+
+    /** 파라미터: team_id, age, member_count 변화량 */
+    static final String ADD_AGE = "merge into team_age_count t"
+            + " using (select cast(? as bigint) team_id, cast(? as integer) age, cast(? as bigint) member_count) s"
+            + " on t.team_id = s.team_id and t.age = s.age"
+            + " when matched then update set member_count = t.member_count + s.member_count"
+            + " when not matched then insert (team_id, age, member_count) values (s.team_id, s.age, s.member_count)";
+
+    /** 파라미터: team_id, age, member_count */
+    static final String SET_AGE = "merge into team_age_count t"
+            + " using (select cast(? as bigint) team_id, cast(? as integer) age, cast(? as bigint) member_count) s"
+            + " on t.team_id = s.team_id and t.age = s.age"
+            + " when matched then update set member_count = s.member_count"
+            + " when not matched then insert (team_id, age, member_count) values (s.team_id, s.age, s.member_count)";
+
+    private static final String DUPLICATE_KEY = "23505";
+
+    private TeamStatisticsUpserts() {
+    }
+
+    static void team(PreparedStatement merge, long teamId, long memberCount, long ageSum) throws SQLException {
+        merge.setLong(1, teamId);
+        merge.setLong(2, memberCount);
+        merge.setLong(3, ageSum);
+        execute(merge);
+    }
+
+    static void age(PreparedStatement merge, long teamId, int age, long memberCount) throws SQLException {
+        merge.setLong(1, teamId);
+        merge.setInt(2, age);
+        merge.setLong(3, memberCount);
+        execute(merge);
+    }
+
+    private static void execute(PreparedStatement merge) throws SQLException {
+        try {
+            merge.executeUpdate();
+        } catch (SQLException e) {
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+            merge.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.trace;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "n-plus-one")
+public class NPlusOneProperties {
+
+    public enum Mode {LOG, FAIL}
+
+    /** 켜면 모든 statement 를 세기 위해 커넥션을 감싼다. 개발/테스트용 */
+    private boolean enabled = false;
+
+    /** 같은 모양의 select 가 한 요청/트랜잭션 안에서 이 횟수를 넘으면 N+1 로 본다. */
+    private int threshold = 5;
+
+    /** FAIL 은 요청 응답을 검사가 끝날 때까지 버퍼에 모은다. (StatementCountFilter) 테스트용 */
+    private Mode mode = Mode.LOG;
+}
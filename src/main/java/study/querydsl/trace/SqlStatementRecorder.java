@@ -0,0 +1,102 @@
+package study.querydsl.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * 스레드별로 열려 있는 SqlStatementScope 들에 실행된 statement 를 기록한다.
+ * - 요청 단위: StatementCountFilter 가 연다.
+ * - 트랜잭션 단위: 트랜잭션 안에서 첫 statement 가 실행될 때 열고, 트랜잭션이 끝나면 닫는다.
+ * - 테스트: open() 으로 직접 열고 닫는다.
+ *
+ * 같은 모양 select 가 threshold 를 넘으면 LOG 모드는 경고 로그, FAIL 모드는 NPlusOneDetectedException.
+ * (트랜잭션은 커밋 직전에 검사해서 FAIL 이면 롤백된다)
+ */
+@Slf4j
+public class SqlStatementRecorder {
+
+    private final NPlusOneProperties properties;
+    private final ThreadLocal<Deque<SqlStatementScope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public SqlStatementRecorder(NPlusOneProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public SqlStatementScope open(String name) {
+        SqlStatementScope scope = new SqlStatementScope(name, this);
+        scopes.get().push(scope);
+        return scope;
+    }
+
+    void close(SqlStatementScope scope) {
+        Deque<SqlStatementScope> current = scopes.get();
+        current.remove(scope);
+        if (current.isEmpty()) {
+            scopes.remove();
+        }
+    }
+
+    void onExecute(String sql) {
+        openTransactionScopeIfNeeded();
+        Deque<SqlStatementScope> current = scopes.get();
+        if (current.isEmpty()) {
+            scopes.remove();
+            return;
+        }
+        for (SqlStatementScope scope : current) {
+            scope.record(sql);
+        }
+    }
+
+    /**
+     * threshold 를 넘은 shape 가 있으면 모드에 따라 로그 또는 예외
+     */
+    public void verify(SqlStatementScope scope) {
+        for (Map.Entry<String, Integer> entry : scope.getSelectShapes().entrySet()) {
+            if (entry.getValue() > properties.getThreshold()) {
+                String message = String.format("N+1 suspected in %s: %d x [%s] (total statements %d)",
+                        scope.getName(), entry.getValue(), entry.getKey(), scope.getTotal());
+                if (properties.getMode() == NPlusOneProperties.Mode.FAIL) {
+                    throw new NPlusOneDetectedException(message);
+                }
+                log.warn(message);
+            }
+        }
+    }
+
+    private void openTransactionScopeIfNeeded() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        String name = "transaction " + TransactionSynchronizationManager.getCurrentTransactionName();
+        SqlStatementScope scope = open(name);
+        TransactionSynchronizationManager.bindResource(this, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (properties.getMode() == NPlusOneProperties.Mode.FAIL) {
+                    verify(scope);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(SqlStatementRecorder.this);
+                scope.close();
+                if (properties.getMode() == NPlusOneProperties.Mode.LOG) {
+                    verify(scope);
+                }
+            }
+        });
+    }
+}
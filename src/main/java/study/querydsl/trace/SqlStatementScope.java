@@ -0,0 +1,72 @@
+package study.querydsl.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 한 구간(요청, 트랜잭션, 테스트)에서 실행된 statement 수.
+ * select 는 값만 다른 것끼리 같은 모양(shape)으로 묶어서 센다.
+ */
+public class SqlStatementScope implements AutoCloseable {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+
+    private final String name;
+    private final SqlStatementRecorder recorder;
+    private final Map<String, Integer> selectShapes = new LinkedHashMap<>();
+    private int total;
+    private int selects;
+
+    SqlStatementScope(String name, SqlStatementRecorder recorder) {
+        this.name = name;
+        this.recorder = recorder;
+    }
+
+    void record(String sql) {
+        total++;
+        if (sql != null && sql.trim().regionMatches(true, 0, "select", 0, 6)) {
+            selects++;
+            selectShapes.merge(shapeOf(sql), 1, Integer::sum);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSelects() {
+        return selects;
+    }
+
+    public Map<String, Integer> getSelectShapes() {
+        return Collections.unmodifiableMap(selectShapes);
+    }
+
+    /**
+     * 가장 많이 반복된 select 모양의 실행 횟수
+     */
+    public int getMaxRepeatedSelects() {
+        int max = 0;
+        for (int count : selectShapes.values()) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    @Override
+    public void close() {
+        recorder.close(this);
+    }
+
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMBER_LITERAL.matcher(shape).replaceAll("?").replaceAll("\\s+", " ").trim();
+    }
+}
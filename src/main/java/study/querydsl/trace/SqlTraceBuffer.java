@@ -0,0 +1,50 @@
+package study.querydsl.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 최근 SQL 을 고정 크기 배열에 돌려가며 덮어쓴다. (lock 없음)
+ */
+class SqlTraceBuffer {
+
+    private final AtomicReferenceArray<SqlTraceEntry> entries;
+    private final AtomicLong sequence = new AtomicLong();
+
+    SqlTraceBuffer(int size) {
+        this.entries = new AtomicReferenceArray<>(size);
+    }
+
+    long nextSequence() {
+        return sequence.getAndIncrement();
+    }
+
+    void add(SqlTraceEntry entry) {
+        entries.set((int) (entry.getSequence() % entries.length()), entry);
+    }
+
+    /**
+     * 오래된 것부터
+     */
+    List<SqlTraceEntry> snapshot() {
+        long last = sequence.get();
+        long first = Math.max(0, last - entries.length());
+        List<SqlTraceEntry> result = new ArrayList<>(entries.length());
+        for (long seq = first; seq < last; seq++) {
+            SqlTraceEntry entry = entries.get((int) (seq % entries.length()));
+            //덮어써졌거나 아직 기록 전인 칸은 건너뛴다.
+            if (entry != null && entry.getSequence() == seq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package study.querydsl.trace;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties({SqlTraceProperties.class, NPlusOneProperties.class})
+public class SqlTraceConfig {
+
+    @Bean
+    public SqlStatementRecorder sqlStatementRecorder(NPlusOneProperties properties) {
+        return new SqlStatementRecorder(properties);
+    }
+
+    @Bean
+    public SqlTracer sqlTracer(SqlTraceProperties properties, SqlStatementRecorder recorder) {
+        return new SqlTracer(properties, recorder);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "n-plus-one.enabled", havingValue = "true")
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(SqlStatementRecorder recorder,
+                                                                             NPlusOneProperties properties) {
+        return new FilterRegistrationBean<>(new StatementCountFilter(recorder, properties));
+    }
+
+    /**
+     * DataSource 빈을 TracingDataSource 로 감싼다.
+     * BeanPostProcessor 는 일찍 만들어지므로 static + ObjectProvider 로 의존성을 늦춘다.
+     */
+    @Bean
+    public static BeanPostProcessor tracingDataSourcePostProcessor(ObjectProvider<SqlTracer> tracer) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof TracingDataSource)) {
+                    return new TracingDataSource((DataSource) bean, tracer.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.trace;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class SqlTraceEntry {
+    long sequence;
+    Instant executedAt;
+    String thread;
+    String sql;
+    /** 샘플링되지 않고 느려서 남은 statement 는 null */
+    String binds;
+    long elapsedMicros;
+    boolean success;
+}
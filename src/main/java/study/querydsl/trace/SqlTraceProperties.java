@@ -0,0 +1,28 @@
+package study.querydsl.trace;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "sql-trace")
+public class SqlTraceProperties {
+
+    /** 0.0 ~ 1.0. 0 이면 커넥션을 감싸지 않는다. (운영 기본값) */
+    private double sampleRate = 0.0;
+
+    /** 최근 몇 건을 들고 있을지 */
+    private int bufferSize = 1024;
+
+    /** 바인딩 값 하나당 최대 길이 */
+    private int maxBindLength = 200;
+
+    /**
+     * 샘플링되지 않은 statement 도 이 시간 이상 걸리면 남긴다. (바인딩 값은 없이 SQL 과 시간만)
+     * 0 이면 끈다. 켜면 모든 statement 를 감싸서 시간을 잰다.
+     */
+    private Duration slowThreshold = Duration.ZERO;
+}
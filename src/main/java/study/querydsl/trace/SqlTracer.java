@@ -0,0 +1,187 @@
+package study.querydsl.trace;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 샘플링 SQL 트레이서. p6spy / org.hibernate.type trace 로그 대체.
+ *
+ * sampleRate 가 0 이면(slowThreshold 도 0) 커넥션을 그대로 돌려주므로 비용이 없다.
+ * 0 보다 크면 커넥션을 프록시로 감싸고, statement 를 만들 때 샘플링된 것만 다시 감싸서
+ * 바인딩 값과 실행 시간을 링 버퍼에 남긴다.
+ * slowThreshold 가 있으면 샘플링 안 된 statement 도 시간을 재서 그보다 느린 것은 바인딩 값 없이 남긴다.
+ * N+1 감지(SqlStatementRecorder)가 켜져 있으면 샘플링과 상관없이 모든 statement 실행을 recorder 에 알린다.
+ */
+public class SqlTracer {
+
+    private final SqlTraceBuffer buffer;
+    private final SqlStatementRecorder recorder;
+    private final int maxBindLength;
+    private final long slowThresholdNanos;
+    private volatile double sampleRate;
+
+    public SqlTracer(SqlTraceProperties properties, SqlStatementRecorder recorder) {
+        this.buffer = new SqlTraceBuffer(properties.getBufferSize());
+        this.recorder = recorder;
+        this.maxBindLength = properties.getMaxBindLength();
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.sampleRate = properties.getSampleRate();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public List<SqlTraceEntry> recent() {
+        return buffer.snapshot();
+    }
+
+    public void clear() {
+        buffer.clear();
+    }
+
+    public Connection wrap(Connection connection) {
+        if (sampleRate <= 0 && !recorder.isEnabled() && slowThresholdNanos <= 0) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(SqlTracer.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private boolean sampled() {
+        double rate = sampleRate;
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private void record(String sql, String binds, long elapsedNanos, boolean success) {
+        buffer.add(new SqlTraceEntry(buffer.nextSequence(), Instant.now(), Thread.currentThread().getName(),
+                sql, binds, elapsedNanos / 1_000, success));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlTracer.invoke(target, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            boolean sampled = sampled();
+            if (sampled || recorder.isEnabled() || slowThresholdNanos > 0) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return Proxy.newProxyInstance(SqlTracer.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new StatementHandler((Statement) result, sql, sampled));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final boolean sampled;
+        private final TreeMap<Integer, String> binds = new TreeMap<>();
+        private final StringBuilder batch = new StringBuilder();
+
+        StatementHandler(Statement target, String sql, boolean sampled) {
+            this.target = target;
+            this.sql = sql;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!sampled) {
+                if (!name.startsWith("execute")) {
+                    return SqlTracer.invoke(target, method, args);
+                }
+                String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                if (recorder.isEnabled()) {
+                    recorder.onExecute(executedSql);
+                }
+                if (slowThresholdNanos <= 0) {
+                    return SqlTracer.invoke(target, method, args);
+                }
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    Object result = SqlTracer.invoke(target, method, args);
+                    success = true;
+                    return result;
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    if (elapsed >= slowThresholdNanos) {
+                        record(executedSql, null, elapsed, success);
+                    }
+                }
+            }
+            if (target instanceof PreparedStatement && name.startsWith("set")
+                    && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                binds.put((Integer) args[0], "setNull".equals(name) ? "null" : format(args[1]));
+            } else if ("clearParameters".equals(name)) {
+                binds.clear();
+            } else if ("addBatch".equals(name) && (args == null || args.length == 0)) {
+                batch.append(binds.values()).append(' ');
+                binds.clear();
+            }
+
+            if (!name.startsWith("execute")) {
+                return SqlTracer.invoke(target, method, args);
+            }
+
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            String executedBinds = batch.length() > 0 ? batch.toString().trim() : binds.values().toString();
+            if (recorder.isEnabled()) {
+                recorder.onExecute(executedSql);
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                Object result = SqlTracer.invoke(target, method, args);
+                success = true;
+                return result;
+            } finally {
+                record(executedSql, executedBinds, System.nanoTime() - start, success);
+                batch.setLength(0);
+            }
+        }
+
+        private String format(Object value) {
+            if (value == null) {
+                return "null";
+            }
+            String s = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+            return s.length() > maxBindLength ? s.substring(0, maxBindLength) + "..." : s;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.trace;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청 단위 statement 수 집계.
+ *
+ * FAIL 모드는 응답 body 를 버퍼에 모아 두고 검사한 뒤에 내보낸다. (이미 커밋된 응답은 에러로 바꿀 수 없으므로)
+ * 그래서 스트리밍 응답도 끝까지 메모리에 쌓인다. FAIL 은 테스트/개발용이다.
+ * (비동기 응답은 ShallowEtagHeaderFilter 처럼 body 를 다 쓴 뒤 돌아오는 async dispatch 에서 내보낸다)
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private final SqlStatementRecorder recorder;
+    private final boolean failMode;
+
+    public StatementCountFilter(SqlStatementRecorder recorder, NPlusOneProperties properties) {
+        this.recorder = recorder;
+        this.failMode = properties.getMode() == NPlusOneProperties.Mode.FAIL;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return !failMode;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                ContentCachingResponseWrapper buffered =
+                        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+                if (buffered != null) {
+                    buffered.copyBodyToResponse();
+                }
+            }
+            return;
+        }
+
+        SqlStatementScope scope = recorder.open("request " + request.getMethod() + " " + request.getRequestURI());
+        if (!failMode) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                scope.close();
+            }
+            recorder.verify(scope);
+            return;
+        }
+
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, buffered);
+        } finally {
+            scope.close();
+        }
+        //예외가 나면 버퍼는 버려지고 아직 커밋되지 않은 응답으로 에러가 나간다.
+        recorder.verify(scope);
+        if (!isAsyncStarted(request)) {
+            buffered.copyBodyToResponse();
+        }
+    }
+}
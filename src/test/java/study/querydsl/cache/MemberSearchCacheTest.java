@@ -0,0 +1,78 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberBulkOptions;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 쓰기 트랜잭션 안에서는 캐시를 거치지 않으므로 트랜잭션 밖에서 커밋된 변경으로 확인한다.
+ */
+@SpringBootTest
+class MemberSearchCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchCache searchCache;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    CommittedFixture fixture;
+
+    Team team;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            team = fixture.persist(new Team("searchCacheTeam"));
+            fixture.persist(new Member("member1", 10, team));
+        });
+        searchCache.invalidateAll();
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void committedChangesInvalidate() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("searchCacheTeam");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+        long hits = searchCache.stats().getHits();
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+        assertThat(searchCache.stats().getHits()).isEqualTo(hits + 1);
+
+        //save
+        fixture.insert(() -> fixture.persist(new Member("member2", 20, em.find(Team.class, team.getId()))));
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1", "member2");
+
+        //벌크 update
+        condition.setAgeGoe(30);
+        assertThat(memberRepository.search(condition)).isEmpty();
+        memberRepository.bulkUpdate(member.team.name.eq("searchCacheTeam"),
+                update -> update.set(member.age, 30), MemberBulkOptions.defaults());
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1", "member2");
+    }
+}
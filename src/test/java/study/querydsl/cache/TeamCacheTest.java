@@ -0,0 +1,94 @@
+package study.querydsl.cache;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    JPAQueryFactory queryFactory;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+        teamId = teamA.getId();
+    }
+
+    private CacheRegionStatistics region(String name) {
+        return emf.unwrap(SessionFactory.class).getStatistics().getDomainDataRegionStatistics(name);
+    }
+
+    @Test
+    public void team_secondLevelCacheHit() {
+        em.find(Team.class, teamId);
+        em.clear();
+
+        long hits = region(TeamCache.TEAM_REGION).getHitCount();
+        Team team = em.find(Team.class, teamId);
+
+        assertThat(team.getName()).isEqualTo("teamA");
+        assertThat(region(TeamCache.TEAM_REGION).getHitCount()).isEqualTo(hits + 1);
+    }
+
+    /**
+     * QuerydslBasicTest.bulkDelete 처럼 JPQL 벌크는 엔티티 이벤트 없이 DB 만 바꾼다.
+     * 캐시된 Team.members 가 남아 있으면 지워진 member 를 가리키게 된다.
+     */
+    @Test
+    public void members_evictedByBulkDelete() {
+        assertThat(em.find(Team.class, teamId).getMembers()).hasSize(2);
+        em.clear();
+
+        queryFactory
+                .delete(member)
+                .where(member.age.lt(15))
+                .execute();
+        em.clear();
+
+        assertThat(em.find(Team.class, teamId).getMembers())
+                .extracting("username")
+                .containsExactly("member2");
+    }
+
+    @Test
+    public void findByName_queryCache() {
+        teamRepository.findByName("teamA");
+        em.clear();
+
+        long hits = emf.unwrap(SessionFactory.class).getStatistics().getQueryCacheHitCount();
+        assertThat(teamRepository.findByName("teamA")).extracting("id").containsExactly(teamId);
+        assertThat(emf.unwrap(SessionFactory.class).getStatistics().getQueryCacheHitCount()).isEqualTo(hits + 1);
+    }
+}
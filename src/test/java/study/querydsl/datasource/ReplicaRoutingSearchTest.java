@@ -0,0 +1,109 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 실제 검색(searchPageSimple)이 replica 로 가는지, 쓰기 직후에는 primary 로 가는지 확인한다.
+ * replica 두 개에는 member/team 스키마와 replica 에만 있는 member 한 명을 넣어 둔다.
+ * 그 member 가 보이면 replica, 안 보이면 primary 에서 읽은 것이다.
+ */
+@SpringBootTest(properties = {
+        "datasource.routing.enabled=true",
+        "datasource.routing.read-your-writes-window=" + ReplicaRoutingSearchTest.WINDOW_MILLIS + "ms",
+        "datasource.routing.health-check-interval=PT1H",
+        "datasource.routing.replicas[0].name=replica1",
+        "datasource.routing.replicas[0].url=" + ReplicaRoutingSearchTest.REPLICA1,
+        "datasource.routing.replicas[1].name=replica2",
+        "datasource.routing.replicas[1].url=" + ReplicaRoutingSearchTest.REPLICA2,
+})
+class ReplicaRoutingSearchTest {
+
+    static final long WINDOW_MILLIS = 500;
+    static final String REPLICA1 = "jdbc:h2:mem:search-replica1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA2 = "jdbc:h2:mem:search-replica2;DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_ONLY = "replica-only-member";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() throws SQLException, InterruptedException {
+        fixture = new CommittedFixture(em, transactionManager);
+        //앞 테스트 정리(쓰기 트랜잭션)의 read-your-writes window 가 지나야 replica 로 간다.
+        Thread.sleep(WINDOW_MILLIS * 2);
+        for (String url : new String[]{REPLICA1, REPLICA2}) {
+            try (Connection connection = DriverManager.getConnection(url, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("create table if not exists team"
+                        + " (team_id bigint primary key, name varchar(255))");
+                statement.execute("create table if not exists member"
+                        + " (member_id bigint primary key, username varchar(255), age integer not null, team_id bigint)");
+                statement.execute("merge into team (team_id, name) key (team_id) values (-1, 'replicaTeam')");
+                statement.execute("merge into member (member_id, username, age, team_id) key (member_id)"
+                        + " values (-1, '" + REPLICA_ONLY + "', 20, -1)");
+            }
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    private List<MemberTeamDto> searchReplicaOnly() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(REPLICA_ONLY);
+        return memberRepository.searchPageSimple(condition, PageRequest.of(0, 10)).getContent();
+    }
+
+    @Test
+    public void search_readsFromReplica_thenPrimaryRightAfterWrite() throws InterruptedException {
+        //읽기 전용 검색은 replica
+        assertThat(searchReplicaOnly()).extracting(MemberTeamDto::getTeamName).containsExactly("replicaTeam");
+
+        //쓰기 직후 window 동안은 같은 스레드의 읽기가 primary (replica 에만 있는 member 는 안 보인다)
+        fixture.insert(() -> fixture.persist(new Team("routingTeam")));
+        assertThat(searchReplicaOnly()).isEmpty();
+
+        //window 가 지나면 다시 replica
+        Thread.sleep(WINDOW_MILLIS * 2);
+        assertThat(searchReplicaOnly()).extracting(MemberTeamDto::getUsername).containsExactly(REPLICA_ONLY);
+    }
+
+    @Test
+    public void primaryOnly_searchReadsFromPrimary() {
+        try (ReplicaRoutingContext.Scope scope = ReplicaRoutingContext.primaryOnly()) {
+            assertThat(searchReplicaOnly()).isEmpty();
+        }
+        assertThat(searchReplicaOnly()).hasSize(1);
+    }
+}
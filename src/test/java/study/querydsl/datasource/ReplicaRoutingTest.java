@@ -0,0 +1,76 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * replica 는 in-memory H2 두 개 + 접속 안 되는 주소 하나.
+ * 어느 DB 로 갔는지는 H2 의 DATABASE() 로 확인한다.
+ */
+@SpringBootTest(properties = {
+        "datasource.routing.enabled=true",
+        "datasource.routing.read-your-writes-window=0s",
+        "datasource.routing.health-check-interval=PT1H",
+        "datasource.routing.replicas[0].name=replica1",
+        "datasource.routing.replicas[0].url=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1",
+        "datasource.routing.replicas[1].name=replica2",
+        "datasource.routing.replicas[1].url=jdbc:h2:mem:replica2;DB_CLOSE_DELAY=-1",
+        "datasource.routing.replicas[2].name=down",
+        "datasource.routing.replicas[2].url=jdbc:h2:tcp://localhost:1/~/down",
+})
+class ReplicaRoutingTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate readOnly;
+    TransactionTemplate readWrite;
+
+    @BeforeEach
+    public void before() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    private String database(TransactionTemplate tx) {
+        return tx.execute(status -> (String) em.createNativeQuery("select database()").getSingleResult());
+    }
+
+    @Test
+    public void readOnly_roundRobinOverHealthyReplicas() {
+        Set<String> databases = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            databases.add(database(readOnly));
+        }
+        //접속 안 되는 replica 는 DOWN 처리되고 나머지로 넘어간다.
+        assertThat(databases).containsExactlyInAnyOrder("REPLICA1", "REPLICA2");
+    }
+
+    @Test
+    public void write_goesToPrimary() {
+        assertThat(database(readWrite)).isNotIn("REPLICA1", "REPLICA2");
+    }
+
+    @Test
+    public void primaryOnly_keepsReadsOnPrimary() {
+        String primary = database(readWrite);
+        try (ReplicaRoutingContext.Scope scope = ReplicaRoutingContext.primaryOnly()) {
+            assertThat(database(readOnly)).isEqualTo(primary);
+        }
+        assertThat(database(readOnly)).isIn("REPLICA1", "REPLICA2");
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.entity.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledIdGeneratorTest {
+
+    private static final int BLOCK_SIZE = 10;
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 5_000;
+
+    @Test
+    public void generate_concurrentAcrossBlocks() throws Exception {
+        //시퀀스 대신: 1, 11, 21, ... 을 주고 받아간 블록 시작값을 기록한다.
+        AtomicLong sequence = new AtomicLong(1);
+        ConcurrentSkipListSet<Long> blockStarts = new ConcurrentSkipListSet<>();
+        PooledIdGenerator generator = new PooledIdGenerator(BLOCK_SIZE) {
+            @Override
+            long nextBlockStart(SharedSessionContractImplementor session) {
+                long lo = sequence.getAndAdd(BLOCK_SIZE);
+                blockStarts.add(lo);
+                //블록 교체가 겹치도록 시퀀스 왕복 시간을 흉내낸다.
+                Thread.yield();
+                return lo;
+            }
+        };
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> ids = new ArrayList<>(IDS_PER_THREAD);
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids.add((Long) generator.generate(null, null));
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                for (Long id : future.get(30, TimeUnit.SECONDS)) {
+                    assertThat(all.add(id)).as("duplicate id %d", id).isTrue();
+                    //받아간 블록 [lo, lo + BLOCK_SIZE) 안의 값이어야 한다.
+                    Long lo = blockStarts.floor(id);
+                    assertThat(lo).as("id %d before first block", id).isNotNull();
+                    assertThat(id).as("id %d outside block %d", id, lo).isLessThan(lo + BLOCK_SIZE);
+                }
+            }
+            assertThat(all).hasSize(THREADS * IDS_PER_THREAD);
+            //블록을 여러 번 넘겨야 의미가 있다. 버려지는 블록이 있어도 필요한 수보다 적을 수는 없다.
+            assertThat(blockStarts.size()).isGreaterThanOrEqualTo(THREADS * IDS_PER_THREAD / BLOCK_SIZE);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
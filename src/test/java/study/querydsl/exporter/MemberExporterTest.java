@@ -0,0 +1,283 @@
+package study.querydsl.exporter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * export 는 자기 읽기 전용 트랜잭션으로 읽으므로 데이터를 커밋해 둔다.
+ */
+@SpringBootTest
+class MemberExporterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberExporter exporter;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    TransactionTemplate tx;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            Team teamA = fixture.persist(new Team("teamA"));
+            Team teamB = fixture.persist(new Team("팀 \"B\", 둘째"));
+            for (int i = 0; i < 1000; i++) {
+                Team team = i % 3 == 0 ? null : i % 3 == 1 ? teamA : teamB;
+                String username = i % 100 == 7 ? null : i % 100 == 8 ? "" : i % 10 == 9 ? "멤버,\n" + i : "member" + i;
+                fixture.persist(new Member(username, i % 90, team));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void export_csv() throws Exception {
+        MemberExportResult result = exporter.export(dir, MemberExportOptions.of(MemberExportOptions.Format.CSV));
+
+        assertThat(result.getFiles()).containsExactly(dir.resolve("member-0.csv"));
+        assertThat(result.getRows()).isEqualTo(1000);
+        assertThat(readCsv(result.getFiles(), false)).containsExactlyElementsOf(expected());
+    }
+
+    @Test
+    public void export_csv_parallelCompressed() throws Exception {
+        MemberExportResult result = exporter.export(dir,
+                MemberExportOptions.of(MemberExportOptions.Format.CSV).compressed().withParallelism(3));
+
+        assertThat(result.getFiles()).hasSize(3);
+        assertThat(result.getFiles().get(0).getFileName().toString()).isEqualTo("member-0.csv.gz");
+        assertThat(readCsv(result.getFiles(), true)).containsExactlyElementsOf(expected());
+    }
+
+    @Test
+    public void export_columnar() throws Exception {
+        MemberExportResult result = exporter.export(dir,
+                MemberExportOptions.of(MemberExportOptions.Format.COLUMNAR).withBlockRows(64).withParallelism(2));
+
+        List<String> rows = new ArrayList<>();
+        for (Path file : result.getFiles()) {
+            rows.addAll(readColumnar(Files.newInputStream(file)));
+        }
+        assertThat(rows).containsExactlyElementsOf(expected());
+
+        MemberExportResult compressed = exporter.export(dir,
+                MemberExportOptions.of(MemberExportOptions.Format.COLUMNAR).compressed());
+        assertThat(readColumnar(new GZIPInputStream(Files.newInputStream(compressed.getFiles().get(0)))))
+                .containsExactlyElementsOf(expected());
+        assertThat(compressed.getBytes()).isLessThan(result.getBytes());
+    }
+
+    @Test
+    public void export_emptyTable() throws Exception {
+        after();
+        MemberExportResult result = exporter.export(dir,
+                MemberExportOptions.of(MemberExportOptions.Format.CSV).withParallelism(4));
+
+        assertThat(result.getRows()).isZero();
+        assertThat(Files.readAllLines(result.getFiles().get(0))).containsExactly("member_id,username,age,team_id,team_name");
+    }
+
+    /**
+     * 한 파티션이라도 실패하면 다른 파티션 파일과 .tmp 를 모두 지운다.
+     */
+    @Test
+    public void export_failureLeavesNoPartialFiles() throws Exception {
+        //마지막 파티션 이름을 비어 있지 않은 디렉터리로 막아서 이름 바꾸기가 실패하게 한다.
+        Path blocker = Files.createDirectories(dir.resolve("member-2.csv"));
+        Files.createFile(blocker.resolve("keep"));
+
+        assertThatThrownBy(() -> exporter.export(dir,
+                MemberExportOptions.of(MemberExportOptions.Format.CSV).withParallelism(3)))
+                .isInstanceOf(UncheckedIOException.class);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(blocker);
+        }
+    }
+
+    /**
+     * member_id 순서로 "id|username|age|teamId|teamName"
+     */
+    private List<String> expected() {
+        return tx.execute(status -> em.createQuery(
+                        "select m from Member m left join fetch m.team order by m.id", Member.class)
+                .getResultList().stream()
+                .map(m -> row(m.getId(), m.getUsername(), m.getAge(),
+                        m.getTeam() != null ? m.getTeam().getId() : null,
+                        m.getTeam() != null ? m.getTeam().getName() : null))
+                .collect(Collectors.toList()));
+    }
+
+    private static String row(long memberId, String username, int age, Long teamId, String teamName) {
+        return memberId + "|" + username + "|" + age + "|" + teamId + "|" + teamName;
+    }
+
+    private static List<String> readCsv(List<Path> files, boolean gzip) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (Path file : files) {
+            InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                assertThat(reader.readLine()).isEqualTo("member_id,username,age,team_id,team_name");
+                List<String> fields;
+                while ((fields = readCsvRecord(reader)) != null) {
+                    rows.add(row(Long.parseLong(fields.get(0)), fields.get(1), Integer.parseInt(fields.get(2)),
+                            fields.get(3) != null ? Long.valueOf(fields.get(3)) : null, fields.get(4)));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 빈 필드는 null, "" 는 빈 문자열
+     */
+    private static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                inQuotes = true;
+            } else if (c == ',' || c == '\n' || c < 0) {
+                fields.add(field.length() == 0 && !quoted ? null : field.toString());
+                field.setLength(0);
+                quoted = false;
+                if (c != ',') {
+                    return fields;
+                }
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    private static List<String> readColumnar(InputStream stream) throws IOException {
+        List<String> rows = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(stream)) {
+            byte[] magic = new byte[4];
+            in.readFully(magic);
+            assertThat(magic).isEqualTo(MemberColumnarEncoder.MAGIC);
+            assertThat(in.read()).isEqualTo(MemberColumnarEncoder.VERSION);
+            int count;
+            while ((count = (int) readVarLong(in)) > 0) {
+                long[] ids = new long[count];
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    ids[i] = previous + readZigZag(in);
+                    previous = ids[i];
+                }
+                int[] ages = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ages[i] = (int) readZigZag(in);
+                }
+                int dictSize = (int) readVarLong(in);
+                long[] teamIds = new long[dictSize];
+                String[] teamNames = new String[dictSize];
+                for (int i = 0; i < dictSize; i++) {
+                    teamIds[i] = readVarLong(in);
+                    teamNames[i] = readString(in);
+                }
+                int[] refs = new int[count];
+                for (int i = 0; i < count; i++) {
+                    refs[i] = (int) readVarLong(in);
+                }
+                for (int i = 0; i < count; i++) {
+                    String username = readString(in);
+                    rows.add(row(ids[i], username, ages[i],
+                            refs[i] == 0 ? null : teamIds[refs[i] - 1],
+                            refs[i] == 0 ? null : teamNames[refs[i] - 1]));
+                }
+            }
+            assertThat(in.read()).isEqualTo(-1);
+        }
+        return rows;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readZigZag(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
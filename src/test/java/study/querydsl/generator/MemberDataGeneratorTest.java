@@ -0,0 +1,180 @@
+package study.querydsl.generator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 청크마다 커밋하므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest
+class MemberDataGeneratorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberDataGenerator generator;
+
+    @Autowired
+    CountingListener listener;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    CommittedFixture fixture;
+
+    long teamWatermark;
+
+    long memberWatermark;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedFixture(em, transactionManager);
+        teamWatermark = maxId("Team", "id");
+        memberWatermark = maxId("Member", "id");
+        fixture.trackNew(Team.class);
+        fixture.trackNew(Member.class);
+        listener.reset();
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void generate_sequential_parallel() {
+        MemberGeneratorProperties properties = new MemberGeneratorProperties();
+        properties.setMemberCount(250);
+        properties.setTeamCount(3);
+        properties.setBatchSize(40);
+        properties.setCommitSize(60);
+        properties.setParallelism(2);
+
+        assertThat(generator.generate(properties)).isEqualTo(250);
+
+        List<Member> members = generatedMembers();
+        assertThat(members).hasSize(250);
+        //member i 는 teamIds[i % teamCount], age = i % 100, username = member + i
+        assertThat(countBy(members, m -> m.getTeam().getId()).values()).containsExactlyInAnyOrder(84L, 83L, 83L);
+        Map<Integer, Long> ages = countBy(members, Member::getAge);
+        assertThat(ages).hasSize(100);
+        assertThat(ages.get(0)).isEqualTo(3);
+        assertThat(ages.get(49)).isEqualTo(3);
+        assertThat(ages.get(50)).isEqualTo(2);
+        assertThat(ages.get(99)).isEqualTo(2);
+        assertThat(members).extracting(Member::getUsername).doesNotHaveDuplicates();
+        assertThat(generatedTeams()).hasSize(3);
+    }
+
+    @Test
+    public void generate_zipfUsernames_normalAges() {
+        MemberGeneratorProperties properties = new MemberGeneratorProperties();
+        properties.setMemberCount(2000);
+        properties.setTeamCount(2);
+        properties.setUsernameSkew(1.5);
+        properties.setDistinctUsernames(10);
+        properties.setAgeDistribution(MemberGeneratorProperties.AgeDistribution.NORMAL);
+        properties.setAgeMin(20);
+        properties.setAgeMax(60);
+        properties.setAgeMean(40);
+        properties.setAgeStddev(5);
+
+        generator.generate(properties);
+
+        List<Member> members = generatedMembers();
+        assertThat(members).hasSize(2000);
+        Map<String, Long> usernames = countBy(members, Member::getUsername);
+        assertThat(usernames.keySet()).allMatch(name -> name.matches("member[0-9]"));
+        //s = 1.5 이면 rank 1 이 전체의 1/H(10, 1.5) ~= 0.5
+        assertThat(usernames.get("member0")).isBetween(800L, 1100L);
+        assertThat(usernames.get("member0")).isGreaterThan(usernames.getOrDefault("member1", 0L));
+        assertThat(members).extracting(Member::getAge).allMatch(age -> age >= 20 && age <= 60);
+        double mean = members.stream().mapToInt(Member::getAge).average().orElse(0);
+        assertThat(mean).isBetween(39.0, 41.0);
+    }
+
+    @Test
+    public void generate_publishesOneBulkChange() {
+        MemberGeneratorProperties properties = new MemberGeneratorProperties();
+        properties.setMemberCount(300);
+        properties.setCommitSize(100);
+        properties.setParallelism(3);
+
+        generator.generate(properties);
+
+        assertThat(listener.rowChanges.get()).isZero();
+        assertThat(listener.bulkChanges.get()).isEqualTo(1);
+    }
+
+    private List<Member> generatedMembers() {
+        return fixture.read(() -> em.createQuery(
+                        "select m from Member m join fetch m.team where m.id > :watermark", Member.class)
+                .setParameter("watermark", memberWatermark)
+                .getResultList());
+    }
+
+    private List<Team> generatedTeams() {
+        return fixture.read(() -> em.createQuery("select t from Team t where t.id > :watermark", Team.class)
+                .setParameter("watermark", teamWatermark)
+                .getResultList());
+    }
+
+    private long maxId(String entity, String id) {
+        Long max = fixture.read(() -> em.createQuery(
+                "select max(e." + id + ") from " + entity + " e", Long.class).getSingleResult());
+        return max != null ? max : Long.MIN_VALUE;
+    }
+
+    private static <K> Map<K, Long> countBy(List<Member> members, Function<Member, K> key) {
+        return members.stream().collect(Collectors.groupingBy(key, Collectors.counting()));
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        CountingListener countingListener() {
+            return new CountingListener();
+        }
+    }
+
+    static class CountingListener implements MemberChangeListener {
+        final AtomicInteger rowChanges = new AtomicInteger();
+        final AtomicInteger bulkChanges = new AtomicInteger();
+
+        void reset() {
+            rowChanges.set(0);
+            bulkChanges.set(0);
+        }
+
+        @Override
+        public void onMemberChange(MemberChange change) {
+            rowChanges.incrementAndGet();
+        }
+
+        @Override
+        public void onBulkChange() {
+            bulkChanges.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package study.querydsl.importer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChange;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 청크마다 커밋하므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest
+class MemberCsvImporterTest {
+
+    private static final int ROWS = 1000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberCsvImporter importer;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    BulkChangeCounter bulkChanges;
+
+    @TempDir
+    Path dir;
+
+    TransactionTemplate tx;
+
+    CommittedFixture fixture;
+
+    List<String> importKeys = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> fixture.persist(new Team("teamA")));
+        //import 가 만드는 팀/member 는 id 를 모르므로 지금 max(id) 이후를 지운다.
+        fixture.trackNew(Team.class);
+        fixture.trackNew(Member.class);
+        bulkChanges.count.set(0);
+    }
+
+    @AfterEach
+    public void after() {
+        if (!importKeys.isEmpty()) {
+            tx.executeWithoutResult(status -> em.createQuery(
+                            "delete from MemberImportCheckpoint c where c.importKey in :importKeys")
+                    .setParameter("importKeys", importKeys)
+                    .executeUpdate());
+        }
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void importFile_parallelChunks() throws Exception {
+        Path file = write(csv(null));
+        List<MemberImportProgress> progress = new ArrayList<>();
+
+        MemberImportProgress result = importFile(file,
+                MemberImportOptions.of(1024, 100, 4).withProgressListener(progress::add));
+
+        assertThat(result.getRows()).isEqualTo(ROWS);
+        assertThat(result.getChunks()).isEqualTo(result.getTotalChunks()).isGreaterThan(1);
+        assertThat(progress).hasSize(result.getTotalChunks());
+        //청크마다가 아니라 import 가 끝날 때 한 번만 알린다.
+        assertThat(bulkChanges.count.get()).isEqualTo(1);
+        assertImported();
+    }
+
+    @Test
+    public void importFile_resumesAfterFailure() throws Exception {
+        //같은 길이로 고쳐야 청크 경계가 그대로다.
+        Path file = write(csv("x7"));
+        MemberImportOptions options = MemberImportOptions.of(1024, 100, 1).withImportKey("partner-1");
+
+        assertThatThrownBy(() -> importFile(file, options))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("x7");
+        long committed = count("select count(m) from Member m");
+        assertThat(committed).isGreaterThan(0).isLessThan(ROWS);
+        //실패해도 커밋된 청크가 있으므로 알린다.
+        assertThat(bulkChanges.count.get()).isEqualTo(1);
+
+        write(csv("17"));
+        MemberImportProgress result = importFile(file, options);
+
+        assertThat(result.getResumedChunks()).isGreaterThan(0);
+        assertThat(result.getRows()).isEqualTo(ROWS - committed);
+        assertImported();
+
+        assertThat(bulkChanges.count.get()).isEqualTo(2);
+
+        //다 끝난 파일을 다시 돌리면 아무것도 넣지 않고 알리지도 않는다.
+        assertThat(importFile(file, options).getRows()).isZero();
+        assertThat(bulkChanges.count.get()).isEqualTo(2);
+        assertThat(count("select count(m) from Member m")).isEqualTo(ROWS);
+    }
+
+    @Test
+    public void importFile_quotedFields() throws Exception {
+        Path file = write("username,age,team_name\r\n"
+                + "\"kim, \"\"junior\"\"\",20,\"teamA\"\r\n"
+                + ",30,\r\n"
+                + "\"\",40,\"새 팀\"");
+
+        importFile(file, MemberImportOptions.defaults());
+
+        List<Member> members = tx.execute(status -> em.createQuery(
+                        "select m from Member m left join fetch m.team order by m.age", Member.class)
+                .getResultList());
+        assertThat(members).extracting("username").containsExactly("kim, \"junior\"", null, "");
+        assertThat(members).extracting(m -> m.getTeam() != null ? m.getTeam().getName() : null)
+                .containsExactly("teamA", null, "새 팀");
+    }
+
+    /**
+     * 새 팀이 많고 worker 수가 커넥션 풀(기본 10)보다 많아도 멈추지 않는다.
+     */
+    @Test
+    @Timeout(60)
+    public void importFile_newTeamsWithMoreWorkersThanConnections() throws Exception {
+        StringBuilder csv = new StringBuilder("username,age,team_name\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("member").append(String.format("%04d", i)).append(",20,newTeam").append(i % 50).append('\n');
+        }
+        Path file = write(csv.toString());
+
+        MemberImportProgress result = importFile(file, MemberImportOptions.of(512, 100, 16));
+
+        assertThat(result.getRows()).isEqualTo(ROWS);
+        assertThat(count("select count(t) from Team t where t.name like 'newTeam%'")).isEqualTo(50);
+        assertThat(count("select count(m) from Member m where m.team.name = 'newTeam7'")).isEqualTo(ROWS / 50);
+    }
+
+    private void assertImported() {
+        assertThat(count("select count(m) from Member m")).isEqualTo(ROWS);
+        assertThat(count("select count(distinct m.username) from Member m")).isEqualTo(ROWS);
+        assertThat(count("select count(m) from Member m where m.team.name = 'teamA'")).isEqualTo(ROWS / 2);
+        assertThat(count("select count(m) from Member m where m.team.name = 'teamB'")).isEqualTo(ROWS / 4);
+        assertThat(count("select count(m) from Member m where m.team is null")).isEqualTo(ROWS / 4);
+        //청크마다 새로 만들지 않고 한 번만 만든다.
+        assertThat(count("select count(t) from Team t where t.name = 'teamB'")).isEqualTo(1);
+    }
+
+    /**
+     * 지울 checkpoint 를 알기 위해 importKey 를 모아 둔다.
+     */
+    private MemberImportProgress importFile(Path file, MemberImportOptions options) {
+        if (options.getImportKey() != null) {
+            importKeys.add(options.getImportKey());
+        }
+        MemberImportProgress result = importer.importFile(file, options);
+        importKeys.add(result.getImportKey());
+        return result;
+    }
+
+    private long count(String jpql) {
+        return tx.execute(status -> em.createQuery(jpql, Long.class).getSingleResult());
+    }
+
+    /**
+     * @param badAge null 이 아니면 700 번째 줄 age 를 이 값으로 바꾼다.
+     */
+    private String csv(String badAge) {
+        StringBuilder csv = new StringBuilder("username,age,team_name\n");
+        for (int i = 0; i < ROWS; i++) {
+            String age = badAge != null && i == 700 ? badAge : String.format("%02d", i % 100);
+            String team = i % 2 == 0 ? "teamA" : i % 4 == 1 ? "teamB" : "";
+            csv.append("member").append(String.format("%04d", i)).append(',').append(age).append(',').append(team)
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private Path write(String content) throws Exception {
+        return Files.write(dir.resolve("members.csv"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        BulkChangeCounter bulkChangeCounter() {
+            return new BulkChangeCounter();
+        }
+    }
+
+    static class BulkChangeCounter implements MemberChangeListener {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void onMemberChange(MemberChange change) {
+        }
+
+        @Override
+        public void onBulkChange() {
+            count.incrementAndGet();
+        }
+    }
+}
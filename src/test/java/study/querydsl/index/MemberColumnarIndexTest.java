@@ -0,0 +1,176 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 인덱스는 커밋된 변경만 반영하므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest
+class MemberColumnarIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberColumnarIndex columnarIndex;
+
+    @Autowired
+    UsernameGramTable gramTable;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() throws InterruptedException {
+        tx = new TransactionTemplate(transactionManager);
+        fixture = new CommittedFixture(em, transactionManager);
+        awaitReady();
+        fixture.insert(() -> {
+            Team teamA = fixture.persist(new Team("teamA"));
+            Team teamB = fixture.persist(new Team("teamB"));
+            for (int i = 0; i < 20; i++) {
+                fixture.persist(new Member("member" + (i % 5), i * 5, i % 2 == 0 ? teamA : teamB));
+            }
+            fixture.persist(new Member("member0", 30));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    private void awaitReady() throws InterruptedException {
+        for (int i = 0; i < 100 && !columnarIndex.isReady(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(columnarIndex.isReady()).isTrue();
+    }
+
+    @Test
+    public void searchInMemory_sameAsDatabase() {
+        String[] usernames = {null, "member0", "nobody"};
+        String[] teamNames = {null, "teamA", "teamB"};
+        Integer[] ages = {null, 20, 60};
+        for (String username : usernames) {
+            for (String teamName : teamNames) {
+                for (Integer ageGoe : ages) {
+                    for (Integer ageLoe : ages) {
+                        MemberSearchCondition condition = new MemberSearchCondition();
+                        condition.setUsername(username);
+                        condition.setTeamName(teamName);
+                        condition.setAgeGoe(ageGoe);
+                        condition.setAgeLoe(ageLoe);
+
+                        List<MemberTeamDto> database = memberRepository.search(condition).stream()
+                                .sorted(Comparator.comparing(MemberTeamDto::getMemberId))
+                                .collect(Collectors.toList());
+                        assertThat(memberRepository.searchInMemory(condition)).as("%s", condition).isEqualTo(database);
+                        assertThat(memberRepository.searchIdsInMemory(condition))
+                                .containsExactly(database.stream().mapToLong(MemberTeamDto::getMemberId).toArray());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void usernamePattern_inMemorySameAsDatabase() {
+        String[] prefixes = {null, "m", "member", "member1", "ember", "x"};
+        String[] contains = {null, "e", "ber", "ber3", "er0", "%", "x"};
+        for (String prefix : prefixes) {
+            for (String value : contains) {
+                for (String teamName : new String[]{null, "teamA"}) {
+                    MemberSearchCondition condition = new MemberSearchCondition();
+                    condition.setUsernamePrefix(prefix);
+                    condition.setUsernameContains(value);
+                    condition.setTeamName(teamName);
+
+                    List<Long> expected = tx.execute(status -> memberRepository.findAll().stream()
+                            .filter(m -> prefix == null || m.getUsername().startsWith(prefix))
+                            .filter(m -> value == null || m.getUsername().contains(value))
+                            .filter(m -> teamName == null || m.getTeam() != null && teamName.equals(m.getTeam().getName()))
+                            .map(Member::getId)
+                            .sorted()
+                            .collect(Collectors.toList()));
+                    assertThat(memberRepository.search(condition)).as("%s", condition)
+                            .extracting(MemberTeamDto::getMemberId)
+                            .containsExactlyInAnyOrderElementsOf(expected);
+                    assertThat(memberRepository.searchInMemory(condition)).as("%s", condition)
+                            .extracting(MemberTeamDto::getMemberId)
+                            .containsExactlyElementsOf(expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * 인덱스가 모르는 row (다른 인스턴스가 커밋, import 중, 커밋 직후 반영 전) 도 DB 검색(search)에는 나온다.
+     * 인덱스 기준으로 결과를 좁히는 것은 searchInMemory 뿐이다.
+     * (네이티브 insert 는 Hibernate 를 거치지 않으니 DB 쪽 gram 테이블은 다시 만들어 준다)
+     */
+    @Test
+    public void search_seesRowsUnknownToIndex() throws Exception {
+        long id = fixture.read(() -> em.createQuery("select max(m.id) from Member m", Long.class).getSingleResult())
+                + 1_000_000;
+        fixture.track(Member.class, List.of(id));
+        tx.executeWithoutResult(status -> em.createNativeQuery(
+                        "insert into member (member_id, username, age) values (?, ?, ?)")
+                .setParameter(1, id)
+                .setParameter(2, "ghost-member")
+                .setParameter(3, 20)
+                .executeUpdate());
+        gramTable.requestRebuild();
+        gramTable.awaitRebuilt();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("ghost");
+        assertThat(memberRepository.search(condition)).extracting(MemberTeamDto::getMemberId).containsExactly(id);
+        assertThat(memberRepository.searchInMemory(condition)).isEmpty();
+    }
+
+    @Test
+    public void committedChangesAreApplied() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        condition.setAgeGoe(100);
+        assertThat(memberRepository.searchInMemory(condition)).isEmpty();
+
+        tx.executeWithoutResult(status -> memberRepository.findByUsername("member1").get(0).setAge(100));
+        assertThat(memberRepository.searchInMemory(condition)).extracting("age").containsExactly(100);
+
+        //롤백된 변경은 반영되지 않는다.
+        tx.executeWithoutResult(status -> {
+            memberRepository.findByUsername("member2").get(0).setAge(100);
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(memberRepository.searchInMemory(condition)).hasSize(1);
+    }
+}
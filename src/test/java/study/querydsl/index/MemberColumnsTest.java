@@ -0,0 +1,124 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberColumnsTest {
+
+    /**
+     * 무작위 upsert/remove 후 모든 조건 조합의 결과가 단순 전체 비교와 같아야 한다.
+     */
+    @Test
+    public void search_matchesBruteForce() {
+        Random random = new Random(42);
+        MemberColumns columns = new MemberColumns(16);
+        Map<Long, Object[]> expected = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            long id = 1 + random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                columns.remove(id);
+                expected.remove(id);
+            } else {
+                String username = "member" + random.nextInt(50);
+                int age = random.nextInt(60);
+                Long teamId = random.nextInt(5) == 0 ? null : (long) (1 + random.nextInt(6));
+                String teamName = teamId == null ? null : "team" + (teamId % 3);
+                columns.upsert(id, username, age, teamId, teamName);
+                expected.put(id, new Object[]{username, age, teamName});
+            }
+        }
+
+        for (int round = 0; round < 200; round++) {
+            String username = random.nextBoolean() ? "member" + random.nextInt(55) : null;
+            String teamName = random.nextBoolean() ? "team" + random.nextInt(4) : null;
+            Integer ageGoe = random.nextBoolean() ? random.nextInt(60) : null;
+            Integer ageLoe = random.nextBoolean() ? random.nextInt(60) : null;
+
+            long[] actual = Arrays.stream(columns.search(username, teamName, ageGoe, ageLoe))
+                    .mapToLong(columns::id)
+                    .sorted()
+                    .toArray();
+            long[] brute = expected.entrySet().stream()
+                    .filter(e -> username == null || username.equals(e.getValue()[0]))
+                    .filter(e -> teamName == null || teamName.equals(e.getValue()[2]))
+                    .filter(e -> ageGoe == null || (int) e.getValue()[1] >= ageGoe)
+                    .filter(e -> ageLoe == null || (int) e.getValue()[1] <= ageLoe)
+                    .mapToLong(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+            assertThat(actual).as("%s %s %s %s", username, teamName, ageGoe, ageLoe).isEqualTo(brute);
+        }
+        assertThat(columns.alive()).isEqualTo(expected.size());
+    }
+
+    /**
+     * prefix / contains 는 trigram 후보 + 문자열 확인. 짧은 패턴(색인 불가)과 이름 변경 후에도 전체 비교와 같아야 한다.
+     */
+    @Test
+    public void search_usernamePattern_matchesBruteForce() {
+        Random random = new Random(7);
+        String[] syllables = {"ka", "kim", "lee", "park", "aa", "a_", "%b", "choi"};
+        MemberColumns columns = new MemberColumns(16);
+        Map<Long, Object[]> expected = new HashMap<>();
+
+        for (int i = 0; i < 3000; i++) {
+            long id = 1 + random.nextInt(300);
+            if (random.nextInt(5) == 0) {
+                columns.remove(id);
+                expected.remove(id);
+            } else {
+                StringBuilder username = new StringBuilder();
+                for (int s = 0; s < 1 + random.nextInt(3); s++) {
+                    username.append(syllables[random.nextInt(syllables.length)]);
+                }
+                username.append(random.nextInt(20));
+                int age = random.nextInt(60);
+                Long teamId = random.nextInt(5) == 0 ? null : (long) (1 + random.nextInt(3));
+                String teamName = teamId == null ? null : "team" + teamId;
+                columns.upsert(id, username.toString(), age, teamId, teamName);
+                expected.put(id, new Object[]{username.toString(), age, teamName});
+            }
+        }
+
+        String[] patterns = {"k", "ki", "kim", "kimlee", "a", "aa", "aaa", "a_", "%b", "e1", "park1", "choi19", "zz", "1"};
+        for (int round = 0; round < 300; round++) {
+            String prefix = random.nextBoolean() ? patterns[random.nextInt(patterns.length)] : null;
+            String contains = random.nextBoolean() ? patterns[random.nextInt(patterns.length)] : null;
+            String teamName = random.nextInt(3) == 0 ? "team" + (1 + random.nextInt(3)) : null;
+            Integer ageGoe = random.nextBoolean() ? random.nextInt(60) : null;
+
+            long[] actual = Arrays.stream(columns.search(null, prefix, contains, teamName, ageGoe, null))
+                    .mapToLong(columns::id)
+                    .sorted()
+                    .toArray();
+            long[] brute = expected.entrySet().stream()
+                    .filter(e -> prefix == null || ((String) e.getValue()[0]).startsWith(prefix))
+                    .filter(e -> contains == null || ((String) e.getValue()[0]).contains(contains))
+                    .filter(e -> teamName == null || teamName.equals(e.getValue()[2]))
+                    .filter(e -> ageGoe == null || (int) e.getValue()[1] >= ageGoe)
+                    .mapToLong(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+            assertThat(actual).as("%s %s %s %s", prefix, contains, teamName, ageGoe).isEqualTo(brute);
+        }
+    }
+
+    @Test
+    public void teamRename_appliesToAllMembersOfTeam() {
+        MemberColumns columns = new MemberColumns(16);
+        columns.upsert(1, "member1", 10, 1L, "teamA");
+        columns.upsert(2, "member2", 20, 1L, "teamA");
+
+        columns.upsert(2, "member2", 20, 1L, "teamC");
+
+        assertThat(columns.search(null, "teamA", null, null)).isEmpty();
+        assertThat(columns.search(null, "teamC", null, null)).hasSize(2);
+    }
+}
@@ -0,0 +1,164 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * gram 은 커밋과 같이 쓰이므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest
+class UsernameGramTableTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    UsernameGramTable gramTable;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    TransactionTemplate readOnlyTx;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() throws Exception {
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        fixture = new CommittedFixture(em, transactionManager);
+        //앞 테스트의 정리(벌크 delete)가 요청한 재구축까지 끝나야 ready 다.
+        gramTable.awaitRebuilt();
+        assertThat(gramTable.isReady()).isTrue();
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void grams() {
+        assertThat(UsernameGramTable.grams("member1")).containsExactly("ber", "emb", "er1", "mbe", "mem");
+        assertThat(UsernameGramTable.grams("aaaa")).containsExactly("aaa");
+        assertThat(UsernameGramTable.grams("ab")).isEmpty();
+    }
+
+    @Test
+    public void queryGrams_onlyOutsideWriteTransactions() {
+        assertThat(gramTable.queryGrams("ember")).containsExactly("ber", "emb", "mbe");
+        assertThat(gramTable.queryGrams("em")).isNull();
+        assertThat(tx.execute(status -> gramTable.queryGrams("ember"))).isNull();
+    }
+
+    @Test
+    public void committedChanges_keepGramsInSync() {
+        Member member = new Member("gram-alpha");
+        fixture.insert(() -> fixture.persist(member));
+        assertThat(gramsOf(member.getId())).isEqualTo(UsernameGramTable.grams("gram-alpha"));
+
+        tx.executeWithoutResult(status -> em.find(Member.class, member.getId()).setUsername("gram-beta"));
+        assertThat(gramsOf(member.getId())).isEqualTo(UsernameGramTable.grams("gram-beta"));
+
+        //username 이 아닌 변경은 gram 을 건드리지 않는다.
+        tx.executeWithoutResult(status -> em.find(Member.class, member.getId()).setAge(99));
+        assertThat(gramsOf(member.getId())).isEqualTo(UsernameGramTable.grams("gram-beta"));
+
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, member.getId())));
+        assertThat(gramsOf(member.getId())).isEmpty();
+    }
+
+    @Test
+    public void rolledBackInsert_leavesNoGrams() {
+        Long id = tx.execute(status -> {
+            Member member = new Member("gram-rollback");
+            em.persist(member);
+            em.flush();
+            status.setRollbackOnly();
+            return member.getId();
+        });
+        assertThat(gramsOf(id)).isEmpty();
+    }
+
+    @Test
+    public void contains_sameAsLike() {
+        fixture.insert(() -> {
+            Team team = fixture.persist(new Team("gramTeam"));
+            for (String username : new String[]{"gram-apple", "gram-maple", "gram-grape", "apple%pie", "ppl"}) {
+                fixture.persist(new Member(username, 10, team));
+            }
+        });
+        for (String value : new String[]{"ppl", "apple", "aple", "gram-", "e%p", "xyz", "pl"}) {
+            for (String teamName : new String[]{null, "gramTeam"}) {
+                MemberSearchCondition condition = new MemberSearchCondition();
+                condition.setUsernameContains(value);
+                condition.setTeamName(teamName);
+
+                List<Long> expected = tx.execute(status -> memberRepository.findAll().stream()
+                        .filter(m -> m.getUsername() != null && m.getUsername().contains(value))
+                        .filter(m -> teamName == null || m.getTeam() != null && teamName.equals(m.getTeam().getName()))
+                        .map(Member::getId)
+                        .collect(Collectors.toList()));
+                assertThat(memberRepository.searchPageSimple(condition, PageRequest.of(0, 1000)).getContent())
+                        .as("%s", condition)
+                        .extracting(MemberTeamDto::getMemberId)
+                        .containsExactlyInAnyOrderElementsOf(expected);
+                //읽기 전용 트랜잭션은 gram 을 쓴다.
+                List<Long> rows = new ArrayList<>();
+                readOnlyTx.executeWithoutResult(status ->
+                        memberRepository.searchRows(condition, 100, rs -> rows.add(rs.getLong(1))));
+                assertThat(rows).as("%s", condition).containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+
+    /**
+     * 쓰기 트랜잭션 안에서는 LIKE 만 쓰므로 아직 커밋 전인 자기 insert 도 찾는다.
+     */
+    @Test
+    public void contains_seesOwnUncommittedInsert() {
+        fixture.trackNew(Member.class);
+        List<String> found = tx.execute(status -> {
+            em.persist(new Member("gram-uncommitted"));
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsernameContains("uncommit");
+            return memberRepository.searchPageSimple(condition, PageRequest.of(0, 10)).getContent().stream()
+                    .map(MemberTeamDto::getUsername)
+                    .collect(Collectors.toList());
+        });
+        assertThat(found).containsExactly("gram-uncommitted");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> gramsOf(Long memberId) {
+        return fixture.read(() -> em.createNativeQuery(
+                        "select gram from member_username_gram where member_id = ? order by gram")
+                .setParameter(1, memberId)
+                .getResultList());
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.metrics.RepositoryMetrics.Operation;
+import study.querydsl.repository.MemberSearchShape;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryMetricsTest {
+
+    SimpleMeterRegistry registry;
+    RepositoryMetrics metrics;
+
+    @BeforeEach
+    public void before() {
+        registry = new SimpleMeterRegistry();
+        metrics = new RepositoryMetrics(registry);
+    }
+
+    @Test
+    public void metersAreRegisteredOnFirstUse() {
+        assertThat(registry.getMeters()).isEmpty();
+
+        int shape = MemberSearchShape.TEAM_NAME | MemberSearchShape.AGE_GOE;
+        metrics.record(Operation.SEARCH, shape, System.nanoTime(), 3);
+
+        //쓰인 (메서드, shape) 조합의 timer 하나 + row 수 summary 하나
+        assertThat(registry.getMeters()).hasSize(2);
+    }
+
+    @Test
+    public void recordsLatencyAndRowsPerShape() {
+        int shape = MemberSearchShape.TEAM_NAME;
+        metrics.record(Operation.SEARCH_PAGE_COMPLEX_COUNT, shape, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5), 40);
+        metrics.record(Operation.SEARCH_PAGE_COMPLEX_COUNT, shape, System.nanoTime(), 60);
+
+        Timer timer = registry.get("repository.latency")
+                .tag("method", "searchPageComplex")
+                .tag("phase", "count")
+                .tag("shape", MemberSearchShape.describe(shape))
+                .timer();
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+
+        DistributionSummary rows = registry.get("repository.rows")
+                .tag("method", "searchPageComplex")
+                .tag("phase", "count")
+                .tag("shape", MemberSearchShape.describe(shape))
+                .summary();
+        assertThat(rows.count()).isEqualTo(2);
+        assertThat(rows.totalAmount()).isEqualTo(100);
+        assertThat(rows.max()).isEqualTo(60);
+    }
+
+    @Test
+    public void unconditionalOperationsIgnoreShape() {
+        metrics.record(Operation.JPA_SAVE, MemberSearchShape.USERNAME, System.nanoTime(), 1);
+        metrics.record(Operation.JPA_SAVE, System.nanoTime(), 1);
+
+        assertThat(registry.get("repository.latency").tag("method", "save").timers()).hasSize(1);
+        assertThat(registry.get("repository.latency").tag("method", "save").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void percentileHistogramOnlyForMainSearches() {
+        metrics.record(Operation.SEARCH, 0, System.nanoTime(), 1);
+        metrics.record(Operation.SEARCH_ROWS, 0, System.nanoTime(), 1);
+
+        Timer search = registry.get("repository.latency").tag("method", "search").timer();
+        Timer searchRows = registry.get("repository.latency").tag("method", "searchRows").timer();
+        assertThat(search.takeSnapshot().histogramCounts()).isNotEmpty();
+        assertThat(searchRows.takeSnapshot().histogramCounts()).isEmpty();
+        //percentile 값은 둘 다 낸다.
+        assertThat(searchRows.takeSnapshot().percentileValues()).hasSize(3);
+    }
+}
@@ -0,0 +1,126 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * QuerydslBasicTest 의 DTO 조회를 FastProjections 로 바꿔도 Projections 와 결과가 같아야 한다.
+ */
+@SpringBootTest
+@Transactional
+class FastProjectionsTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30));
+        em.persist(new Member(null, 40));
+    }
+
+    @Test
+    public void bean() {
+        List<MemberDto> expected = queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member).orderBy(member.id.asc()).fetch();
+        List<MemberDto> result = queryFactory
+                .select(FastProjections.bean(MemberDto.class, member.username, member.age))
+                .from(member).orderBy(member.id.asc()).fetch();
+
+        assertThat(result).usingRecursiveFieldByFieldElementComparator().isEqualTo(expected);
+        assertThat(result).extracting("username").containsExactly("member1", "member2", "member3", null);
+    }
+
+    @Test
+    public void fields() {
+        QMember memberSub = new QMember("memberSub");
+        List<UserDto> expected = queryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(JPAExpressions.select(memberSub.age.max()).from(memberSub), "age")))
+                .from(member).orderBy(member.id.asc()).fetch();
+        List<UserDto> result = queryFactory
+                .select(FastProjections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(JPAExpressions.select(memberSub.age.max()).from(memberSub), "age")))
+                .from(member).orderBy(member.id.asc()).fetch();
+
+        assertThat(result).isEqualTo(expected);
+        assertThat(result).extracting("age").containsOnly(40);
+    }
+
+    /**
+     * 이름이 맞지 않는 값은 버린다. (Projections.fields 와 같음)
+     */
+    @Test
+    public void fields_unknownPropertyIgnored() {
+        List<UserDto> result = queryFactory
+                .select(FastProjections.fields(UserDto.class, member.username, member.age))
+                .from(member).orderBy(member.id.asc()).fetch();
+
+        assertThat(result).extracting("name").containsOnlyNulls();
+        assertThat(result).extracting("age").containsExactly(10, 20, 30, 40);
+    }
+
+    @Test
+    public void constructor() {
+        List<MemberTeamDto> expected = queryFactory
+                .select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                .from(member).leftJoin(member.team, team).orderBy(member.id.asc()).fetch();
+        List<MemberTeamDto> result = queryFactory
+                .select(FastProjections.constructor(MemberTeamDto.class,
+                        member.id, member.username, member.age, team.id, team.name))
+                .from(member).leftJoin(member.team, team).orderBy(member.id.asc()).fetch();
+
+        assertThat(result).isEqualTo(expected);
+        assertThat(result).extracting("teamName").containsExactly("teamA", "teamA", null, null);
+    }
+
+    /**
+     * primitive 파라미터에 null 이 오면 기본값
+     */
+    @Test
+    public void constructor_nullToPrimitive() {
+        MemberDto dto = FastProjections.constructor(MemberDto.class, member.username, member.age)
+                .newInstance("member1", null);
+
+        assertThat(dto.getAge()).isZero();
+    }
+
+    @Test
+    public void constructor_noMatch() {
+        assertThatThrownBy(() -> FastProjections.constructor(UserDto.class, member.age, member.username))
+                .isInstanceOf(ExpressionException.class);
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 청크마다 별도 트랜잭션으로 커밋되므로 테스트 트랜잭션(롤백)을 쓰지 않고 직접 정리한다.
+ */
+@SpringBootTest
+class MemberBulkTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            Team teamA = fixture.persist(new Team("teamA"));
+            Team teamB = fixture.persist(new Team("teamB"));
+            for (int i = 0; i < 10; i++) {
+                fixture.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void bulkUpdate_inChunks() {
+        List<MemberBulkProgress> progress = new ArrayList<>();
+        MemberBulkOptions options = MemberBulkOptions.of(3, Duration.ofMillis(1))
+                .withProgressListener(progress::add);
+
+        long count = memberRepository.bulkUpdate(member.age.lt(50),
+                update -> update.set(member.username, "미성년자"), options);
+
+        assertThat(count).isEqualTo(5);
+        assertThat(progress).isNotEmpty();
+        assertThat(progress.get(progress.size() - 1).getTotalRows()).isEqualTo(5);
+        assertThat(progress.get(progress.size() - 1).getChunk())
+                .isEqualTo(progress.get(progress.size() - 1).getTotalChunks());
+        assertThat(memberRepository.findByUsername("미성년자")).hasSize(5);
+    }
+
+    @Test
+    public void bulkDelete_withTeamCondition() {
+        long count = memberRepository.bulkDelete(team.name.eq("teamB"), MemberBulkOptions.of(4, Duration.ZERO));
+
+        assertThat(count).isEqualTo(5);
+        assertThat(memberRepository.count()).isEqualTo(5);
+    }
+
+    /**
+     * 수정된 Member 만 영속성 컨텍스트에서 빠지고 나머지는 그대로 남는다.
+     */
+    @Test
+    public void bulkUpdate_evictsOnlyAffectedMembers() {
+        tx.executeWithoutResult(status -> {
+            Member young = memberRepository.findByUsername("member1").get(0);
+            Member old = memberRepository.findByUsername("member9").get(0);
+
+            memberRepository.bulkUpdate(member.age.loe(10),
+                    update -> update.set(member.age, member.age.add(1)), MemberBulkOptions.defaults());
+
+            assertThat(em.contains(young)).isFalse();
+            assertThat(em.contains(old)).isTrue();
+            assertThat(memberRepository.findById(young.getId()).get().getAge()).isEqualTo(11);
+        });
+    }
+}
@@ -1,15 +1,21 @@
 package study.querydsl.repository;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.MemberSearchCache;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamSlice;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedFixture;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
@@ -29,6 +35,15 @@ class MemberJpaRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberSearchCache searchCache;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -85,6 +100,26 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    public void searchByBuilder_appliesTeamName() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 30, teamA));
+        em.persist(new Member("member2", 35, teamB));
+        em.persist(new Member("member3", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(35);
+
+        List<MemberTeamDto> result = memberJpaRepository.searchByBuilder(condition);
+        assertThat(result).extracting("username").containsExactly("member2");
+        assertThat(result).isEqualTo(memberRepository.search(condition));
+    }
+
     @Test
     public void searchPageSimple() {
         Team teamA = new Team("teamA");
@@ -145,5 +180,119 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member1","member2");
     }
 
+    @Test
+    public void searchAfter() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 40, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 20, teamB);
+        Member member4 = new Member("member4", 10, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        MemberTeamSlice first = memberRepository.searchAfter(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.hasNext()).isTrue();
+
+        MemberTeamSlice second = memberRepository.searchAfter(condition, first.getNextCursor(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    public void searchAfterOrderByAge() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 40, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 20, teamA);
+        Member member4 = new Member("member4", 10, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        //같은 age(20) 가 페이지 경계에 걸려도 id 로 이어서 조회된다.
+        MemberTeamSlice first = memberRepository.searchAfterOrderByAge(condition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("member4", "member2");
 
+        MemberTeamSlice second = memberRepository.searchAfterOrderByAge(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member1");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    public void searchAfter_invalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> memberRepository.searchAfter(new MemberSearchCondition(), "not-a-cursor", 10));
+    }
+
+    /**
+     * 캐시는 읽기 전용 트랜잭션 결과만 담으므로 테스트 트랜잭션 없이 커밋된 데이터로 확인한다.
+     */
+    @Test
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void searchCacheInvalidatedOnChange() {
+        CommittedFixture fixture = new CommittedFixture(em, transactionManager);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        try {
+            Team teamA = new Team("cacheTeamA");
+            Team teamB = new Team("cacheTeamB");
+            Member member1 = new Member("member1", 10, teamA);
+            fixture.insert(() -> {
+                fixture.persist(teamA);
+                fixture.persist(teamB);
+                fixture.persist(member1);
+            });
+            fixture.trackNew(Member.class);
+
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("cacheTeamA");
+            assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+            long hits = searchCache.stats().getHits();
+            assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+            assertThat(searchCache.stats().getHits()).isEqualTo(hits + 1);
+
+            //save 커밋 -> 조건에 맞는 캐시 엔트리 무효화
+            tx.executeWithoutResult(status -> memberRepository.save(
+                    new Member("member2", 20, em.find(Team.class, teamA.getId()))));
+            assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1", "member2");
+
+            //changeTeam 커밋 -> 변경 전 팀 조건 엔트리도 무효화
+            //변경 전 팀은 초기화 안 된 프록시다. flush 중에 이름을 읽으려고 초기화하면 안 된다.
+            boolean oldTeamInitialized = tx.execute(status -> {
+                Member found = em.find(Member.class, member1.getId());
+                Team oldTeam = found.getTeam();
+                found.changeTeam(em.find(Team.class, teamB.getId()));
+                em.flush();
+                return Hibernate.isInitialized(oldTeam);
+            });
+            assertThat(oldTeamInitialized).isFalse();
+            assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member2");
+        } finally {
+            fixture.cleanUp();
+        }
+    }
+
+    /**
+     * 테스트 트랜잭션(쓰기)에서 읽은 결과는 커밋 안 된 row 를 포함하므로 캐시에 넣지 않는다.
+     */
+    @Test
+    public void searchCacheBypassedInWriteTransaction() {
+        searchCache.invalidateAll();
+        em.persist(new Member("member1", 10));
+
+        assertThat(memberRepository.search(new MemberSearchCondition())).extracting("username").contains("member1");
+        assertThat(searchCache.stats().getSize()).isZero();
+    }
 }
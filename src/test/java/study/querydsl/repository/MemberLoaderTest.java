@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.trace.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.support.StatementCounts.assertStatementCount;
+
+@SpringBootTest(properties = "member.loader.max-batch-size=100")
+@Transactional
+class MemberLoaderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberLoader memberLoader;
+
+    @Autowired
+    SqlStatementRecorder recorder;
+
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 250; i++) {
+            Member member = new Member("member" + i, i, teamA);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void load_batchesUpToMaxBatchSize() {
+        List<CompletableFuture<Optional<Member>>> futures = new ArrayList<>();
+        //100, 200 번째 load 에서 한 번씩, 남은 50 개는 dispatch 에서
+        assertStatementCount(recorder, 3, () -> {
+            for (Long id : ids) {
+                futures.add(memberLoader.load(id));
+            }
+            memberLoader.dispatch();
+        });
+
+        for (int i = 0; i < ids.size(); i++) {
+            Member member = futures.get(i).join().orElseThrow();
+            assertThat(member.getId()).isEqualTo(ids.get(i));
+            assertThat(member).isSameAs(em.find(Member.class, ids.get(i)));
+        }
+    }
+
+    @Test
+    public void load_sameIdSharesFuture() {
+        CompletableFuture<Optional<Member>> first = memberLoader.load(ids.get(0));
+        CompletableFuture<Optional<Member>> second = memberLoader.load(ids.get(0));
+        assertThat(first).isSameAs(second);
+        assertThat(first).isNotDone();
+
+        memberLoader.dispatch();
+        assertThat(first.join()).isPresent();
+    }
+
+    @Test
+    public void join_dispatchesPendingLoads() {
+        CompletableFuture<Optional<Member>> first = memberLoader.load(ids.get(0));
+        CompletableFuture<Optional<Member>> second = memberLoader.load(ids.get(1));
+
+        //dispatch 를 부르지 않고 join 해도 모인 id 를 한 번에 조회한다.
+        assertStatementCount(recorder, 1, () -> assertThat(first.join()).isPresent());
+        assertThat(second).isDone();
+        assertThat(second.join().orElseThrow().getId()).isEqualTo(ids.get(1));
+    }
+
+    @Test
+    public void load_reusesPersistenceContext() {
+        Member managed = em.find(Member.class, ids.get(0));
+        Member removed = em.find(Member.class, ids.get(1));
+        em.remove(removed);
+
+        assertStatementCount(recorder, 0, () -> {
+            assertThat(memberLoader.load(ids.get(0)).join()).containsSame(managed);
+            assertThat(memberLoader.load(ids.get(1)).join()).isEmpty();
+        });
+    }
+
+    @Test
+    public void loadMany_missingIdsAreOmitted() {
+        List<Long> request = new ArrayList<>(ids.subList(0, 10));
+        request.add(-1L);
+
+        Map<Long, Member> loaded = memberLoader.loadMany(request);
+
+        assertThat(loaded.keySet()).containsExactlyElementsOf(ids.subList(0, 10));
+        assertThat(memberLoader.load(-1L).isDone()).isFalse();
+    }
+}
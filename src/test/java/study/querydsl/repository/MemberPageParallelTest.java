@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+/**
+ * count 는 다른 커넥션에서 실행되므로 데이터를 커밋해야 보인다. (테스트 트랜잭션 사용 안 함)
+ */
+@SpringBootTest(properties = {
+        "member.search.page.execution=parallel",
+        "spring.datasource.hikari.maximum-pool-size=" + MemberPageParallelTest.POOL_SIZE})
+class MemberPageParallelTest {
+
+    static final int POOL_SIZE = 4;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    DataSource dataSource;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            Team teamA = fixture.persist(new Team("teamA"));
+            for (int i = 0; i < 10; i++) {
+                fixture.persist(new Member("member" + i, i * 10, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void searchPageComplex_parallelCount() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(1, 3));
+
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(page.getTotalPages()).isEqualTo(4);
+    }
+
+    /**
+     * 호출한 요청이 마지막 커넥션을 쥐고 있으면 count 작업은 커넥션을 받을 수 없다.
+     * count timeout(5초)까지 기다리다 실패하지 않고 요청 커넥션으로 센다.
+     */
+    @Test
+    public void searchPageComplex_poolExhausted_countsOnCallerConnection() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(10);
+
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < POOL_SIZE - 1; i++) {
+                held.add(dataSource.getConnection());
+            }
+            Page<MemberTeamDto> page = assertTimeout(Duration.ofSeconds(3),
+                    () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 3)));
+
+            assertThat(page.getContent()).hasSize(3);
+            assertThat(page.getTotalElements()).isEqualTo(9);
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void searchPageComplex_shortFirstPage() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(70);
+
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,149 @@
+package study.querydsl.repository;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MemberSearchCondition 조합(shape)별로 content / count SQL 의 EXPLAIN 을 확인한다.
+ * 인덱스를 지우거나 템플릿을 바꿔서 full table scan 이 생기면 실패한다.
+ *
+ * shape 0(조건 없음)은 전체를 읽는 게 맞으므로 제외.
+ */
+@SpringBootTest
+@Transactional
+class MemberSearchPlanTest {
+
+    private static final String FULL_SCAN = "tableScan";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberSearchTemplates searchTemplates;
+
+    @BeforeEach
+    public void before() {
+        //빈 테이블이면 옵티마이저가 어떤 계획이든 싸다고 볼 수 있어서 적당히 채운다.
+        for (int t = 0; t < 30; t++) {
+            Team team = new Team("team" + t);
+            em.persist(team);
+            for (int m = 0; m < 10; m++) {
+                em.persist(new Member("member" + (t * 10 + m), m * 10, team));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    static IntStream shapes() {
+        //usernameContains 만 있는 조건은 LIKE 만으로는 scan 이 맞다. gram 조건을 더한 SQL 은 contentWithGrams_usesIndex
+        return IntStream.range(1, MemberSearchShape.COUNT)
+                .filter(shape -> shape != MemberSearchShape.USERNAME_CONTAINS);
+    }
+
+    @ParameterizedTest(name = "content {0}")
+    @MethodSource("shapes")
+    public void content_usesIndex(int shape) {
+        String plan = explain(searchTemplates.contentJpql(shape), shape);
+        assertThat(plan).as("%s%n%s", MemberSearchShape.describe(shape), plan).doesNotContain(FULL_SCAN);
+    }
+
+    @ParameterizedTest(name = "count {0}")
+    @MethodSource("shapes")
+    public void count_usesIndex(int shape) {
+        String plan = explain(searchTemplates.countJpql(shape), shape);
+        assertThat(plan).as("%s%n%s", MemberSearchShape.describe(shape), plan).doesNotContain(FULL_SCAN);
+    }
+
+    @Test
+    public void contentWithGrams_usesIndex() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("ember1");
+        List<String> grams = List.of("ber", "emb", "er1", "mbe");
+        String sql = searchTemplates.contentSql(MemberSearchShape.USERNAME_CONTAINS, grams);
+        Object[] params = searchTemplates.sqlParameters(condition, grams);
+        String plan = em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+                return plan(statement);
+            }
+        });
+        assertThat(plan).as(plan).doesNotContain(FULL_SCAN);
+    }
+
+    private String explain(String jpql, int shape) {
+        String sql = toSql(jpql);
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                //파라미터는 MemberSearchTemplates.predicates 순서
+                //(username, usernamePrefix, usernameContains, teamName, ageGoe, ageLoe)
+                int index = 1;
+                if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME)) {
+                    statement.setString(index++, "member1");
+                }
+                if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_PREFIX)) {
+                    statement.setString(index++, MemberSearchTemplates.startsWithPattern("member1"));
+                }
+                if (MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS)) {
+                    statement.setString(index++, MemberSearchTemplates.containsPattern("ember1"));
+                }
+                if (MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME)) {
+                    statement.setString(index++, "team1");
+                }
+                if (MemberSearchShape.has(shape, MemberSearchShape.AGE_GOE)) {
+                    statement.setInt(index++, 20);
+                }
+                if (MemberSearchShape.has(shape, MemberSearchShape.AGE_LOE)) {
+                    statement.setInt(index, 40);
+                }
+                return plan(statement);
+            }
+        });
+    }
+
+    private static String plan(PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+
+    private String toSql(String jpql) {
+        SessionFactoryImplementor factory = emf.unwrap(SessionFactoryImplementor.class);
+        QueryTranslator translator = new ASTQueryTranslatorFactory()
+                .createQueryTranslator(jpql, jpql, Collections.emptyMap(), factory, null);
+        translator.compile(Collections.emptyMap(), false);
+        return translator.getSQLString();
+    }
+}
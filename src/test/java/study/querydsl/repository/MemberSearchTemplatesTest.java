@@ -0,0 +1,145 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchTemplatesTest {
+
+    private static final Pattern PARAMETER = Pattern.compile("\\?\\d+");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSearchTemplates searchTemplates;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("templateTeamA");
+        Team teamB = new Team("templateTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("tpl-100%", 10, teamA));
+        em.persist(new Member("tpl-1000", 20, teamA));
+        em.persist(new Member("tpl-a_b", 30, teamB));
+        em.persist(new Member("tpl-axb", 40, teamB));
+        em.persist(new Member("tpl-x!y", 50, null));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void templatePerShape() {
+        Set<String> contents = new HashSet<>();
+        Set<String> counts = new HashSet<>();
+        for (int shape = 0; shape < MemberSearchShape.COUNT; shape++) {
+            String content = searchTemplates.contentJpql(shape);
+            String count = searchTemplates.countJpql(shape);
+            contents.add(content);
+            counts.add(count);
+
+            //조건 하나당 파라미터 하나
+            assertThat(parameters(content)).as(MemberSearchShape.describe(shape)).isEqualTo(Integer.bitCount(shape));
+            assertThat(parameters(count)).as(MemberSearchShape.describe(shape)).isEqualTo(Integer.bitCount(shape));
+            //teamName 조건이 있을 때만 inner join, count 는 그때만 team 을 조인한다.
+            boolean teamName = MemberSearchShape.has(shape, MemberSearchShape.TEAM_NAME);
+            assertThat(content.contains("left join")).as(content).isEqualTo(!teamName);
+            assertThat(count.contains("join")).as(count).isEqualTo(teamName);
+            assertThat(content.contains(" like ")).as(content).isEqualTo(
+                    MemberSearchShape.has(shape, MemberSearchShape.USERNAME_PREFIX)
+                            || MemberSearchShape.has(shape, MemberSearchShape.USERNAME_CONTAINS));
+        }
+        assertThat(contents).hasSize(MemberSearchShape.COUNT);
+        assertThat(counts).hasSize(MemberSearchShape.COUNT);
+    }
+
+    @Test
+    public void sameShapeBindsNewValues() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("templateTeamA");
+        condition.setAgeGoe(15);
+        assertThat(searchTemplates.search(em, condition)).extracting(MemberTeamDto::getUsername)
+                .containsExactly("tpl-1000");
+        assertThat(searchTemplates.count(em, condition)).isEqualTo(1);
+
+        condition.setTeamName("templateTeamB");
+        condition.setAgeGoe(35);
+        assertThat(searchTemplates.search(em, condition)).extracting(MemberTeamDto::getUsername)
+                .containsExactly("tpl-axb");
+        assertThat(searchTemplates.count(em, condition)).isEqualTo(1);
+
+        condition.setTeamName(null);
+        condition.setAgeGoe(null);
+        condition.setUsername("tpl-x!y");
+        assertThat(searchTemplates.search(em, condition)).extracting(MemberTeamDto::getTeamName)
+                .containsExactly((String) null);
+    }
+
+    @Test
+    public void pagingBindsOffsetAndLimit() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("tpl-");
+        assertThat(searchTemplates.count(em, condition)).isEqualTo(5);
+        assertThat(searchTemplates.search(em, condition, 1, 2)).hasSize(2);
+        assertThat(searchTemplates.search(em, condition, 4, 2)).hasSize(1);
+    }
+
+    @Test
+    public void likePatternsEscapeWildcards() {
+        assertThat(MemberSearchTemplates.startsWithPattern("a%b_c!d")).isEqualTo("a!%b!_c!!d%");
+        assertThat(MemberSearchTemplates.containsPattern("a%b_c!d")).isEqualTo("%a!%b!_c!!d%");
+        assertThat(MemberSearchTemplates.startsWithPattern(null)).isNull();
+        assertThat(MemberSearchTemplates.containsPattern(null)).isNull();
+    }
+
+    @Test
+    public void likeMatchesWildcardsLiterally() {
+        assertThat(containsUsernames("0%")).containsExactly("tpl-100%");
+        assertThat(containsUsernames("a_b")).containsExactly("tpl-a_b");
+        assertThat(containsUsernames("!")).containsExactly("tpl-x!y");
+        assertThat(containsUsernames("%")).containsExactly("tpl-100%");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("tpl-100%");
+        assertThat(searchTemplates.search(em, condition)).extracting(MemberTeamDto::getUsername)
+                .containsExactly("tpl-100%");
+    }
+
+    private Set<String> containsUsernames(String value) {
+        //공유 DB 에 다른 테스트 row 가 있어도 이 테스트 row 만 보도록 prefix 를 같이 건다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("tpl-");
+        condition.setUsernameContains(value);
+        Set<String> usernames = new HashSet<>();
+        for (MemberTeamDto dto : searchTemplates.search(em, condition)) {
+            usernames.add(dto.getUsername());
+        }
+        return usernames;
+    }
+
+    private static int parameters(String jpql) {
+        Matcher matcher = PARAMETER.matcher(jpql);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+}
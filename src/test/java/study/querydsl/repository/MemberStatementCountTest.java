@@ -0,0 +1,138 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.trace.SqlStatementRecorder;
+import study.querydsl.trace.SqlStatementScope;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.support.StatementCounts.assertNoRepeatedSelects;
+import static study.querydsl.support.StatementCounts.assertStatementCount;
+import static study.querydsl.support.StatementCounts.count;
+
+@SpringBootTest
+@Transactional
+class MemberStatementCountTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    SqlStatementRecorder recorder;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void search() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        assertStatementCount(recorder, 1, () -> memberRepository.search(condition));
+    }
+
+    @Test
+    public void searchPageComplex_skipsCountOnShortFirstPage() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        assertStatementCount(recorder, 1,
+                () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    public void searchPageSimple() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(40);
+        assertStatementCount(recorder, 2,
+                () -> memberRepository.searchPageSimple(condition, PageRequest.of(0, 10)));
+    }
+
+    /**
+     * 지연 로딩 team 을 루프에서 건드리면 팀 수만큼 select 가 더 나간다. (1 + N)
+     */
+    @Test
+    public void lazyTeam_nPlusOne() {
+        SqlStatementScope scope = count(recorder, () -> {
+            List<Member> members = queryFactory.selectFrom(member).fetch();
+            for (Member m : members) {
+                m.getTeam().getName();
+            }
+        });
+        assertThat(scope.getTotal()).isEqualTo(3);
+        assertThat(scope.getMaxRepeatedSelects()).isEqualTo(2);
+    }
+
+    @Test
+    public void fetchJoin_singleStatement() {
+        assertNoRepeatedSelects(recorder, 1, () -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .fetch();
+            for (Member m : members) {
+                m.getTeam().getName();
+            }
+        });
+    }
+
+    /**
+     * 팀 페이지 1번 + 멤버 IN 쿼리 1번. 페이지 크기와 상관없다.
+     */
+    @Test
+    public void findTeamsWithMembers_twoStatements() {
+        for (int i = 0; i < 20; i++) {
+            Team extra = new Team("team" + i);
+            em.persist(extra);
+            em.persist(new Member("extra" + i, i, extra));
+        }
+        em.flush();
+        em.clear();
+
+        assertStatementCount(recorder, 2, () -> teamRepository.findTeamsWithMembers(PageRequest.of(0, 2)));
+        assertStatementCount(recorder, 2, () -> teamRepository.findTeamsWithMembers(PageRequest.of(0, 20)));
+
+        Slice<TeamMembersDto> first = teamRepository.findTeamsWithMembers(PageRequest.of(0, 2));
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getContent()).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(first.getContent().get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.getContent().get(1).getMembers()).extracting("username").containsExactly("member3", "member4");
+
+        Slice<TeamMembersDto> last = teamRepository.findTeamsWithMembers(PageRequest.of(1, 20));
+        assertThat(last.hasNext()).isFalse();
+        assertThat(last.getContent()).hasSize(2);
+    }
+}
@@ -0,0 +1,146 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ResultSet 에서 바로 쓴 NDJSON 이 MemberTeamDto 를 objectMapper 로 쓴 것과 같아야 한다.
+ * flush 단위를 보려고 fetch size 를 작게 둔다.
+ */
+@SpringBootTest(properties = "member.search.stream-fetch-size=" + MemberStreamServiceTest.FETCH_SIZE)
+@Transactional
+class MemberStreamServiceTest {
+
+    static final int FETCH_SIZE = 2;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberStreamService memberStreamService;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("팀 \"B\"");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+        em.persist(new Member("멤버\t3\\", 30, teamB));
+        em.persist(new Member("member4", 40));
+        em.persist(new Member(null, 50));
+        //flush 는 writeNdjson(searchRows) 이 직접 해야 한다.
+    }
+
+    @Test
+    public void writeNdjson_sameAsDto() throws Exception {
+        assertSameJson(new MemberSearchCondition());
+    }
+
+    @Test
+    public void writeNdjson_sameAsDto_withCondition() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("팀 \"B\"");
+        condition.setAgeGoe(25);
+        assertSameJson(condition);
+
+        condition = new MemberSearchCondition();
+        condition.setAgeLoe(20);
+        assertSameJson(condition);
+    }
+
+    @Test
+    public void writeNdjson_flushesEveryFetchSizeRows() throws Exception {
+        RecordingOutputStream out = new RecordingOutputStream();
+        memberStreamService.writeNdjson(new MemberSearchCondition(), out);
+
+        int rows = out.lines();
+        assertThat(rows).isGreaterThanOrEqualTo(5);
+        //쿼리가 끝나기 전에 앞쪽 fetchSize 줄이 나간다. row 마다 flush 하지는 않는다.
+        assertThat(out.linesAtFlush.get(0)).isEqualTo(FETCH_SIZE);
+        assertThat(out.linesAtFlush).hasSizeLessThanOrEqualTo(rows / FETCH_SIZE + 1);
+        assertThat(out.linesAtFlush.get(out.linesAtFlush.size() - 1)).isEqualTo(rows);
+        //응답 스트림은 컨테이너가 닫는다.
+        assertThat(out.closed).isFalse();
+    }
+
+    @Test
+    public void writeNdjson_keepsResultSetOrder() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        List<Long> expected = new ArrayList<>();
+        memberRepository.searchRows(condition, FETCH_SIZE, rs -> expected.add(rs.getLong(1)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberStreamService.writeNdjson(condition, out);
+
+        List<Long> written = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            written.add(objectMapper.readTree(line).get("memberId").asLong());
+        }
+        assertThat(written).containsExactlyElementsOf(expected);
+    }
+
+    private void assertSameJson(MemberSearchCondition condition) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberStreamService.writeNdjson(condition, out);
+
+        List<String> expected = new ArrayList<>();
+        for (MemberTeamDto dto : memberRepository.search(condition)) {
+            expected.add(objectMapper.writeValueAsString(dto));
+        }
+        String written = out.toString(StandardCharsets.UTF_8);
+        assertThat(written).endsWith("\n");
+        assertThat(Arrays.asList(written.split("\n"))).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    /**
+     * flush 할 때마다 그때까지 쓴 줄 수를 남긴다.
+     */
+    static class RecordingOutputStream extends ByteArrayOutputStream {
+        final List<Integer> linesAtFlush = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public void flush() {
+            linesAtFlush.add(lines());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        int lines() {
+            int lines = 0;
+            for (int i = 0; i < count; i++) {
+                if (buf[i] == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 통계는 커밋된 뒤에 반영되므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest(properties = {
+        "member.search.page.total=estimated",
+        "member.search.page.estimate-exact-threshold=10",
+        "member.search.page.estimate.histogram-ttl=0s",
+        "member.search.cache.enabled=false"})
+class EstimatedTotalTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberCountEstimator estimator;
+
+    @Autowired
+    TeamStatisticsReconciler reconciler;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    CommittedFixture fixture;
+
+    @BeforeEach
+    public void before() throws InterruptedException {
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            Team teamA = fixture.persist(new Team("teamA"));
+            Team teamB = fixture.persist(new Team("teamB"));
+            for (int i = 0; i < 40; i++) {
+                fixture.persist(new Member("member" + (i % 4), i, i < 30 ? teamA : teamB));
+            }
+        });
+        reconciler.reconcile();
+        for (int i = 0; i < 100 && estimator.estimate(new MemberSearchCondition()) == null; i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+        reconciler.reconcile();
+    }
+
+    @Test
+    public void teamAndAge_fromHistogram() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(5);
+
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 5));
+
+        assertThat(page).isInstanceOf(EstimatedPage.class);
+        assertThat(((EstimatedPage<MemberTeamDto>) page).isTotalExact()).isFalse();
+        assertThat(page.getTotalElements()).isEqualTo(25);
+    }
+
+    /**
+     * 추정치(teamB 10건 / username 4종 이상 = 2 정도)가 threshold 보다 작으면 정확한 count
+     */
+    @Test
+    public void belowThreshold_exactCount() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        condition.setTeamName("teamB");
+
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+
+        assertThat(((EstimatedPage<MemberTeamDto>) page).isTotalExact()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+}
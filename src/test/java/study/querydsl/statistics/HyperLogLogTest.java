@@ -0,0 +1,28 @@
+package study.querydsl.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    public void estimate() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 1_000_000; i++) {
+            //중복은 세지 않는다.
+            sketch.add("member" + (i % 100_000));
+        }
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(3_000.0));
+    }
+
+    @Test
+    public void estimate_small() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        sketch.add("member1");
+        sketch.add("member2");
+        sketch.add("member1");
+        assertThat(sketch.estimate()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamStatisticsRepository;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest
+@Transactional
+class TeamStatisticsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamStatisticsReconciler reconciler;
+
+    @Autowired
+    TeamStatisticsRepository teamStatisticsRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 45, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 테스트 트랜잭션은 커밋되지 않아 증분 반영(커밋 후)이 돌지 않으므로 재계산 결과로 확인한다.
+     * (MemberTest.group 과 같은 값)
+     */
+    @Test
+    public void reconcile() {
+        reconciler.reconcile();
+        em.clear();
+
+        TeamStatisticsDto teamA = teamStatisticsRepository.findByTeamName("teamA");
+        TeamStatisticsDto teamB = teamStatisticsRepository.findByTeamName("teamB");
+
+        assertThat(teamA.getMemberCount()).isEqualTo(2);
+        assertThat(teamA.getAvgAge()).isEqualTo(15);
+        assertThat(teamA.getMinAge()).isEqualTo(10);
+        assertThat(teamA.getMaxAge()).isEqualTo(20);
+        assertThat(teamA.getAgeHistogram()).containsExactly(entry(10, 1L), entry(20, 1L));
+
+        assertThat(teamB.getMemberCount()).isEqualTo(2);
+        assertThat(teamB.getAvgAge()).isEqualTo(37.5);
+        assertThat(teamB.getAgeHistogram()).containsExactly(entry(30, 1L), entry(40, 1L));
+    }
+}
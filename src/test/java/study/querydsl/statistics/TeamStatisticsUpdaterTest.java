@@ -0,0 +1,253 @@
+package study.querydsl.statistics;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamStatisticsRepository;
+import study.querydsl.support.CommittedFixture;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * 증분 반영은 커밋된 뒤에만 일어나므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@SpringBootTest
+class TeamStatisticsUpdaterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamStatisticsUpdater updater;
+
+    @Autowired
+    TeamStatisticsReconciler reconciler;
+
+    @Autowired
+    TeamStatisticsRepository teamStatisticsRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    CommittedFixture fixture;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        fixture = new CommittedFixture(em, transactionManager);
+        fixture.insert(() -> {
+            teamA = fixture.persist(new Team("statisticsTeamA"));
+            teamB = fixture.persist(new Team("statisticsTeamB"));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+        reconciler.reconcile();
+    }
+
+    @Test
+    public void committedChangesAreApplied() throws Exception {
+        Member[] members = new Member[3];
+        fixture.insert(() -> {
+            Team a = em.find(Team.class, teamA.getId());
+            members[0] = fixture.persist(new Member("member1", 10, a));
+            members[1] = fixture.persist(new Member("member2", 20, a));
+            members[2] = fixture.persist(new Member("member3", 30, em.find(Team.class, teamB.getId())));
+        });
+        updater.awaitApplied();
+        assertStatistics("statisticsTeamA", 2, 30);
+        assertStatistics("statisticsTeamB", 1, 30);
+
+        //changeTeam
+        tx.executeWithoutResult(status -> em.find(Member.class, members[1].getId())
+                .changeTeam(em.find(Team.class, teamB.getId())));
+        //age 변경
+        tx.executeWithoutResult(status -> em.find(Member.class, members[0].getId()).setAge(15));
+        updater.awaitApplied();
+        assertStatistics("statisticsTeamA", 1, 15);
+        assertStatistics("statisticsTeamB", 2, 50);
+        assertThat(statistics("statisticsTeamA").getAgeHistogram()).containsExactly(entry(10, 1L));
+        assertThat(statistics("statisticsTeamB").getMinAge()).isEqualTo(20);
+
+        //delete
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, members[2].getId())));
+        //롤백된 변경은 반영되지 않는다.
+        tx.executeWithoutResult(status -> {
+            em.find(Member.class, members[1].getId()).setAge(99);
+            em.flush();
+            status.setRollbackOnly();
+        });
+        updater.awaitApplied();
+        assertStatistics("statisticsTeamB", 1, 20);
+        assertThat(statistics("statisticsTeamB").getMaxAge()).isEqualTo(20);
+
+        //재계산해도 같은 값
+        TeamStatisticsDto incremental = statistics("statisticsTeamB");
+        reconciler.reconcile();
+        assertThat(statistics("statisticsTeamB")).isEqualTo(incremental);
+    }
+
+    /**
+     * 모으는 변화량은 트랜잭션 리소스라 커밋/롤백 뒤 스레드에 남지 않는다.
+     */
+    @Test
+    public void pendingDelta_unboundAfterCompletion() throws Exception {
+        Member member = new Member("member1", 10);
+        fixture.insert(() -> fixture.persist(member));
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+
+        tx.executeWithoutResult(status -> {
+            em.find(Member.class, member.getId()).changeTeam(em.find(Team.class, teamA.getId()));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+        updater.awaitApplied();
+        assertThat(statistics("statisticsTeamA")).isNull();
+    }
+
+    /**
+     * member 가 없는 age/팀의 team_age_count 는 재계산 때 지워진다.
+     */
+    @Test
+    public void reconcile_deletesStaleAgeCounts() throws Exception {
+        fixture.insert(() -> fixture.persist(new Member("member1", 10, em.find(Team.class, teamA.getId()))));
+        updater.awaitApplied();
+        tx.executeWithoutResult(status -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ageCount = connection.prepareStatement(TeamStatisticsUpserts.ADD_AGE)) {
+                TeamStatisticsUpserts.age(ageCount, teamA.getId(), 77, 1);
+                TeamStatisticsUpserts.age(ageCount, teamA.getId(), 78, 1);
+                TeamStatisticsUpserts.age(ageCount, teamB.getId(), 5, 1);
+            }
+        }));
+
+        reconciler.reconcile();
+
+        assertThat(statistics("statisticsTeamA").getAgeHistogram()).containsExactly(entry(10, 1L));
+        assertThat(ageCounts(teamA.getId())).containsExactly(10);
+        assertThat(ageCounts(teamB.getId())).isEmpty();
+    }
+
+    /**
+     * 통계 row 가 없는 팀에 두 트랜잭션이 동시에 커밋해도 둘 다 커밋되고 둘 다 반영된다.
+     */
+    @Test
+    public void concurrentFirstInserts_sameTeam() throws Exception {
+        List<Long> ids = new CopyOnWriteArrayList<>();
+        CountDownLatch flushed = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> insertTogether("member1", 10, ids, flushed));
+            Future<?> second = executor.submit(() -> insertTogether("member2", 20, ids, flushed));
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            fixture.track(Member.class, ids);
+            executor.shutdownNow();
+        }
+        updater.awaitApplied();
+
+        assertStatistics("statisticsTeamA", 2, 30);
+        assertThat(statistics("statisticsTeamA").getAgeHistogram()).containsExactly(entry(10, 1L), entry(20, 1L));
+    }
+
+    /**
+     * 다른 인스턴스가 같은 키를 동시에 처음 upsert 하는 경우. (이 JVM 안에서는 반영 스레드가 하나라 겹치지 않는다)
+     */
+    @Test
+    public void concurrentFirstUpserts_sameKey() throws Exception {
+        CountDownLatch ready = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> upsertTogether(teamB.getId(), 10, ready));
+            Future<?> second = executor.submit(() -> upsertTogether(teamB.getId(), 10, ready));
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertStatistics("statisticsTeamB", 2, 20);
+        assertThat(statistics("statisticsTeamB").getAgeHistogram()).containsExactly(entry(10, 2L));
+    }
+
+    /**
+     * 두 트랜잭션 모두 flush 한 뒤에 커밋한다.
+     */
+    private void insertTogether(String username, int age, List<Long> ids, CountDownLatch flushed) {
+        tx.executeWithoutResult(status -> {
+            Member member = new Member(username, age, em.find(Team.class, teamA.getId()));
+            em.persist(member);
+            em.flush();
+            ids.add(member.getId());
+            flushed.countDown();
+            await(flushed);
+        });
+    }
+
+    private void upsertTogether(long teamId, int age, CountDownLatch ready) {
+        tx.executeWithoutResult(status -> em.unwrap(Session.class).doWork(connection -> {
+            ready.countDown();
+            await(ready);
+            try (PreparedStatement team = connection.prepareStatement(TeamStatisticsUpserts.ADD_TEAM);
+                 PreparedStatement ageCount = connection.prepareStatement(TeamStatisticsUpserts.ADD_AGE)) {
+                TeamStatisticsUpserts.team(team, teamId, 1, age);
+                TeamStatisticsUpserts.age(ageCount, teamId, age, 1);
+            }
+        }));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertStatistics(String teamName, long memberCount, long ageSum) {
+        TeamStatisticsDto statistics = statistics(teamName);
+        assertThat(statistics).as(teamName).isNotNull();
+        assertThat(statistics.getMemberCount()).isEqualTo(memberCount);
+        assertThat(statistics.getAgeSum()).isEqualTo(ageSum);
+    }
+
+    private List<Integer> ageCounts(Long teamId) {
+        return fixture.read(() -> em.createQuery(
+                        "select c.age from TeamAgeCount c where c.teamId = :teamId order by c.age", Integer.class)
+                .setParameter("teamId", teamId)
+                .getResultList());
+    }
+
+    private TeamStatisticsDto statistics(String teamName) {
+        return fixture.read(() -> teamStatisticsRepository.findByTeamName(teamName));
+    }
+}
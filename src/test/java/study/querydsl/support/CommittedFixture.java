@@ -0,0 +1,116 @@
+package study.querydsl.support;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 테스트 트랜잭션(롤백)을 쓸 수 없는 테스트(별도 트랜잭션/스레드에서 커밋하는 코드)의 데이터 준비/정리 헬퍼.
+ *
+ * 공유 H2 DB 이므로 정리할 때 테이블 전체가 아니라 이 테스트가 넣은 row 만 지운다.
+ * - persist(): fixture 로 넣은 엔티티
+ * - track(): 테스트 대상 코드가 넣은 row 의 id
+ * - trackNew(): 호출한 시점의 max(id) 보다 큰 row (id 를 알 수 없는 import 같은 경우)
+ *
+ * 먼저 등록한 타입을 나중에 지운다. (Team 을 넣고 Member 를 넣었으면 Member -> Team 순서)
+ */
+public final class CommittedFixture {
+
+    private static final int DELETE_CHUNK = 1000;
+
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final List<Object> persisted = new ArrayList<>();
+    private final Map<Class<?>, Set<Object>> tracked = new LinkedHashMap<>();
+    private final Map<Class<?>, Long> watermarks = new LinkedHashMap<>();
+
+    public CommittedFixture(EntityManager em, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * work 를 트랜잭션 하나로 커밋한다. 안에서 persist() 로 넣는다.
+     */
+    public void insert(Runnable work) {
+        tx.executeWithoutResult(status -> work.run());
+    }
+
+    public <T> T persist(T entity) {
+        em.persist(entity);
+        //id 는 커밋 뒤 cleanUp 에서 읽고, 지우는 순서를 위해 타입만 먼저 등록한다.
+        tracked.computeIfAbsent(entity.getClass(), t -> new LinkedHashSet<>());
+        persisted.add(entity);
+        return entity;
+    }
+
+    /**
+     * 조회도 커밋된 데이터를 보도록 트랜잭션 하나로 실행한다.
+     */
+    public <T> T read(Supplier<T> query) {
+        return tx.execute(status -> query.get());
+    }
+
+    public void track(Class<?> type, Collection<?> ids) {
+        tracked.computeIfAbsent(type, t -> new LinkedHashSet<>()).addAll(ids);
+    }
+
+    /**
+     * 지금 이후 type 에 들어가는 row 도 정리 대상으로 한다. (Long id 엔티티만)
+     */
+    public void trackNew(Class<?> type) {
+        tracked.computeIfAbsent(type, t -> new LinkedHashSet<>());
+        Long max = read(() -> em.createQuery(
+                        "select max(e." + idName(type) + ") from " + entityName(type) + " e", Long.class)
+                .getSingleResult());
+        watermarks.putIfAbsent(type, max != null ? max : Long.MIN_VALUE);
+    }
+
+    /**
+     * 등록한 row 를 지운다. @AfterEach 에서 호출한다.
+     */
+    public void cleanUp() {
+        for (Object entity : persisted) {
+            track(entity.getClass(), List.of(em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity)));
+        }
+        persisted.clear();
+        List<Class<?>> types = new ArrayList<>(tracked.keySet());
+        tx.executeWithoutResult(status -> {
+            for (int i = types.size() - 1; i >= 0; i--) {
+                Class<?> type = types.get(i);
+                String delete = "delete from " + entityName(type) + " e where e." + idName(type);
+                Long watermark = watermarks.get(type);
+                if (watermark != null) {
+                    em.createQuery(delete + " > :watermark").setParameter("watermark", watermark).executeUpdate();
+                }
+                List<Object> ids = new ArrayList<>(tracked.get(type));
+                for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+                    em.createQuery(delete + " in :ids")
+                            .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + DELETE_CHUNK)))
+                            .executeUpdate();
+                }
+            }
+        });
+        tracked.clear();
+        watermarks.clear();
+    }
+
+    private String entityName(Class<?> type) {
+        return em.getMetamodel().entity(type).getName();
+    }
+
+    private String idName(Class<?> type) {
+        EntityType<?> entity = em.getMetamodel().entity(type);
+        return entity.getId(entity.getIdType().getJavaType()).getName();
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.support;
+
+import study.querydsl.trace.SqlStatementRecorder;
+import study.querydsl.trace.SqlStatementScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 레포지토리 메서드가 날리는 statement 수를 테스트에서 고정하기 위한 헬퍼.
+ * (n-plus-one.enabled=true 여야 statement 가 기록된다)
+ */
+public final class StatementCounts {
+
+    private StatementCounts() {
+    }
+
+    public static SqlStatementScope count(SqlStatementRecorder recorder, Runnable action) {
+        try (SqlStatementScope scope = recorder.open("test")) {
+            action.run();
+            return scope;
+        }
+    }
+
+    public static void assertStatementCount(SqlStatementRecorder recorder, int expected, Runnable action) {
+        SqlStatementScope scope = count(recorder, action);
+        assertThat(scope.getTotal())
+                .as("statements: %s", scope.getSelectShapes())
+                .isEqualTo(expected);
+    }
+
+    /**
+     * 같은 모양 select 가 maxRepeated 번 넘게 반복되지 않아야 한다.
+     */
+    public static void assertNoRepeatedSelects(SqlStatementRecorder recorder, int maxRepeated, Runnable action) {
+        SqlStatementScope scope = count(recorder, action);
+        assertThat(scope.getMaxRepeatedSelects())
+                .as("statements: %s", scope.getSelectShapes())
+                .isLessThanOrEqualTo(maxRepeated);
+    }
+}
@@ -0,0 +1,60 @@
+package study.querydsl.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlTraceBufferTest {
+
+    private static void add(SqlTraceBuffer buffer, String sql) {
+        buffer.add(new SqlTraceEntry(buffer.nextSequence(), Instant.now(), "test", sql, "[]", 1, true));
+    }
+
+    @Test
+    public void snapshot_oldestFirst() {
+        SqlTraceBuffer buffer = new SqlTraceBuffer(4);
+        add(buffer, "a");
+        add(buffer, "b");
+
+        assertThat(buffer.snapshot()).extracting(SqlTraceEntry::getSql).containsExactly("a", "b");
+    }
+
+    @Test
+    public void wrapsAround_keepsLatestEntries() {
+        SqlTraceBuffer buffer = new SqlTraceBuffer(3);
+        for (String sql : new String[]{"a", "b", "c", "d", "e"}) {
+            add(buffer, sql);
+        }
+
+        assertThat(buffer.snapshot()).extracting(SqlTraceEntry::getSql).containsExactly("c", "d", "e");
+        assertThat(buffer.snapshot().stream().map(SqlTraceEntry::getSequence).collect(Collectors.toList()))
+                .containsExactly(2L, 3L, 4L);
+    }
+
+    /**
+     * 번호는 받았지만 아직 add 하지 않은 칸(다른 스레드가 기록 중)은 건너뛴다.
+     */
+    @Test
+    public void skipsSlotsNotYetWritten() {
+        SqlTraceBuffer buffer = new SqlTraceBuffer(3);
+        add(buffer, "a");
+        buffer.nextSequence();
+        add(buffer, "c");
+
+        assertThat(buffer.snapshot()).extracting(SqlTraceEntry::getSql).containsExactly("a", "c");
+    }
+
+    @Test
+    public void clear() {
+        SqlTraceBuffer buffer = new SqlTraceBuffer(3);
+        add(buffer, "a");
+        buffer.clear();
+        assertThat(buffer.snapshot()).isEmpty();
+
+        add(buffer, "b");
+        assertThat(buffer.snapshot()).extracting(SqlTraceEntry::getSql).containsExactly("b");
+    }
+}
@@ -0,0 +1,146 @@
+package study.querydsl.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * DB 없이 가짜 Connection / PreparedStatement 로 확인한다. ("slow" 가 들어간 SQL 은 실행에 SLOW_MILLIS 걸린다)
+ */
+class SqlTracerTest {
+
+    private static final long SLOW_MILLIS = 100;
+
+    private static SqlTracer tracer(double sampleRate, int bufferSize, Duration slowThreshold) {
+        SqlTraceProperties properties = new SqlTraceProperties();
+        properties.setSampleRate(sampleRate);
+        properties.setBufferSize(bufferSize);
+        properties.setMaxBindLength(5);
+        properties.setSlowThreshold(slowThreshold);
+        return new SqlTracer(properties, new SqlStatementRecorder(new NPlusOneProperties()));
+    }
+
+    private static void execute(Connection connection, String sql, Object... binds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < binds.length; i++) {
+                statement.setObject(i + 1, binds[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    @Test
+    public void sampleRateZero_doesNotWrap() {
+        Connection connection = fakeConnection();
+        assertThat(tracer(0, 16, Duration.ZERO).wrap(connection)).isSameAs(connection);
+    }
+
+    @Test
+    public void sampleRateOne_recordsEveryStatementWithBinds() throws SQLException {
+        SqlTracer tracer = tracer(1, 16, Duration.ZERO);
+        Connection connection = tracer.wrap(fakeConnection());
+        execute(connection, "update member set username = ? where member_id = ?", "abcdefgh", 1L);
+        execute(connection, "delete from member where member_id = ?", 2L);
+
+        List<SqlTraceEntry> recent = tracer.recent();
+        assertThat(recent).extracting(SqlTraceEntry::getSql).containsExactly(
+                "update member set username = ? where member_id = ?",
+                "delete from member where member_id = ?");
+        //maxBindLength(5) 보다 긴 값은 자른다.
+        assertThat(recent.get(0).getBinds()).isEqualTo("['abcd..., 1]");
+        assertThat(recent.get(1).getBinds()).isEqualTo("[2]");
+        assertThat(recent).allMatch(SqlTraceEntry::isSuccess);
+    }
+
+    @Test
+    public void sampleRate_recordsAboutThatFraction() throws SQLException {
+        int statements = 4000;
+        SqlTracer tracer = tracer(0.25, statements, Duration.ZERO);
+        Connection connection = tracer.wrap(fakeConnection());
+        for (int i = 0; i < statements; i++) {
+            execute(connection, "select ?", i);
+        }
+        //이항분포 기댓값 1000, 표준편차 약 27
+        assertThat(tracer.recent().size()).isBetween(850, 1150);
+    }
+
+    @Test
+    public void sampleRate_changedAtRuntime() throws SQLException {
+        SqlTracer tracer = tracer(1, 16, Duration.ZERO);
+        Connection connection = tracer.wrap(fakeConnection());
+        tracer.setSampleRate(0);
+        execute(connection, "select 1");
+        assertThat(tracer.recent()).isEmpty();
+
+        assertThatThrownBy(() -> tracer.setSampleRate(1.5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tracer.setSampleRate(-0.1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void slowThreshold_recordsUnsampledSlowStatementsWithoutBinds() throws SQLException {
+        SqlTracer tracer = tracer(0, 16, Duration.ofMillis(SLOW_MILLIS / 2));
+        Connection connection = tracer.wrap(fakeConnection());
+        execute(connection, "select fast where id = ?", 1L);
+        execute(connection, "select slow where id = ?", 2L);
+
+        List<SqlTraceEntry> recent = tracer.recent();
+        assertThat(recent).extracting(SqlTraceEntry::getSql).containsExactly("select slow where id = ?");
+        assertThat(recent.get(0).getBinds()).isNull();
+        assertThat(recent.get(0).getElapsedMicros()).isGreaterThanOrEqualTo(SLOW_MILLIS / 2 * 1000);
+    }
+
+    @Test
+    public void failedStatementIsRecorded() {
+        SqlTracer tracer = tracer(1, 16, Duration.ZERO);
+        Connection connection = tracer.wrap(fakeConnection());
+
+        assertThatThrownBy(() -> execute(connection, "select fail")).isInstanceOf(SQLException.class);
+        assertThat(tracer.recent()).extracting(SqlTraceEntry::isSuccess).containsExactly(false);
+    }
+
+    private static Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(SqlTracerTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        return fakeStatement((String) args[0]);
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static PreparedStatement fakeStatement(String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(SqlTracerTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        if (sql.contains("fail")) {
+                            throw new SQLException("fail");
+                        }
+                        if (sql.contains("slow")) {
+                            Thread.sleep(SLOW_MILLIS);
+                        }
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}